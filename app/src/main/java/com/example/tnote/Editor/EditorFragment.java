@@ -5,23 +5,39 @@ import android.app.Activity;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.KeyEvent;
 import android.view.ViewGroup;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
+import com.example.tnote.FileBrowser.TrigramIndex;
 import com.example.tnote.MainActivity;
 import com.example.tnote.R;
 import com.example.tnote.Utils.EditorUtils.HilightStrategy.SyntaxHighlightManager;
+import com.example.tnote.Utils.EditorUtils.DocumentCache;
+import com.example.tnote.Utils.EditorUtils.EditJournal;
 import com.example.tnote.Utils.EditorUtils.EditorStateManager;
+import com.example.tnote.Utils.EditorUtils.FindReplaceEngine;
+import com.example.tnote.Utils.EditorUtils.TextSearcher;
 import com.example.tnote.Utils.FileIOUtils;
+import com.example.tnote.Utils.IOScheduler;
+import com.example.tnote.Utils.SaveCoalescer;
 import com.example.tnote.Utils.EditorUtils.KeyBindingHandler;
+import com.example.tnote.Utils.EditorUtils.LineIndex;
+import com.example.tnote.Utils.EditorUtils.LineNumberGutter;
+import com.example.tnote.Utils.EditorUtils.PieceTable;
 import com.example.tnote.Utils.EditorUtils.TextWatcherAdapter;
 import com.example.tnote.Utils.TabManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -32,12 +48,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * 文本编辑器核心Fragment，负责协调文件操作、文本编辑和界面交互逻辑
@@ -46,27 +60,65 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * - 实时语法高亮显示
  * - 编辑状态跟踪（未保存修改标记）
  * - 基础编辑器配置（字体、滚动等）
+ * 文档内容以 {@link PieceTable} 为准，编辑增量通过 TextWatcher 同步，保存时直接流式写出分片
+ * EditText 的 Editable 仍持有一份完整文本用于显示和输入，分片表是供后台线程读取的不可变副本
+ * 选项卡切走时由 TabManager 调用 {@link #hibernate} 保存完整状态，切回时从 {@link HibernatedEditor} 恢复
  */
 
 public class EditorFragment extends Fragment {
+    private static final long RESEARCH_DELAY_MS = 300;
+
     // UI组件
     private EditText editor;  // 核心文本编辑区域
+    private LineNumberGutter gutter; // 行号栏
+    private View findBar;            // 查找替换栏
+    private EditText findQuery;
+    private EditText replaceText;
+    private CheckBox findCase;
+    private CheckBox findRegex;
+    private TextView findCount;
+    private LinearLayout tabStrip;   // 顶部的编辑器选项卡栏
 
     // 业务逻辑组件
     private File currentFile;                // 当前正在编辑的文件对象
     private String filePath;
     private String fileName;
+    private PieceTable document;             // 文档模型（分片表），保存时从这里流式写出
+    private FileIOUtils.Encoding encoding = FileIOUtils.Encoding.DEFAULT; // 文件编码，保存时按原编码写回
+    private volatile long fileLength;        // 文档最近一次与文件一致时（读入或保存落盘）的文件长度
+    private volatile long fileModified;      // 同上，文件修改时间；为 0 表示未知
+    private IOScheduler.CancellationToken loadTask; // 进行中的流式读取，销毁时取消
+    private final LineIndex lineIndex = new LineIndex(); // 行起点索引，随编辑增量维护
+    private boolean isSyncSuppressed;        // 整体替换编辑器内容时暂停向文档同步增量
+    private String pendingRemoved = "";      // beforeTextChanged 中记录的即将被替换的文本（供撤销使用）
     private EditorStateManager stateManager; // 编辑器状态管理器（跟踪修改状态）
+    private EditJournal journal;             // 编辑日志，进程被杀后恢复未保存的修改
+    private int editVersion;                 // 每次编辑递增，用于判断保存期间是否又有修改
+    private volatile int committedVersion = -1; // 最近一次落盘的快照对应的 editVersion（IO 线程写入）
+    private SaveCoalescer saver;             // 合并连续的保存请求，内容未变时跳过写入
+    private TrigramIndex index;              // 工作区搜索索引，保存后增量更新
+    private final FileIOUtils.FileWriteCallback saveCallback = this::handleSaveResult; // 连续点击保存只提示一次
+    private FindReplaceEngine findEngine;    // 后台查找替换
+    private final Runnable researchRunnable = this::runSearch; // 编辑停顿后重新查找
     private SyntaxHighlightManager highlightManager; // 语法高亮处理器
     private KeyBindingHandler keyHandler;    // 快捷键处理器
     private AtomicBoolean isTmpFileSaved;
     private FloatingActionButton saveFile;
-    private BlockingQueue<Runnable> saveQueue = new LinkedBlockingQueue<>();
-    private ExecutorService saveExecutor = Executors.newSingleThreadExecutor();
+    private HibernatedEditor hibernated;     // 切回选项卡时从中恢复，为 null 时从文件加载
+    private boolean isHibernated;            // 状态已交给 HibernatedEditor，关闭时不再写入最近文件缓存
     public EditorFragment(File file) {
         currentFile = file;
     }
 
+    /**
+     * 从休眠状态恢复的编辑器
+     * @param hibernated 之前休眠时保存的状态，恢复失败时从文件加载
+     */
+    public EditorFragment(File file, HibernatedEditor hibernated) {
+        currentFile = file;
+        this.hibernated = hibernated;
+    }
+
 
     public EditorFragment() {
         currentFile=null;
@@ -92,11 +144,14 @@ public class EditorFragment extends Fragment {
         }else{
             currentFile=new File(filePath);
         }
-        FileReadLog(currentFile);
         // 初始化各功能管理器
         stateManager = new EditorStateManager(); // 跟踪编辑状态（如是否修改）
-        highlightManager = new SyntaxHighlightManager(requireContext()); // 需要上下文加载语法规则
-        keyHandler = new KeyBindingHandler();    // 预留的快捷键支持
+        highlightManager = new SyntaxHighlightManager(requireContext(), lineIndex); // 需要上下文加载语法规则
+        keyHandler = new KeyBindingHandler(stateManager); // 快捷键支持（Tab、撤销/重做）
+        journal = EditJournal.forFile(requireContext(), currentFile);
+        journal.setCompactionListener(this::autosave); // 日志过大时做一次完整保存
+        saver = new SaveCoalescer(currentFile);
+        index = TrigramIndex.get(requireContext(), MainActivity.getAppDir());
     }
 
     @SuppressLint("MissingInflatedId")
@@ -107,17 +162,40 @@ public class EditorFragment extends Fragment {
         // 加载布局文件
         View view = inflater.inflate(R.layout.fragment_code_editor, container, false);
         setupEditor(view);       // 配置编辑器UI属性
-        loadFileContent();       // 异步加载文件内容
+        tabStrip = view.findViewById(R.id.editor_tabs);
+        refreshTabStrip();
+        if (hibernated != null) {
+            restoreState();      // 从休眠状态恢复
+        } else {
+            loadFileContent();   // 异步加载文件内容
+        }
         saveFile = view.findViewById(R.id.save_fab);
         saveFile.setOnClickListener(v -> {
             saveFile();
         });
+        setupFindBar(view);
         return view;
     }
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (journal != null) journal.flush(); // 进入后台前提交日志缓冲
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
+        // 内容与文件一致时放入最近文件缓存，再次打开时不必重新读取和高亮
+        if (document != null && !isHibernated && fileModified != 0
+                && !stateManager.isModified() && saver.isIdle() && !journal.hasEditsSinceSnapshot()) {
+            DocumentCache.put(currentFile, document.snapshot(), encoding,
+                    highlightManager.exportLineStates(), fileLength, fileModified);
+        }
         // 释放资源
+        if (loadTask != null) loadTask.cancel(); // 切换文件时停止仍在进行的读取
+        if (journal != null) journal.close();
+        if (findEngine != null) findEngine.close(); // 停止仍在进行的查找
+        if (highlightManager != null) highlightManager.release(); // 丢弃尚未返回的高亮结果
     }
 
     /**
@@ -129,6 +207,28 @@ public class EditorFragment extends Fragment {
         editor = view.findViewById(R.id.editor); // 获取编辑器实例
         configureEditorBehavior();  // 设置编辑器显示参数
         setupTextWatcher();         // 注册文本变化监听器
+        gutter = view.findViewById(R.id.line_gutter);
+        gutter.attach(editor, lineIndex);
+        editor.setOnKeyListener((v, keyCode, event) -> {
+            if (keyCode == KeyEvent.KEYCODE_F && event.isCtrlPressed()) {
+                if (event.getAction() == KeyEvent.ACTION_DOWN) showFindBar(); // Ctrl+F 查找
+                return true;
+            }
+            return keyHandler.handleKeyEvent(keyCode, event, editor);
+        });
+        findEngine = new FindReplaceEngine(editor, ContextCompat.getColor(requireContext(), R.color.search_match_background),
+                ContextCompat.getColor(requireContext(), R.color.search_current_background));
+        // 高亮、查找结果与行号栏跟随可见区域
+        editor.setOnScrollChangeListener((v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+            highlightManager.updateViewport(editor);
+            findEngine.updateViewport();
+            gutter.invalidate();
+        });
+        editor.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            highlightManager.updateViewport(editor);
+            findEngine.updateViewport();
+            gutter.invalidate();
+        });
     }
 
     /**
@@ -146,54 +246,377 @@ public class EditorFragment extends Fragment {
     /**
      * 设置文本变化监听器，用于：
      * 1. 标记文档为已修改状态
-     * 2. 触发实时语法高亮更新
-     * @性能注意 每次输入都会触发高亮，大文件可能有性能问题
+     * 2. 将增量同步到分片表并记录撤销操作
+     * 3. 触发实时语法高亮更新
+     * @性能注意 每次输入只重新高亮脏行，耗时基本不随文件增大
      */
     private void setupTextWatcher() {
         editor.addTextChangedListener(new TextWatcherAdapter() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // 只复制被替换的片段（不带 Span），用于撤销记录
+                pendingRemoved = isSyncSuppressed || stateManager.isApplying()
+                        ? "" : TextUtils.substring(s, start, start + count);
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                if (isSyncSuppressed) return;
+                // 将编辑增量同步到分片表，耗时与改动长度相关，与文档大小无关
+                if (document != null) {
+                    document.replace(start, start + before, s, start, start + count);
+                }
+                String inserted = TextUtils.substring(s, start, start + count);
+                if (!stateManager.isApplying()) {
+                    stateManager.recordEdit(start, pendingRemoved, inserted);
+                }
+                journal.recordEdit(start, before, inserted); // 撤销/重做同样写入日志
+                findEngine.invalidate();                     // 已有匹配位置作废
+                editVersion++;
+                pendingRemoved = "";
+                lineIndex.onTextChanged(s, start, before, count); // 更新行索引，并通知高亮、行号栏
+            }
+
             @Override
             public void afterTextChanged(Editable s) {
+                if (isSyncSuppressed) return; // 整体加载后由 loadFileContent 统一处理
                 stateManager.markModified();  // 标记内容有未保存修改
-                highlightManager.applyHighlight(editor, currentFile.getName()); // 根据文件名后缀应用高亮规则
+                highlightManager.applyIncrementalHighlight(editor, currentFile.getName()); // 只重新高亮改动涉及的行
+                if (findBar.getVisibility() == View.VISIBLE) {
+                    editor.removeCallbacks(researchRunnable);
+                    editor.postDelayed(researchRunnable, RESEARCH_DELAY_MS); // 输入停顿后再重新查找
+                }
             }
         });
     }
 
     /**
-     * 异步加载文件内容到编辑器
-     * @流程说明：
-     * 1. 使用FileIOUtils异步读取文件
-     * 2. 成功时更新编辑器内容并重置修改状态
-     * 3. 自动应用语法高亮
-     * @风险点 未处理文件读取失败的情况
+     * 加载文件内容到编辑器：先查最近文件缓存，命中时直接使用缓存的文本和行状态，否则从文件流式读取
      */
     private void loadFileContent() {
+        isSyncSuppressed = true;
+        editor.setEnabled(false);
+        loadTask = DocumentCache.lookup(currentFile, cached -> {
+            if (cached == null) {
+                readFileContent();
+                return;
+            }
+            Log.println(Log.INFO,"read content","cached " + cached.length);
+            loadTask = null;
+            fileLength = cached.fileLength;
+            fileModified = cached.fileModified;
+            PieceTable loaded = new PieceTable(cached.text, cached.length); // 共享只读的缓存数组
+            editor.setText(loaded);
+            lineIndex.reset(editor.getText());
+            gutter.onLineCountChanged(); // reset 不通知监听器，行号栏按新行数重新测量
+            onDocumentLoaded(loaded, cached.encoding, cached.lineStates);
+        });
+    }
+
+    /**
+     * 流式加载文件内容到编辑器
+     * @流程说明：
+     * 1. 使用FileIOUtils分块读取并解码，每块到达即追加到编辑器并同步行索引，首屏无需等待整个文件
+     * 2. 加载期间编辑器不可编辑，增量不同步到文档
+     * 3. 读取完成后接管分片表文档、重置修改状态并应用语法高亮
+     * 4. 重放编辑日志中上次未保存的修改，之后才允许编辑
+     * @风险点 读取中途失败时已显示的只是部分内容：保持只读且不接管文档，保存被禁用，以免截断磁盘上的文件
+     */
+    private void readFileContent() {
         Log.println(Log.INFO,"read content","loading");
-        FileIOUtils.readFileAsync(currentFile, content -> {
-            Log.println(Log.INFO,"read content",content);
-            // 主线程更新UI（假设回调已在主线程）
-            editor.setText(content);          // 填充编辑器内容
-            stateManager.reset();             // 重置为未修改状态
+        fileLength = currentFile.length();
+        fileModified = currentFile.lastModified();
+        loadTask = FileIOUtils.readDocumentStreaming(currentFile, new FileIOUtils.DocumentStreamCallback() {
+            @Override
+            public void onChunk(CharSequence chunk) {
+                // 主线程追加（回调已在主线程）；TextWatcher 被暂停，行索引在这里同步
+                Editable text = editor.getText();
+                int start = text.length();
+                text.append(chunk);
+                lineIndex.onTextChanged(text, start, 0, chunk.length());
+            }
+
+            @Override
+            public void onComplete(PieceTable loaded, FileIOUtils.Encoding detected) {
+                Log.println(Log.INFO,"read content","length " + loaded.length() + " " + detected.charset.name());
+                loadTask = null;
+                onDocumentLoaded(loaded, detected, null);
+            }
+
+            @Override
+            public void onError(IOException error) {
+                loadTask = null;
+                // document 保持为 null：编辑器不可编辑，saveFile 与休眠、最近文件缓存都不会使用部分内容
+                showToast(R.string.file_read_failed);
+            }
+        });
+    }
+
+    /**
+     * 文档已读入编辑器（行索引已同步）：接管分片表文档、重置修改状态、应用语法高亮并重放编辑日志
+     * @param lineStates 缓存的各行词法状态，为 null 时全量高亮
+     */
+    private void onDocumentLoaded(PieceTable loaded, FileIOUtils.Encoding detected, int[] lineStates) {
+        document = loaded;
+        encoding = detected;
+        isSyncSuppressed = false;
+        stateManager.reset();             // 重置为未修改状态
+        saver.setBaseline(document.snapshot(), encoding); // 未修改就保存时不必重写
+        if (lineStates != null) {
+            highlightManager.applyHighlight(editor, currentFile.getName(), lineStates);
+        } else {
             highlightManager.applyHighlight(editor, currentFile.getName()); // 初始高亮
+        }
+        journal.recover(edits -> {
+            if (!isAdded()) return; // 加载期间选项卡已切走
+            replayJournal(edits);
+            journal.startRecording();
+            editor.setEnabled(true);
+        });
+    }
+
+    /**
+     * 从休眠状态恢复文本、撤销历史、行状态、选区与滚动位置；恢复失败时改为从文件加载
+     * 日志中的编辑已包含在恢复出的文本中，只需让日志准备好继续追加
+     */
+    private void restoreState() {
+        HibernatedEditor source = hibernated;
+        hibernated = null;
+        isSyncSuppressed = true;
+        editor.setEnabled(false);
+        source.restore(state -> {
+            if (!isAdded()) return;
+            if (state == null) {
+                loadFileContent();
+                return;
+            }
+            document = state.document;
+            encoding = state.encoding;
+            fileLength = state.fileLength;
+            fileModified = state.fileModified;
+            editor.setText(document);
+            lineIndex.reset(editor.getText());
+            gutter.onLineCountChanged();
+            isSyncSuppressed = false;
+            stateManager = state.history;
+            keyHandler = new KeyBindingHandler(stateManager);
+            if (!stateManager.isModified()) saver.setBaseline(document.snapshot(), encoding);
+            highlightManager.applyHighlight(editor, currentFile.getName(), state.lineStates);
+            int length = editor.length();
+            editor.setSelection(Math.min(state.selectionStart, length), Math.min(state.selectionEnd, length));
+            editor.post(() -> editor.scrollTo(state.scrollX, state.scrollY));
+            journal.recover(edits -> {
+                journal.startRecording();
+                editor.setEnabled(true);
+            });
+        });
+    }
+
+    /**
+     * 让编辑器休眠（选项卡切走、Fragment 即将被移除前由 TabManager 调用），之后不再接受输入
+     * @param onSerialized 状态序列化完成后在主线程回调
+     * @return 休眠状态；文件尚未加载完成或仍有保存在进行时返回 null，切回时从文件加载
+     */
+    public HibernatedEditor hibernate(Runnable onSerialized) {
+        if (editor == null || document == null || !editor.isEnabled() || !saver.isIdle()) return null;
+        editor.setEnabled(false); // 历史对象交给后台序列化，之后的输入不再记录
+        isHibernated = true;
+        HibernatedEditor.State state = new HibernatedEditor.State();
+        state.text = document.snapshot();
+        state.encoding = encoding;
+        state.selectionStart = editor.getSelectionStart();
+        state.selectionEnd = editor.getSelectionEnd();
+        state.scrollX = editor.getScrollX();
+        state.scrollY = editor.getScrollY();
+        state.history = stateManager;
+        state.lineStates = highlightManager.exportLineStates();
+        state.fileLength = fileLength;
+        state.fileModified = fileModified;
+        return HibernatedEditor.hibernate(currentFile, state, onSerialized);
+    }
+
+    /**
+     * 按 TabManager 中打开的文件重建顶部选项卡栏：点击切换，长按关闭
+     */
+    public void refreshTabStrip() {
+        if (tabStrip == null || !(getActivity() instanceof MainActivity)) return;
+        TabManager tabManager = ((MainActivity) getActivity()).tabManager;
+        tabStrip.removeAllViews();
+        LayoutInflater inflater = LayoutInflater.from(requireContext());
+        for (File file : tabManager.getEditorFiles()) {
+            TextView tab = (TextView) inflater.inflate(R.layout.item_editor_tab, tabStrip, false);
+            tab.setText(file.getName());
+            tab.setSelected(file.equals(currentFile));
+            tab.setOnClickListener(v -> {
+                try {
+                    tabManager.switchTab(TabManager.TabType.EDITOR, file);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            tab.setOnLongClickListener(v -> {
+                tabManager.closeEditorTab(file);
+                return true;
+            });
+            tabStrip.addView(tab);
+        }
+    }
+
+    /**
+     * 把日志中的编辑重放到编辑器（经由 TextWatcher 同步到文档、行索引与撤销记录），
+     * 整体作为一次可撤销的修改
+     * @param edits 需要重放的编辑
+     */
+    private void replayJournal(List<EditJournal.Edit> edits) {
+        if (edits.isEmpty()) return;
+        Editable text = editor.getText();
+        int applied = 0;
+        stateManager.beginTransaction();
+        for (EditJournal.Edit edit : edits) {
+            if (edit.offset + edit.removed > text.length()) break; // 与文档不符，放弃其余记录
+            text.replace(edit.offset, edit.offset + edit.removed, edit.inserted);
+            applied++;
+        }
+        stateManager.endTransaction();
+        Log.println(Log.INFO, "journal", "replayed " + applied + "/" + edits.size());
+        Toast.makeText(requireContext(), getString(R.string.journal_recovered, applied), Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 初始化查找替换栏：输入即查找，匹配分批显示；全部替换作为一次编辑应用
+     */
+    private void setupFindBar(View view) {
+        findBar = view.findViewById(R.id.find_bar);
+        findQuery = view.findViewById(R.id.find_query);
+        replaceText = view.findViewById(R.id.replace_text);
+        findCase = view.findViewById(R.id.find_case);
+        findRegex = view.findViewById(R.id.find_regex);
+        findCount = view.findViewById(R.id.find_count);
+        findEngine.setListener(this::showMatchCount);
+
+        findQuery.addTextChangedListener(new TextWatcherAdapter() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                runSearch();
+            }
+        });
+        findCase.setOnCheckedChangeListener((button, checked) -> runSearch());
+        findRegex.setOnCheckedChangeListener((button, checked) -> runSearch());
+        view.findViewById(R.id.find_next).setOnClickListener(v -> findEngine.select(true));
+        view.findViewById(R.id.find_previous).setOnClickListener(v -> findEngine.select(false));
+        view.findViewById(R.id.find_close).setOnClickListener(v -> hideFindBar());
+        view.findViewById(R.id.find_fab).setOnClickListener(v -> showFindBar());
+        view.findViewById(R.id.replace_one).setOnClickListener(v -> {
+            if (!findEngine.replaceCurrent(replaceText.getText().toString())) findEngine.select(true);
+        });
+        view.findViewById(R.id.replace_all).setOnClickListener(v -> {
+            if (document == null) return;
+            findEngine.replaceAll(document.snapshot(), replaceText.getText().toString(), count -> {
+                if (!isAdded()) return; // 期间选项卡已切走，Fragment 已移除
+                if (count < 0) {
+                    showToast(R.string.replace_all_stale);
+                } else {
+                    Toast.makeText(requireContext(), getString(R.string.replace_all_done, count), Toast.LENGTH_SHORT).show();
+                }
+            });
         });
-        Log.println(Log.INFO,"read content","loaded");
+    }
+
+    private void showFindBar() {
+        findBar.setVisibility(View.VISIBLE);
+        findQuery.requestFocus();
+        int start = editor.getSelectionStart();
+        int end = editor.getSelectionEnd();
+        if (end > start && end - start < 256) {
+            findQuery.setText(TextUtils.substring(editor.getText(), start, end)); // 以选中文本为查找内容
+            findQuery.selectAll();
+        }
+        findEngine.updateViewport();
+        runSearch();
+    }
+
+    private void hideFindBar() {
+        findBar.setVisibility(View.GONE);
+        editor.removeCallbacks(researchRunnable);
+        findEngine.close();
+        editor.requestFocus();
+    }
+
+    /**
+     * 按查找栏的当前条件对文档快照重新查找
+     */
+    private void runSearch() {
+        if (document == null || findBar.getVisibility() != View.VISIBLE) return;
+        TextSearcher.Query query;
+        try {
+            query = new TextSearcher.Query(findQuery.getText().toString(), findRegex.isChecked(), !findCase.isChecked());
+        } catch (PatternSyntaxException e) {
+            findEngine.search(null, null);
+            findCount.setText(R.string.find_invalid_regex);
+            return;
+        }
+        findEngine.search(document.snapshot(), query);
+    }
+
+    private void showMatchCount(int count, int current, boolean complete) {
+        if (!complete) {
+            findCount.setText(getString(R.string.find_searching, count));
+        } else if (count == 0) {
+            findCount.setText(findQuery.length() == 0 ? "" : getString(R.string.find_no_match));
+        } else {
+            findCount.setText(getString(R.string.find_count, current + 1, count));
+        }
     }
 
     /**
      * 执行文件保存操作
-     * @return boolean 总是返回true表示已处理保存流程，实际结果通过回调处理
+     * @return boolean 文档已加载时返回true表示已处理保存流程，实际结果通过回调处理
      * @流程说明：
-     * 1. 使用FileIOUtils异步写入文件 !!!注意!!!!用了阻塞队列
-     * 2. 根据操作结果更新状态和显示提示
+     * 1. 在主线程获取分片表快照（O(1)，不复制文本）
+     * 2. 交给SaveCoalescer异步按分片流式写入文件（写入中再次保存会合并为一次，内容未变时跳过）
+     * 3. 根据操作结果更新状态和显示提示
      */
     public boolean saveFile() {
-        saveQueue.offer(() -> {
-            boolean result = FileIOUtils.writeFile(currentFile, editor.getText().toString(),
-                    success -> handleSaveResult(success));
-            // 在此处或其他合适的位置处理 result
+        if (document == null) return false; // 文件尚未加载完成，避免写出空内容
+        PieceTable.Snapshot snapshot = document.snapshot();
+        int version = editVersion;
+        long snapshotId = journal.markSnapshot(); // 日志中标记该快照，落盘后重放将从这里开始
+        saver.save(snapshot, encoding, () -> onCommitted(snapshotId, version), saveCallback);
+        return true; // 返回 true，表示任务已提交
+    }
+
+    /**
+     * 日志过大时的完整保存：写出当前快照后压缩日志，不弹出提示
+     */
+    private void autosave() {
+        if (document == null) return;
+        int version = editVersion;
+        PieceTable.Snapshot snapshot = document.snapshot();
+        long snapshotId = journal.markSnapshot();
+        saver.save(snapshot, encoding, () -> onCommitted(snapshotId, version), success -> {
+            if (!success) return;
+            journal.compact();
+            compactDocument();
+            if (version == editVersion) stateManager.clearModified(); // 保存期间没有新的修改
         });
-        saveExecutor.execute(saveQueue.poll()); // 执行队列中的下一个任务
-        return true; // 返回 true，表示任务已加入队列
+    }
+
+    /**
+     * 保存成功后顺带回收分片表的追加缓冲区，长时间编辑时内存不随按键和替换无限增长
+     */
+    private void compactDocument() {
+        if (document != null && document.shouldCompact()) document = document.compact();
+    }
+
+    /**
+     * 快照已落盘（IO 线程）：记录文件的新版本与快照对应的编辑版本，推进编辑日志，并更新工作区索引中的该文件
+     */
+    private void onCommitted(long snapshotId, int version) {
+        committedVersion = version;
+        fileLength = currentFile.length();
+        fileModified = currentFile.lastModified();
+        journal.onSnapshotCommitted(snapshotId);
+        index.onFileChanged(currentFile);
     }
 
     /**
@@ -203,7 +626,11 @@ public class EditorFragment extends Fragment {
      */
     private void handleSaveResult(boolean success) {
         if (success) {
-            stateManager.clearModified();  // 清除修改标记
+            // 落盘的快照之后没有新的修改才清除修改标记（合并保存时回调随最后落盘的那次写入通知）
+            if (committedVersion == editVersion) stateManager.clearModified();
+            journal.compact();             // 已保存的编辑不再需要保留
+            compactDocument();
+            if (!isAdded()) return;           // 保存期间选项卡已切走，Fragment 已移除，不再提示与切换
             showToast(R.string.save_success); // 显示保存成功提示
             Activity activity = getActivity();
             if(activity!=null){
@@ -213,8 +640,8 @@ public class EditorFragment extends Fragment {
                     Log.println(Log.INFO,"1059696502","replace start");
                     Fragment fragment = mainActivity.tabManager.fragmentManager.findFragmentByTag(TabManager.TabType.TERMINAL.name());
                     if(fragment != null) {
-                        mainActivity.tabManager.remove(this);
-                        mainActivity.tabManager.fragmentManager.beginTransaction().show(fragment).commit();
+                        // 编辑器保留为当前选项卡，只是隐藏
+                        mainActivity.tabManager.fragmentManager.beginTransaction().hide(this).show(fragment).commit();
                         mainActivity.tabManager.leftPaneFragment = fragment;
                         Log.println(Log.INFO,"LEFTPANE：","TERMINAL");
 
@@ -228,7 +655,7 @@ public class EditorFragment extends Fragment {
                     throw new RuntimeException(e);
                 }
             }
-        } else {
+        } else if (isAdded()) {
             showToast(R.string.save_failed);  // 显示保存失败提示
         }
     }
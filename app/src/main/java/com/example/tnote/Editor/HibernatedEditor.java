@@ -0,0 +1,249 @@
+package com.example.tnote.Editor;
+
+import android.text.GetChars;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.tnote.Utils.EditorUtils.EditorStateManager;
+import com.example.tnote.Utils.EditorUtils.PieceTable;
+import com.example.tnote.Utils.FileIOUtils;
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 休眠的编辑器：非当前选项卡的完整编辑状态（文本、编码、选区与滚动位置、撤销/重做历史、各行词法状态）
+ * 压缩后的紧凑形式，切回该选项卡时直接恢复，不必重新读取解码文件、也不必从头高亮
+ * - 序列化在后台通道进行，之前只持有分片表快照（O(1) 取得，不复制文本）和已不再使用的历史对象
+ * - 恢复在交互通道进行，与序列化同 key，因此总在序列化完成之后执行；
+ *   序列化尚未开始时恢复取消它，直接使用内存中的状态
+ * - 已被丢弃（超出内存预算）或文件在休眠期间被修改（长度或修改时间变化）时恢复失败，
+ *   编辑器改为从文件冷加载，未保存的修改仍由编辑日志重放
+ * 线程约定：除序列化与恢复任务外，所有方法都在主线程调用
+ */
+public final class HibernatedEditor {
+    private static final String TAG = "HibernatedEditor";
+    private static final int MAGIC = 0x544E4842;  // "TNHB"
+    private static final int TEXT_CHUNK = 16 * 1024; // 文本按块编码写出的字符数
+
+    /**
+     * 编辑器的完整状态：休眠时 text 为文档快照；恢复后 document 为新建的分片表，text 与之相同
+     */
+    static final class State {
+        GetChars text;
+        PieceTable document;
+        FileIOUtils.Encoding encoding;
+        int selectionStart;
+        int selectionEnd;
+        int scrollX;
+        int scrollY;
+        EditorStateManager history; // 休眠后不再被编辑器使用，可在后台线程读取
+        int[] lineStates;           // 各行行尾词法状态
+        long fileLength;            // 文本对应的文件长度与修改时间
+        long fileModified;
+    }
+
+    public interface RestoreCallback {
+        /**
+         * 恢复完成（主线程）
+         * @param state 恢复出的状态；为 null 表示需要从文件冷加载
+         */
+        void onRestored(@Nullable State state);
+    }
+
+    private final File file;
+    private final String key;
+    private final long estimatedBytes; // 序列化完成前按未压缩文本估算占用
+    private volatile byte[] blob;      // 压缩后的状态
+    private volatile boolean dropped;
+    private State pending;             // 等待序列化的状态，由 this 保护；序列化或恢复时取走
+    private final IOScheduler.CancellationToken serializeToken = new IOScheduler.CancellationToken();
+
+    private HibernatedEditor(File file, long estimatedBytes) {
+        this.file = file;
+        this.key = "hibernate@" + file.getAbsolutePath();
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * 让编辑器休眠：在后台序列化状态，完成后在主线程调用 onSerialized（此后 {@link #sizeBytes()} 为实际大小）
+     */
+    static HibernatedEditor hibernate(File file, State state, Runnable onSerialized) {
+        HibernatedEditor hibernated = new HibernatedEditor(file, 2L * state.text.length());
+        hibernated.pending = state;
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, hibernated.key, hibernated.serializeToken, () -> {
+            State serialized = hibernated.takePending();
+            if (serialized == null || hibernated.dropped) return; // 已被恢复取走或已丢弃
+            try {
+                hibernated.blob = hibernated.write(serialized);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot hibernate " + file.getName() + ": " + e.getMessage());
+                return;
+            }
+            IOScheduler.postToMain(() -> {
+                if (!hibernated.dropped) onSerialized.run();
+            });
+        });
+        return hibernated;
+    }
+
+    /**
+     * 占用的内存（字节），用于休眠预算
+     */
+    public long sizeBytes() {
+        byte[] data = blob;
+        return data != null ? data.length : estimatedBytes;
+    }
+
+    /**
+     * 丢弃休眠状态，之后的恢复都会失败（改为冷加载）
+     */
+    public void drop() {
+        dropped = true;
+        blob = null;
+        takePending();
+    }
+
+    private synchronized State takePending() {
+        State state = pending;
+        pending = null;
+        return state;
+    }
+
+    /**
+     * 在后台解压恢复状态，结果在主线程回调
+     */
+    void restore(RestoreCallback callback) {
+        State unserialized = takePending();
+        if (unserialized != null) serializeToken.cancel(); // 还没开始序列化，不必再等后台通道
+        IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, key, () -> {
+            State state = null;
+            byte[] data = blob;
+            if (unserialized != null) {
+                state = fromMemory(unserialized);
+            } else if (!dropped && data != null) {
+                try {
+                    state = read(data);
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.e(TAG, "Cannot restore " + file.getName() + ": " + e.getMessage());
+                }
+            }
+            blob = null;
+            State restored = state;
+            IOScheduler.postToMain(() -> callback.onRestored(restored));
+        });
+    }
+
+    /**
+     * 直接使用未序列化的状态：把文本快照复制为新的分片表
+     * @return 文件在休眠期间被修改时返回 null
+     */
+    private State fromMemory(State state) {
+        if (state.fileLength != file.length() || state.fileModified != file.lastModified()) return null;
+        int length = state.text.length();
+        char[] chars = new char[length];
+        state.text.getChars(0, length, chars, 0);
+        state.document = new PieceTable(chars, length);
+        state.text = state.document;
+        return state;
+    }
+
+    // region 序列化
+
+    /**
+     * 格式：魔数、文件长度与修改时间、编码、选区、滚动位置、文本（UTF-16）、撤销历史、行状态，整体 Deflate 压缩
+     */
+    private byte[] write(State state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED); // 休眠在切换选项卡时发生，速度优先
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(bytes, deflater, TEXT_CHUNK)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(state.fileLength);
+            out.writeLong(state.fileModified);
+            out.writeUTF(state.encoding.charset.name());
+            out.writeBoolean(state.encoding.bom);
+            out.writeInt(state.selectionStart);
+            out.writeInt(state.selectionEnd);
+            out.writeInt(state.scrollX);
+            out.writeInt(state.scrollY);
+
+            int length = state.text.length();
+            out.writeInt(length);
+            char[] chars = new char[Math.min(length, TEXT_CHUNK)];
+            byte[] encoded = new byte[chars.length * 2];
+            for (int start = 0; start < length; start += TEXT_CHUNK) {
+                int count = Math.min(TEXT_CHUNK, length - start);
+                state.text.getChars(start, start + count, chars, 0);
+                for (int i = 0; i < count; i++) {
+                    encoded[2 * i] = (byte) (chars[i] >>> 8);
+                    encoded[2 * i + 1] = (byte) chars[i];
+                }
+                out.write(encoded, 0, 2 * count);
+            }
+
+            state.history.writeTo(out);
+            out.writeInt(state.lineStates.length);
+            for (int lineState : state.lineStates) {
+                out.writeInt(lineState);
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private State read(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data)), TEXT_CHUNK))) {
+            if (in.readInt() != MAGIC) throw new IOException("bad magic");
+            State state = new State();
+            state.fileLength = in.readLong();
+            state.fileModified = in.readLong();
+            if (state.fileLength != file.length() || state.fileModified != file.lastModified()) {
+                return null; // 文件已被修改，按新内容冷加载
+            }
+            state.encoding = new FileIOUtils.Encoding(Charset.forName(in.readUTF()), in.readBoolean());
+            state.selectionStart = in.readInt();
+            state.selectionEnd = in.readInt();
+            state.scrollX = in.readInt();
+            state.scrollY = in.readInt();
+
+            int length = in.readInt();
+            char[] chars = new char[length];
+            byte[] encoded = new byte[Math.min(length, TEXT_CHUNK) * 2];
+            for (int start = 0; start < length; start += TEXT_CHUNK) {
+                int count = Math.min(TEXT_CHUNK, length - start);
+                in.readFully(encoded, 0, 2 * count);
+                for (int i = 0; i < count; i++) {
+                    chars[start + i] = (char) ((encoded[2 * i] & 0xFF) << 8 | encoded[2 * i + 1] & 0xFF);
+                }
+            }
+            state.document = new PieceTable(chars, length);
+            state.text = state.document;
+
+            state.history = new EditorStateManager();
+            state.history.readFrom(in);
+            state.lineStates = new int[in.readInt()];
+            for (int i = 0; i < state.lineStates.length; i++) {
+                state.lineStates[i] = in.readInt();
+            }
+            return state;
+        }
+    }
+
+    // endregion
+}
+// 该文件实现非活动编辑器选项卡的压缩休眠与恢复
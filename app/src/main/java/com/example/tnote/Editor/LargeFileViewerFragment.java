@@ -0,0 +1,180 @@
+package com.example.tnote.Editor;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.tnote.R;
+import com.example.tnote.Utils.EditorUtils.MappedTextFile;
+import com.example.tnote.Utils.FileIOUtils;
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 大文件只读查看模式，文件超过 {@link com.example.tnote.Utils.FileIOUtils#LARGE_FILE_THRESHOLD} 时代替 EditorFragment：
+ * - 文件以内存映射方式打开，后台分段建立稀疏行索引，索引过程中已扫描的行即可浏览
+ * - 列表只为可见行创建视图，行文本通过滑动窗口按需解码，窗口外的行不驻留内存
+ * 内存占用与文件大小基本无关
+ */
+public class LargeFileViewerFragment extends Fragment {
+    private static final String TAG = "LargeFileViewer";
+
+    private final File currentFile;
+    private MappedTextFile mappedFile;
+    private final IOScheduler.CancellationToken openTask = new IOScheduler.CancellationToken(); // 映射与建索引任务
+    private LineAdapter adapter;
+    private TextView status;
+    private boolean destroyed;
+
+    public LargeFileViewerFragment(File file) {
+        currentFile = file;
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_large_file_viewer, container, false);
+        status = view.findViewById(R.id.viewer_status);
+        RecyclerView lines = view.findViewById(R.id.line_list);
+        lines.setLayoutManager(new LinearLayoutManager(requireContext()));
+        lines.setItemAnimator(null); // 行数随索引增长时不做插入动画
+        adapter = new LineAdapter();
+        lines.setAdapter(adapter);
+        openFile();
+        return view;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        openTask.cancel(); // 尚未开始的映射与索引任务不再执行
+        if (mappedFile != null) mappedFile.close(); // 同时让仍在运行的索引任务退出
+    }
+
+    /**
+     * 在 IO 调度器的后台通道映射文件并建立行索引，进度分批回到主线程扩展列表
+     */
+    private void openFile() {
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, FileIOUtils.keyOf(currentFile), openTask, () -> {
+            MappedTextFile file;
+            try {
+                file = MappedTextFile.open(currentFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Error mapping file: " + e.getMessage());
+                IOScheduler.postToMain(() -> {
+                    if (!destroyed) Toast.makeText(requireContext(), R.string.file_read_error, Toast.LENGTH_SHORT).show();
+                });
+                return;
+            }
+            IOScheduler.postToMain(() -> {
+                if (destroyed) {
+                    file.close();
+                } else {
+                    mappedFile = file;
+                    adapter.setFile(file);
+                }
+            });
+            indexNextSlice(file);
+        });
+    }
+
+    /**
+     * 扫描下一段建立索引，未完成时重新提交自己：每段之后让出后台通道，
+     * 多 GB 文件的索引不会让查找、休眠序列化、工作区索引等后台任务一直等待
+     */
+    private void indexNextSlice(MappedTextFile file) {
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, FileIOUtils.keyOf(currentFile), openTask, () -> {
+            boolean more = file.indexSlice((indexedLines, complete) ->
+                    IOScheduler.postToMain(() -> onIndexProgress(indexedLines, complete)));
+            if (more) indexNextSlice(file);
+        });
+    }
+
+    private void onIndexProgress(int indexedLines, boolean complete) {
+        if (destroyed) return;
+        adapter.setLineCount(indexedLines);
+        float megabytes = currentFile.length() / (1024f * 1024f);
+        status.setText(getString(complete ? R.string.large_file_ready : R.string.large_file_indexing,
+                megabytes, indexedLines));
+    }
+
+    /**
+     * 行列表适配器：维护一个以最近访问位置为中心的已解码行窗口，
+     * 绑定窗口外的行时整体平移窗口并重新解码
+     */
+    private static class LineAdapter extends RecyclerView.Adapter<LineAdapter.ViewHolder> {
+        private static final int WINDOW_LINES = 512;
+
+        private final String[] window = new String[WINDOW_LINES];
+        private MappedTextFile file;
+        private int lineCount;
+        private int windowStart;
+        private int windowCount;
+
+        void setFile(MappedTextFile file) {
+            this.file = file;
+            windowCount = 0;
+        }
+
+        void setLineCount(int count) {
+            int old = lineCount;
+            lineCount = count;
+            if (count > old) notifyItemRangeInserted(old, count - old);
+        }
+
+        @NonNull
+        @Override
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_file_line, parent, false);
+            return new ViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            holder.number.setText(String.valueOf(position + 1));
+            holder.text.setText(lineAt(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return lineCount;
+        }
+
+        private String lineAt(int line) {
+            if (line < windowStart || line >= windowStart + windowCount) {
+                // 窗口以目标行为中心，前后滚动都能命中
+                windowStart = Math.max(0, line - WINDOW_LINES / 2);
+                windowCount = file.readLines(windowStart, window, WINDOW_LINES);
+                if (line >= windowStart + windowCount) return "";
+            }
+            return window[line - windowStart];
+        }
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            final TextView number;
+            final TextView text;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                number = itemView.findViewById(R.id.line_number);
+                text = itemView.findViewById(R.id.line_text);
+            }
+        }
+    }
+}
+// 该文件实现大文件的只读查看模式
@@ -7,7 +7,9 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.text.Editable;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -23,6 +25,8 @@ import com.example.tnote.Editor.EditorFragment;
 import com.example.tnote.MainActivity;
 import com.example.tnote.R;
 import com.example.tnote.Terminal.TerminalFragment;
+import com.example.tnote.Utils.EditorUtils.TextWatcherAdapter;
+import com.example.tnote.Utils.IOScheduler;
 import com.example.tnote.Utils.TabManager;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -51,12 +55,25 @@ public class FileBrowserFragment extends Fragment {
     private int refreshFrequency = 1;
     private final Map<File, Long> dirModifiedTimes = new HashMap<>(); // 记录目录修改时间
 
+    // 工作区搜索
+    private static final long SEARCH_DELAY_MS = 300;
+    private View searchPanel;
+    private EditText searchQuery;
+    private TextView searchStatus;
+    private SearchResultAdapter searchAdapter;
+    private IOScheduler.CancellationToken searchTask;
+    private int searchResultCount;
+    private final Runnable searchRunnable = this::startSearch;
+    private TrigramIndex index;
+
     private volatile static File currentDirectory;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_filebrowser, container, false);
         initRootNode();
+        index = TrigramIndex.get(requireContext(), MainActivity.getAppDir()); // 首次在后台加载或建立
+        PathIndex.get(MainActivity.getAppDir()); // 提前建立快速打开的路径列表
         initViews(view);
         setButtonListener();
         loadDirectory(currentDirectory);
@@ -109,6 +126,83 @@ public class FileBrowserFragment extends Fragment {
         confirmButton = view.findViewById(R.id.btn_confirm);
         cancelButton = view.findViewById(R.id.btn_cancel);
         cardView = view.findViewById(R.id.card_file_name);
+        initSearchViews(view);
+    }
+
+    /**
+     * 工作区搜索面板：输入停顿后开始搜索，结果按分数插入列表，点击打开文件
+     */
+    private void initSearchViews(View view) {
+        searchPanel = view.findViewById(R.id.search_panel);
+        searchQuery = view.findViewById(R.id.et_search_query);
+        searchStatus = view.findViewById(R.id.tv_search_status);
+        RecyclerView results = view.findViewById(R.id.rv_search_results);
+        results.setLayoutManager(new LinearLayoutManager(getContext()));
+        searchAdapter = new SearchResultAdapter(result -> openFile(result.file));
+        results.setAdapter(searchAdapter);
+        searchQuery.addTextChangedListener(new TextWatcherAdapter() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                refreshHandler.removeCallbacks(searchRunnable);
+                refreshHandler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
+            }
+        });
+        view.findViewById(R.id.fab_search).setOnClickListener(v -> {
+            index.reconcileAll(); // 补上终端等其他途径对文件的修改
+            searchPanel.setVisibility(View.VISIBLE);
+            searchQuery.requestFocus();
+        });
+        view.findViewById(R.id.fab_quick_open).setOnClickListener(v ->
+                QuickOpenDialog.show(requireActivity(), PathIndex.get(MainActivity.getAppDir()), this::openFile));
+        view.findViewById(R.id.btn_search_close).setOnClickListener(v -> {
+            cancelSearch();
+            searchPanel.setVisibility(View.GONE);
+        });
+    }
+
+    private void startSearch() {
+        cancelSearch();
+        searchAdapter.clear();
+        searchResultCount = 0;
+        String query = searchQuery.getText().toString();
+        if (query.isEmpty()) {
+            searchStatus.setText("");
+            return;
+        }
+        searchStatus.setText(getString(R.string.workspace_searching, 0));
+        searchTask = WorkspaceSearch.search(MainActivity.getAppDir(), query, true, index, new WorkspaceSearch.ResultListener() {
+            @Override
+            public void onResults(List<WorkspaceSearch.FileResult> results) {
+                searchAdapter.addResults(results);
+                searchResultCount += results.size();
+                searchStatus.setText(getString(R.string.workspace_searching, searchResultCount));
+            }
+
+            @Override
+            public void onComplete(int filesScanned, int binarySkipped, long bytesScanned, long elapsedMs) {
+                searchTask = null;
+                searchStatus.setText(getString(R.string.workspace_search_done, searchResultCount, filesScanned,
+                        bytesScanned / (1024f * 1024f), binarySkipped, elapsedMs));
+            }
+        });
+    }
+
+    private void cancelSearch() {
+        refreshHandler.removeCallbacks(searchRunnable);
+        if (searchTask != null) {
+            searchTask.cancel();
+            searchTask = null;
+        }
+    }
+
+    private void openFile(File file) {
+        if (isAdded() && getContext() instanceof MainActivity) {
+            try {
+                ((MainActivity) getContext()).tabManager.switchTab(TabManager.TabType.EDITOR, file);
+            } catch (InterruptedException e) {
+                Log.e("FileBrowserFragment", "Interrupted while opening " + file, e);
+            }
+        }
     }
     private void setButtonListener(){
         addFile.setOnClickListener(v -> {
@@ -154,6 +248,7 @@ public class FileBrowserFragment extends Fragment {
             e.printStackTrace();
         }
 
+        index.onFileChanged(file);
         fileName.setText("");
         cardView.setVisibility(View.GONE);
         setGuidline(0.5f);
@@ -298,6 +393,7 @@ public class FileBrowserFragment extends Fragment {
         if (currentDirLastModified == null || currentModified != currentDirLastModified) {
             loadDirectory(currentDirectory); // 重新加载当前目录
             dirModifiedTimes.put(currentDirectory, currentModified);
+            index.reconcileDirectory(currentDirectory);
         }
 
         // 检查所有已展开的目录
@@ -312,6 +408,7 @@ public class FileBrowserFragment extends Fragment {
             if (lastModified == null || currentModifiedDir != lastModified) {
                 refreshNode(node);
                 dirModifiedTimes.put(dir, currentModifiedDir);
+                index.reconcileDirectory(dir);
             }
         }
     }
@@ -353,6 +450,7 @@ public class FileBrowserFragment extends Fragment {
         super.onDetach();
         Log.d("FileBrowserFragment", "onDetach()");
         stopAutoRefresh();
+        cancelSearch();
         dirModifiedTimes.clear();
         currentDirectory = null;
     }
@@ -0,0 +1,385 @@
+package com.example.tnote.FileBrowser;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工作区全部文件路径的内存索引，供快速打开（模糊匹配文件名）使用：
+ * - 相对路径首尾相接存放在一个 char 数组中，另以 int 数组记录每条路径的起点、长度与文件名起点，
+ *   10 万条路径只占几 MB，也没有逐条的 String 对象
+ * - 在后台通道中遍历建立；之后由每个目录上的 FileObserver 增量维护（新建、删除、移动），
+ *   删除只做标记，标记过多时整理数组
+ * - 每次变化递增 generation，调用方据此判断之前的候选集是否仍然可用
+ * 线程约定：建立在后台通道，文件事件在 FileObserver 线程，匹配在调用线程，数组访问都在 this 上同步
+ */
+public final class PathIndex {
+    private static final String TAG = "PathIndex";
+    private static final int EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM
+            | FileObserver.MOVED_TO | FileObserver.DELETE_SELF;
+    private static final int COMPACT_MIN_REMOVED = 1024;
+
+    private static PathIndex instance;
+
+    /**
+     * 匹配输出
+     */
+    public interface MatchSink {
+        void onMatch(int id, int score);
+
+        /**
+         * 匹配结束时仍在索引锁内调用；需要用编号解析路径或高亮位置的在这里完成，
+         * 出锁之后的整理会让编号改变
+         */
+        default void onComplete() {
+        }
+    }
+
+    private final File root;
+    private final String rootPrefix;
+
+    // 以下由 this 保护
+    private char[] chars = new char[64 * 1024];
+    private int charCount;
+    private int[] starts = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] nameStarts = new int[1024];   // 文件名在路径中的起点（相对路径起点）
+    private int count;
+    private int removedCount;                   // 已删除（长度记为 -1）的条目数
+    private volatile int generation;
+    private volatile boolean ready;
+    private final Map<String, DirectoryObserver> observers = new HashMap<>();
+
+    private PathIndex(File root) {
+        this.root = root.getAbsoluteFile();
+        this.rootPrefix = this.root.getPath() + File.separator;
+    }
+
+    /**
+     * 获取工作区的路径索引（首次调用时在后台建立）
+     */
+    public static synchronized PathIndex get(File root) {
+        if (instance == null || !instance.root.equals(root.getAbsoluteFile())) {
+            if (instance != null) instance.close();
+            instance = new PathIndex(root);
+            PathIndex index = instance;
+            IOScheduler.submit(IOScheduler.Priority.BACKGROUND, "path-index", () -> {
+                long start = System.nanoTime();
+                index.addTree(index.root);
+                index.ready = true;
+                Log.d(TAG, index.count + " paths indexed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            });
+        }
+        return instance;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 有效路径数
+     */
+    public synchronized int pathCount() {
+        return count - removedCount;
+    }
+
+    public synchronized String path(int id) {
+        return lengths[id] < 0 ? null : new String(chars, starts[id], lengths[id]);
+    }
+
+    public File file(String relativePath) {
+        return new File(root, relativePath);
+    }
+
+    /**
+     * 对路径做模糊匹配
+     * @param query 经 {@link #prepareQuery} 处理的查找串（非空）
+     * @param ids 只匹配这些编号（上一次较短查找串的候选集）；为 null 时匹配全部
+     * @param idCount ids 中的有效个数
+     * @param idGeneration ids 对应的 generation；之后索引有变化时忽略 ids 改为全量匹配
+     * @param token 取消令牌，可为 null；被取消时结果不完整
+     * @param sink 每个匹配的编号与分数；结束时在锁内调用其 onComplete
+     * @return 本次匹配所依据的 generation，调用方把它与候选集一起保存
+     */
+    public synchronized int match(char[] query, int[] ids, int idCount, int idGeneration,
+                                  IOScheduler.CancellationToken token, MatchSink sink) {
+        if (ids != null && idGeneration != generation) ids = null; // 有新增或整理过，候选集不再完整
+        int total = ids == null ? count : idCount;
+        for (int i = 0; i < total; i++) {
+            if ((i & 4095) == 0 && token != null && token.isCancelled()) break;
+            int id = ids == null ? i : ids[i];
+            if (lengths[id] < 0) continue;
+            int score = FuzzyScorer.score(chars, starts[id], lengths[id], nameStarts[id], query, null);
+            if (score != FuzzyScorer.NO_MATCH) sink.onMatch(id, score);
+        }
+        sink.onComplete();
+        return generation;
+    }
+
+    /**
+     * 把查找串转换为匹配时使用的形式（小写，去掉空白）
+     */
+    public static char[] prepareQuery(String query) {
+        StringBuilder out = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!Character.isWhitespace(c)) out.append(FuzzyScorer.lower(c));
+        }
+        char[] chars = new char[out.length()];
+        out.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+
+    /**
+     * 计算一条路径中与查找串匹配的字符位置（用于高亮）
+     * @return 相对路径起点的位置数组；不匹配或已删除时返回 null
+     */
+    public synchronized int[] matchPositions(int id, char[] query) {
+        if (lengths[id] < 0) return null;
+        int[] positions = new int[query.length];
+        int score = FuzzyScorer.score(chars, starts[id], lengths[id], nameStarts[id], query, positions);
+        return score == FuzzyScorer.NO_MATCH ? null : positions;
+    }
+
+    /**
+     * 停止监听文件变化
+     */
+    public synchronized void close() {
+        for (DirectoryObserver observer : observers.values()) observer.stopWatching();
+        observers.clear();
+    }
+
+    // region 维护
+
+    /**
+     * 递归加入目录下的全部文件并监听各级目录
+     */
+    private void addTree(File directory) {
+        if (!Files.isDirectory(directory.toPath()) || Files.isSymbolicLink(directory.toPath())) return;
+        watch(directory);
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.getName().startsWith(".")) continue; // 与工作区搜索相同的过滤
+            if (child.isDirectory()) {
+                addTree(child);
+            } else {
+                add(relativePath(child));
+            }
+        }
+    }
+
+    private synchronized void watch(File directory) {
+        String path = directory.getPath();
+        if (observers.containsKey(path)) return;
+        DirectoryObserver observer = new DirectoryObserver(directory);
+        observers.put(path, observer);
+        observer.startWatching();
+    }
+
+    private synchronized void add(String relativePath) {
+        int length = relativePath.length();
+        if (charCount + length > chars.length) chars = Arrays.copyOf(chars, Math.max(charCount + length, chars.length * 2));
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+        }
+        relativePath.getChars(0, length, chars, charCount);
+        starts[count] = charCount;
+        lengths[count] = length;
+        nameStarts[count] = relativePath.lastIndexOf(File.separatorChar) + 1;
+        charCount += length;
+        count++;
+        generation++;
+    }
+
+    /**
+     * 删除一条路径及其下的全部路径（它可能是文件也可能是目录），并停止监听其下的目录
+     */
+    private synchronized void remove(String relativePath) {
+        int length = relativePath.length();
+        int removed = 0;
+        for (int id = 0; id < count; id++) {
+            int entryLength = lengths[id];
+            if (entryLength < length || entryLength < 0) continue;
+            boolean matches = (entryLength == length || chars[starts[id] + length] == File.separatorChar)
+                    && startsWith(id, relativePath);
+            if (matches) {
+                lengths[id] = -1;
+                removed++;
+            }
+        }
+        String prefix = rootPrefix + relativePath;
+        observers.entrySet().removeIf(item -> {
+            String path = item.getKey();
+            boolean inside = path.equals(prefix) || path.startsWith(prefix + File.separator);
+            if (inside) item.getValue().stopWatching();
+            return inside;
+        });
+        if (removed == 0) return;
+        removedCount += removed;
+        generation++;
+        if (removedCount >= COMPACT_MIN_REMOVED && removedCount > count / 4) compact();
+    }
+
+    private boolean startsWith(int id, String prefix) {
+        int start = starts[id];
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[start + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 去掉已删除的条目（编号随之改变，generation 已递增，调用方的候选集会作废）
+     */
+    private void compact() {
+        char[] newChars = new char[Math.max(1024, charCount)];
+        int newCharCount = 0;
+        int live = 0;
+        for (int id = 0; id < count; id++) {
+            int length = lengths[id];
+            if (length < 0) continue;
+            System.arraycopy(chars, starts[id], newChars, newCharCount, length);
+            starts[live] = newCharCount;
+            lengths[live] = length;
+            nameStarts[live] = nameStarts[id];
+            newCharCount += length;
+            live++;
+        }
+        chars = newChars;
+        charCount = newCharCount;
+        count = live;
+        removedCount = 0;
+    }
+
+    private String relativePath(File file) {
+        String path = file.getAbsolutePath();
+        return path.startsWith(rootPrefix) ? path.substring(rootPrefix.length()) : path;
+    }
+
+    /**
+     * 监听一个目录的直接子项；新建的子目录递归加入，删除的子目录整体移除
+     */
+    private final class DirectoryObserver extends FileObserver {
+        private final File directory;
+
+        DirectoryObserver(File directory) {
+            super(directory, EVENTS);
+            this.directory = directory;
+        }
+
+        @Override
+        public void onEvent(int event, String name) {
+            if ((event & FileObserver.DELETE_SELF) != 0) {
+                remove(relativePath(directory));
+                return;
+            }
+            if (name == null || name.startsWith(".")) return; // 也忽略保存时的临时文件
+            File child = new File(directory, name);
+            String path = relativePath(child);
+            if ((event & (FileObserver.CREATE | FileObserver.MOVED_TO)) != 0) {
+                // 移入可能覆盖已有文件（如原子保存的 rename），先去掉旧条目；新建的名字不会已存在
+                if ((event & FileObserver.MOVED_TO) != 0) remove(path);
+                if (child.isDirectory()) {
+                    addTree(child);
+                } else {
+                    add(path);
+                }
+            } else if ((event & (FileObserver.DELETE | FileObserver.MOVED_FROM)) != 0) {
+                remove(path);
+            }
+        }
+    }
+
+    // endregion
+
+    /**
+     * 模糊匹配打分：查找串的字符须按顺序出现在路径中（忽略大小写）
+     * - 先正向找到最早的完整匹配终点，再从终点反向找到最短的匹配窗口
+     * - 窗口内按贪心位置计分：连续匹配、单词边界（/ _ - . 空格之后或驼峰）加分，间隔扣分，
+     *   落在文件名部分的匹配加分；路径越短略优
+     */
+    static final class FuzzyScorer {
+        static final int NO_MATCH = Integer.MIN_VALUE;
+        private static final int SCORE_MATCH = 16;
+        private static final int BONUS_BOUNDARY = 8;
+        private static final int BONUS_SEPARATOR = 10;  // 紧跟在路径分隔符之后
+        private static final int BONUS_CONSECUTIVE = 6;
+        private static final int BONUS_NAME = 4;
+        private static final int PENALTY_GAP_START = 3;
+        private static final int PENALTY_GAP_EXTENSION = 1;
+
+        private FuzzyScorer() {
+        }
+
+        /**
+         * @param positions 不为 null 时写入各查找字符的匹配位置（相对路径起点）
+         * @return 分数，不匹配时返回 NO_MATCH
+         */
+        static int score(char[] chars, int start, int length, int nameStart, char[] query, int[] positions) {
+            int m = query.length;
+            if (m > length) return NO_MATCH;
+            // 正向：最早完成匹配的位置
+            int q = 0;
+            int end = -1;
+            for (int i = 0; i < length; i++) {
+                if (lower(chars[start + i]) == query[q] && ++q == m) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) return NO_MATCH;
+            // 反向：从终点收缩出最短窗口
+            q = m - 1;
+            int begin = end;
+            for (int i = end; i >= 0; i--) {
+                if (lower(chars[start + i]) == query[q] && --q < 0) {
+                    begin = i;
+                    break;
+                }
+            }
+            // 窗口内正向计分
+            int score = 0;
+            int previous = -1;
+            q = 0;
+            for (int i = begin; i <= end && q < m; i++) {
+                char c = chars[start + i];
+                if (lower(c) != query[q]) continue;
+                score += SCORE_MATCH;
+                char before = i > 0 ? chars[start + i - 1] : File.separatorChar;
+                if (before == File.separatorChar) {
+                    score += BONUS_SEPARATOR;
+                } else if (before == '_' || before == '-' || before == '.' || before == ' '
+                        || (Character.isLowerCase(before) && Character.isUpperCase(c))) {
+                    score += BONUS_BOUNDARY;
+                }
+                if (previous >= 0) {
+                    int gap = i - previous - 1;
+                    if (gap == 0) score += BONUS_CONSECUTIVE;
+                    else score -= PENALTY_GAP_START + (gap - 1) * PENALTY_GAP_EXTENSION;
+                }
+                if (i >= nameStart) score += BONUS_NAME;
+                if (positions != null) positions[q] = i;
+                previous = i;
+                q++;
+            }
+            return score - length / 8;
+        }
+
+        static char lower(char c) {
+            return c < 128 ? (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c) : Character.toLowerCase(c);
+        }
+    }
+}
+// 该文件实现工作区路径的内存索引与模糊匹配打分
@@ -0,0 +1,110 @@
+package com.example.tnote.FileBrowser;
+
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.tnote.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 快速打开的结果列表：文件名与所在目录分两行显示，匹配的字符高亮
+ */
+public class QuickOpenAdapter extends RecyclerView.Adapter<QuickOpenAdapter.ViewHolder> {
+    private List<Result> results = new ArrayList<>();
+    private final OnResultClickListener listener;
+
+    /**
+     * 一条匹配结果
+     */
+    public static final class Result {
+        public final String path;       // 相对工作区的路径
+        final int nameStart;            // 文件名在路径中的起点
+        final int[] positions;          // 匹配字符在路径中的位置
+
+        Result(String path, int nameStart, int[] positions) {
+            this.path = path;
+            this.nameStart = nameStart;
+            this.positions = positions;
+        }
+    }
+
+    public interface OnResultClickListener {
+        void onResultClick(Result result);
+    }
+
+    public QuickOpenAdapter(OnResultClickListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 替换全部结果（结果最多几十条，直接整体刷新）
+     */
+    @SuppressWarnings("NotifyDataSetChanged")
+    public void setResults(List<Result> results) {
+        this.results = results;
+        notifyDataSetChanged();
+    }
+
+    public Result getItem(int position) {
+        return results.get(position);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_quick_open, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Result result = results.get(position);
+        int color = ContextCompat.getColor(holder.itemView.getContext(), R.color.quick_open_match);
+        holder.name.setText(highlight(result, result.nameStart, result.path.length(), color));
+        holder.directory.setText(highlight(result, 0, result.nameStart, color));
+        holder.directory.setVisibility(result.nameStart == 0 ? View.GONE : View.VISIBLE);
+        holder.itemView.setOnClickListener(v -> listener.onResultClick(result));
+    }
+
+    /**
+     * 路径 [start, end) 部分，其中的匹配字符着色
+     */
+    private static CharSequence highlight(Result result, int start, int end, int color) {
+        SpannableString text = new SpannableString(result.path.substring(start, end));
+        for (int position : result.positions) {
+            if (position < start || position >= end) continue;
+            text.setSpan(new ForegroundColorSpan(color), position - start, position - start + 1,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return text;
+    }
+
+    @Override
+    public int getItemCount() {
+        return results.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView name;
+        final TextView directory;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            name = itemView.findViewById(R.id.quick_open_name);
+            directory = itemView.findViewById(R.id.quick_open_directory);
+        }
+    }
+}
+// 该文件实现快速打开结果的高亮列表
@@ -0,0 +1,206 @@
+package com.example.tnote.FileBrowser;
+
+import android.content.Context;
+import android.text.Editable;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.tnote.R;
+import com.example.tnote.Utils.EditorUtils.TextWatcherAdapter;
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 快速打开对话框：输入文件名片段，按模糊匹配分数列出工作区中的文件
+ * - 每次输入都在交互通道中重新匹配，未完成的上一次匹配被取消
+ * - 查找串变长时只在上一次的候选集（所有匹配的编号）中匹配；删除字符时退回到对应长度的候选集，
+ *   因此连续输入时每次只需检查越来越少的路径
+ * - 只保留分数最高的若干条，并只为它们计算高亮位置
+ * 线程约定：公开方法与候选集栈都在主线程使用
+ */
+public final class QuickOpenDialog {
+    private static final int MAX_RESULTS = 50;
+
+    public interface OnFileSelectedListener {
+        void onFileSelected(File file);
+    }
+
+    /**
+     * 一次完成的匹配：查找串、全部匹配的编号及其对应的索引 generation
+     */
+    private static final class Level {
+        final char[] query;
+        final int[] ids;
+        final int count;
+        final int generation;
+
+        Level(char[] query, int[] ids, int count, int generation) {
+            this.query = query;
+            this.ids = ids;
+            this.count = count;
+            this.generation = generation;
+        }
+    }
+
+    private final PathIndex index;
+    private final OnFileSelectedListener listener;
+    private final TextView status;
+    private final QuickOpenAdapter adapter;
+    private final AlertDialog dialog;
+    private final List<Level> levels = new ArrayList<>(); // 查找串逐级变长的候选集
+    private IOScheduler.CancellationToken task;
+
+    private QuickOpenDialog(Context context, PathIndex index, OnFileSelectedListener listener) {
+        this.index = index;
+        this.listener = listener;
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_quick_open, null);
+        EditText query = view.findViewById(R.id.et_quick_open_query);
+        status = view.findViewById(R.id.tv_quick_open_status);
+        RecyclerView results = view.findViewById(R.id.rv_quick_open_results);
+        results.setLayoutManager(new LinearLayoutManager(context));
+        adapter = new QuickOpenAdapter(this::open);
+        results.setAdapter(adapter);
+        query.addTextChangedListener(new TextWatcherAdapter() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                update(s.toString());
+            }
+        });
+        query.setOnEditorActionListener((v, actionId, event) -> {
+            boolean enter = actionId == EditorInfo.IME_ACTION_GO
+                    || (event != null && event.getKeyCode() == KeyEvent.KEYCODE_ENTER);
+            if (enter && adapter.getItemCount() > 0) open(adapter.getItem(0));
+            return enter;
+        });
+        dialog = new AlertDialog.Builder(context)
+                .setView(view)
+                .setOnDismissListener(d -> cancel())
+                .create();
+        update("");
+    }
+
+    /**
+     * 显示快速打开对话框
+     * @param listener 选中文件后回调（主线程），对话框随即关闭
+     */
+    public static void show(Context context, PathIndex index, OnFileSelectedListener listener) {
+        new QuickOpenDialog(context, index, listener).dialog.show();
+    }
+
+    private void update(String text) {
+        cancel();
+        char[] query = PathIndex.prepareQuery(text);
+        if (query.length == 0) {
+            levels.clear();
+            adapter.setResults(new ArrayList<>());
+            status.setText(index.isReady()
+                    ? status.getContext().getString(R.string.quick_open_status, 0, index.pathCount())
+                    : status.getContext().getString(R.string.quick_open_indexing));
+            return;
+        }
+        // 退回到仍是当前查找串前缀的最长一级
+        while (!levels.isEmpty() && !isPrefix(levels.get(levels.size() - 1).query, query)) {
+            levels.remove(levels.size() - 1);
+        }
+        Level base = levels.isEmpty() ? null : levels.get(levels.size() - 1);
+        IOScheduler.CancellationToken token = new IOScheduler.CancellationToken();
+        task = IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, "quick-open", token, () -> {
+            Collector collector = new Collector(query, base == null ? 1024 : base.count);
+            int generation = base == null
+                    ? index.match(query, null, 0, 0, token, collector)
+                    : index.match(query, base.ids, base.count, base.generation, token, collector);
+            if (token.isCancelled()) return;
+            List<QuickOpenAdapter.Result> results = collector.results;
+            IOScheduler.postToMain(() -> {
+                if (token.isCancelled()) return;
+                task = null;
+                if (base == null || !Arrays.equals(base.query, query)) {
+                    levels.add(new Level(query, collector.ids, collector.count, generation));
+                }
+                adapter.setResults(results);
+                status.setText(status.getContext().getString(R.string.quick_open_status,
+                        collector.count, index.pathCount()));
+            });
+        });
+    }
+
+    private static boolean isPrefix(char[] prefix, char[] query) {
+        if (prefix.length > query.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (prefix[i] != query[i]) return false;
+        }
+        return true;
+    }
+
+    private void open(QuickOpenAdapter.Result result) {
+        cancel();
+        dialog.dismiss();
+        listener.onFileSelected(index.file(result.path));
+    }
+
+    private void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * 在匹配线程收集结果：全部匹配的编号（下一级的候选集）与分数最高的 MAX_RESULTS 条；
+     * 后者在索引锁内解析为路径与高亮位置，避免之后的整理改变编号
+     */
+    private final class Collector implements PathIndex.MatchSink {
+        private final char[] query;
+        int[] ids;
+        int count;
+        List<QuickOpenAdapter.Result> results;
+        private final int[] topIds = new int[MAX_RESULTS];
+        private final int[] topScores = new int[MAX_RESULTS];
+        private int topCount;
+
+        Collector(char[] query, int capacity) {
+            this.query = query;
+            ids = new int[Math.max(16, capacity)];
+        }
+
+        @Override
+        public void onMatch(int id, int score) {
+            if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = id;
+            if (topCount == MAX_RESULTS && score <= topScores[MAX_RESULTS - 1]) return;
+            // 插入到降序数组中，同分时先到（编号小）的在前
+            int position = topCount == MAX_RESULTS ? MAX_RESULTS - 1 : topCount++;
+            while (position > 0 && topScores[position - 1] < score) {
+                topScores[position] = topScores[position - 1];
+                topIds[position] = topIds[position - 1];
+                position--;
+            }
+            topScores[position] = score;
+            topIds[position] = id;
+        }
+
+        @Override
+        public void onComplete() {
+            results = new ArrayList<>(topCount);
+            for (int i = 0; i < topCount; i++) {
+                String path = index.path(topIds[i]);
+                int[] positions = index.matchPositions(topIds[i], query);
+                if (path == null || positions == null) continue;
+                results.add(new QuickOpenAdapter.Result(path, path.lastIndexOf(File.separatorChar) + 1, positions));
+            }
+        }
+    }
+}
+// 该文件实现按文件名模糊匹配的快速打开对话框
@@ -0,0 +1,93 @@
+package com.example.tnote.FileBrowser;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.tnote.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 工作区搜索结果列表：结果分批到达，每条按分数插入到有序位置，已显示的条目不重排
+ */
+public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.ViewHolder> {
+    private final List<WorkspaceSearch.FileResult> results = new ArrayList<>();
+    private final OnResultClickListener listener;
+
+    public interface OnResultClickListener {
+        void onResultClick(WorkspaceSearch.FileResult result);
+    }
+
+    public SearchResultAdapter(OnResultClickListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 按分数（降序）插入一批结果，分数相同时先到的在前
+     */
+    public void addResults(List<WorkspaceSearch.FileResult> batch) {
+        for (WorkspaceSearch.FileResult result : batch) {
+            int low = 0;
+            int high = results.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (results.get(mid).score >= result.score) low = mid + 1;
+                else high = mid;
+            }
+            results.add(low, result);
+            notifyItemInserted(low);
+        }
+    }
+
+    public void clear() {
+        int count = results.size();
+        results.clear();
+        notifyItemRangeRemoved(0, count);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_search_result, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        WorkspaceSearch.FileResult result = results.get(position);
+        holder.path.setText(holder.itemView.getContext().getString(
+                R.string.search_result_title, result.relativePath, result.matchCount));
+        StringBuilder hits = new StringBuilder();
+        for (WorkspaceSearch.Hit hit : result.hits) {
+            if (hits.length() > 0) hits.append('\n');
+            hits.append(hit.line).append(": ").append(hit.preview);
+        }
+        holder.hits.setText(hits);
+        holder.hits.setVisibility(result.hits.isEmpty() ? View.GONE : View.VISIBLE);
+        holder.itemView.setOnClickListener(v -> listener.onResultClick(result));
+    }
+
+    @Override
+    public int getItemCount() {
+        return results.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView path;
+        final TextView hits;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            path = itemView.findViewById(R.id.result_path);
+            hits = itemView.findViewById(R.id.result_hits);
+        }
+    }
+}
+// 该文件实现工作区搜索结果的有序列表
@@ -0,0 +1,743 @@
+package com.example.tnote.FileBrowser;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 工作区的持久化三元组（trigram）索引，用于在全文搜索前筛选候选文件：
+ * - 以文件的 UTF-8 字节（ASCII 字母折叠为小写）中出现的每个连续 3 字节为 key，
+ *   倒排表为包含它的文件编号，升序存储为差值 + 变长整数
+ * - 基础段：有序的三元组数组 + 偏移数组 + 一整块倒排字节，查找为二分；启动时整体读入
+ * - 增量：文件变化时旧编号标记删除、分配新编号并追加到内存中的增量倒排，
+ *   同时在日志文件中追加一条带 CRC 的记录；重启时基础段 + 日志重放恢复
+ * - 日志或已删除编号过多时在后台合并为新的基础段（重新编号，原子替换），日志清空
+ * 查询返回的候选集合是真实匹配的超集，调用方仍需逐个验证。
+ * 线程约定：所有修改都在 IO 调度器的后台通道中按 key 串行执行；查询可在任意线程调用
+ */
+public final class TrigramIndex {
+    private static final String TAG = "TrigramIndex";
+    private static final int BASE_MAGIC = 0x54474231;   // "TGB1"
+    private static final int LOG_MAGIC = 0x54474C31;    // "TGL1"
+    private static final int TRIGRAM_SPACE = 1 << 24;
+    private static final long MAX_FILE_BYTES = 64L * 1024 * 1024; // 与 WorkspaceSearch 一致
+    private static final int READ_CHUNK = 64 * 1024;
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final float COMPACT_DELETED_RATIO = 0.25f;   // 已删除编号占比超过该值时合并
+    private static final long COMPACT_LOG_MIN_BYTES = 1024 * 1024;
+
+    private static TrigramIndex instance;
+
+    /**
+     * 一个被索引的文件；文件变化后旧条目标记删除，新内容使用新编号
+     */
+    private static final class Entry {
+        final String path;
+        final long length;
+        final long lastModified;
+        boolean deleted;
+
+        Entry(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 增量倒排：编号只增不减，直接按差值追加编码
+     */
+    private static final class DeltaList {
+        byte[] bytes = new byte[8];
+        int size;
+        int last;
+
+        void add(int id) {
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            size = putVarint(bytes, size, id - last);
+            last = id;
+        }
+    }
+
+    private final File root;
+    private final File baseFile;
+    private final File logFile;
+    private final String key;
+
+    // 以下状态由 this 保护；只有后台通道中的任务会修改
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    private int deletedCount;
+    private int[] baseTrigrams = new int[0];
+    private int[] baseOffsets = {0};
+    private byte[] basePostings = new byte[0];
+    private final Map<Integer, DeltaList> delta = new HashMap<>();
+    private long generation;             // 基础段代数，日志头记录它以识别已合并的日志
+    private volatile boolean ready;
+
+    // 仅在后台通道中使用
+    private final long[] seen = new long[TRIGRAM_SPACE / 64];
+    private int[] touched = new int[4096];
+    private int touchedCount;
+    private long logBytes;
+
+    private TrigramIndex(File root, File directory) {
+        this.root = root;
+        this.baseFile = new File(directory, "trigram.base");
+        this.logFile = new File(directory, "trigram.log");
+        this.key = "trigram-index@" + root.getAbsolutePath();
+    }
+
+    /**
+     * 获取工作区索引（首次调用时在后台加载或建立）
+     * @param root 工作区根目录
+     */
+    public static synchronized TrigramIndex get(Context context, File root) {
+        if (instance == null || !instance.root.equals(root)) {
+            File directory = new File(context.getFilesDir(), "index");
+            if (!directory.isDirectory() && !directory.mkdirs()) Log.e(TAG, "Cannot create " + directory);
+            instance = new TrigramIndex(root, directory);
+            instance.open();
+        }
+        return instance;
+    }
+
+    /**
+     * 文件已保存或新建，重新索引该文件
+     */
+    public void onFileChanged(File file) {
+        if (!file.getAbsolutePath().startsWith(root.getAbsolutePath() + File.separator)) return; // 工作区之外的文件不索引
+        submit(() -> {
+            updateFile(file.getAbsoluteFile());
+            maybeCompact();
+        });
+    }
+
+    /**
+     * 检查一个目录下的直接子项（不递归），同步新增、修改与删除的文件
+     */
+    public void reconcileDirectory(File directory) {
+        submit(() -> {
+            reconcile(directory.getAbsoluteFile(), false);
+            maybeCompact();
+        });
+    }
+
+    /**
+     * 检查整个工作区（只比较长度与修改时间，未变化的文件不读取）
+     */
+    public void reconcileAll() {
+        submit(() -> {
+            reconcile(root.getAbsoluteFile(), true);
+            maybeCompact();
+        });
+    }
+
+    /**
+     * 查找可能包含 query 的文件
+     * @param query 查找串
+     * @return 候选文件；索引尚不可用或查找串不足 3 字节（无法筛选）时返回 null
+     */
+    public List<File> candidates(String query) {
+        if (!ready) return null;
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 3) return null;
+        Set<Integer> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= bytes.length; i++) {
+            trigrams.add(trigram(bytes[i], bytes[i + 1], bytes[i + 2]));
+        }
+        synchronized (this) {
+            int[] result = null;
+            for (int trigram : trigrams) {
+                int[] ids = postings(trigram);
+                result = result == null ? ids : intersect(result, ids);
+                if (result.length == 0) break;
+            }
+            List<File> files = new ArrayList<>(result.length);
+            for (int id : result) {
+                Entry entry = entries.get(id);
+                if (!entry.deleted) files.add(new File(entry.path));
+            }
+            return files;
+        }
+    }
+
+    /**
+     * 在已排队的索引更新（例如打开面板时的 reconcileAll）完成之后执行查询任务，
+     * 使 candidates 能看到这些更新，保证候选集合仍是真实匹配的超集
+     * @param token 取消令牌，排队期间取消则不再执行
+     */
+    public void afterPendingUpdates(IOScheduler.CancellationToken token, Runnable task) {
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, key, token, task);
+    }
+
+    private void submit(Runnable task) {
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, key, task);
+    }
+
+    private void open() {
+        submit(() -> {
+            try {
+                load();
+            } catch (IOException e) {
+                Log.w(TAG, "Index unreadable, rebuilding: " + e.getMessage());
+                clear();
+            }
+            reconcile(root.getAbsoluteFile(), true); // 首次建立或补上离线期间的变化
+            ready = true;
+            maybeCompact();
+        });
+    }
+
+    // region 增量更新（后台通道）
+
+    /**
+     * 同步目录下的文件；目录中已不存在的文件（递归时包括整个被删除的子目录）从索引中删除
+     */
+    private void reconcile(File directory, boolean recursive) {
+        Set<String> present = new HashSet<>();
+        walk(directory, recursive, present);
+        String prefix = directory.getPath() + File.separator;
+        List<Integer> removed = new ArrayList<>();
+        Map<String, Boolean> subdirectories = new HashMap<>(); // 非递归时只检查直接子目录是否还在
+        synchronized (this) {
+            for (Map.Entry<String, Integer> item : idsByPath.entrySet()) {
+                String path = item.getKey();
+                if (!path.startsWith(prefix) || present.contains(path)) continue;
+                int slash = path.indexOf(File.separatorChar, prefix.length());
+                boolean gone = recursive || slash < 0;
+                if (!gone) {
+                    String subdirectory = path.substring(0, slash);
+                    Boolean exists = subdirectories.get(subdirectory);
+                    if (exists == null) {
+                        exists = new File(subdirectory).isDirectory();
+                        subdirectories.put(subdirectory, exists);
+                    }
+                    gone = !exists;
+                }
+                if (gone) removed.add(item.getValue());
+            }
+        }
+        for (int id : removed) {
+            synchronized (this) {
+                markDeleted(id);
+            }
+            appendLog(deleteRecord(id));
+        }
+    }
+
+    private void walk(File directory, boolean recursive, Set<String> present) {
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.getName().startsWith(".")) continue; // 与 WorkspaceSearch 相同的过滤
+            if (child.isDirectory()) {
+                if (recursive && !Files.isSymbolicLink(child.toPath())) walk(child, true, present);
+            } else {
+                present.add(child.getPath());
+                updateFile(child);
+            }
+        }
+    }
+
+    /**
+     * 文件未变化时不做任何事；否则读取并编入新的编号
+     */
+    private void updateFile(File file) {
+        String path = file.getPath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        Integer oldId;
+        synchronized (this) {
+            oldId = idsByPath.get(path);
+            if (oldId != null) {
+                Entry old = entries.get(oldId);
+                if (old.length == length && old.lastModified == lastModified) return;
+            }
+        }
+        if (!file.isFile()) {
+            if (oldId != null) {
+                synchronized (this) {
+                    markDeleted(oldId);
+                }
+                appendLog(deleteRecord(oldId));
+            }
+            return;
+        }
+        int[] trigrams;
+        try {
+            trigrams = extractTrigrams(file, length);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot index " + path + ": " + e.getMessage());
+            return;
+        }
+        int id;
+        synchronized (this) {
+            if (oldId != null) markDeleted(oldId);
+            id = addEntry(new Entry(path, length, lastModified), trigrams);
+        }
+        appendLog(addRecord(id, path, length, lastModified, trigrams));
+    }
+
+    private void markDeleted(int id) {
+        Entry entry = entries.get(id);
+        if (entry.deleted) return;
+        entry.deleted = true;
+        deletedCount++;
+        idsByPath.remove(entry.path);
+    }
+
+    private int addEntry(Entry entry, int[] trigrams) {
+        int id = entries.size();
+        entries.add(entry);
+        idsByPath.put(entry.path, id);
+        for (int trigram : trigrams) {
+            DeltaList list = delta.get(trigram);
+            if (list == null) {
+                list = new DeltaList();
+                delta.put(trigram, list);
+            }
+            list.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * 文件名与内容中出现的全部三元组（去重、升序）；二进制文件或过大的文件只有文件名的三元组
+     */
+    private int[] extractTrigrams(File file, long length) throws IOException {
+        touchedCount = 0;
+        byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+        addTrigrams(name, name.length);
+        if (length <= MAX_FILE_BYTES) {
+            try (FileInputStream in = new FileInputStream(file);
+                 FileChannel channel = in.getChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+                byte[] chunk = buffer.array();
+                boolean first = true;
+                while (channel.read(buffer) > 0) {
+                    int end = buffer.position();
+                    if (first) {
+                        first = false;
+                        if (WorkspaceSearch.isBinary(ByteBuffer.wrap(chunk, 0, end))) break; // 不会被搜索到
+                    }
+                    addTrigrams(chunk, end);
+                    // 末尾 2 个字节留到下一块开头，跨块的三元组不会遗漏
+                    int carry = Math.min(2, end);
+                    System.arraycopy(chunk, end - carry, chunk, 0, carry);
+                    buffer.position(carry);
+                }
+            }
+        }
+        int[] trigrams = Arrays.copyOf(touched, touchedCount);
+        for (int i = 0; i < touchedCount; i++) seen[touched[i] >>> 6] = 0; // 只清理用过的位
+        Arrays.sort(trigrams);
+        return trigrams;
+    }
+
+    private void addTrigrams(byte[] bytes, int end) {
+        for (int i = 0; i + 3 <= end; i++) {
+            int trigram = trigram(bytes[i], bytes[i + 1], bytes[i + 2]);
+            long bit = 1L << (trigram & 63);
+            int word = trigram >>> 6;
+            if ((seen[word] & bit) != 0) continue;
+            seen[word] |= bit;
+            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = trigram;
+        }
+    }
+
+    // endregion
+
+    // region 查询
+
+    /**
+     * 某个三元组的完整倒排（基础段 + 增量，升序）
+     */
+    private int[] postings(int trigram) {
+        int index = Arrays.binarySearch(baseTrigrams, trigram);
+        int[] base = index >= 0 ? decode(basePostings, baseOffsets[index], baseOffsets[index + 1]) : new int[0];
+        DeltaList list = delta.get(trigram);
+        if (list == null) return base;
+        int[] added = decode(list.bytes, 0, list.size);
+        // 增量中的编号都大于基础段，直接拼接仍然有序
+        int[] merged = Arrays.copyOf(base, base.length + added.length);
+        System.arraycopy(added, 0, merged, base.length, added.length);
+        return merged;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // endregion
+
+    // region 合并与持久化（后台通道）
+
+    private void maybeCompact() {
+        boolean due;
+        synchronized (this) {
+            due = deletedCount > entries.size() * COMPACT_DELETED_RATIO
+                    || logBytes > Math.max(COMPACT_LOG_MIN_BYTES, basePostings.length / 4);
+        }
+        if (!due) return;
+        try {
+            compact();
+        } catch (IOException e) {
+            Log.e(TAG, "Index compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把基础段与增量合并为新的基础段：去掉已删除的编号并重新连续编号，写入磁盘后清空日志。
+     * 修改只发生在本通道中，合并期间读取旧结构是安全的，最后在锁内替换
+     */
+    private void compact() throws IOException {
+        int[] remap = new int[entries.size()];
+        List<Entry> live = new ArrayList<>();
+        for (int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            remap[id] = entry.deleted ? -1 : live.size();
+            if (!entry.deleted) live.add(entry);
+        }
+        int[] keys = mergedKeys();
+        int[] trigrams = new int[keys.length];
+        int[] offsets = new int[keys.length + 1];
+        byte[] postings = new byte[Math.max(16, basePostings.length)];
+        int size = 0;
+        int count = 0;
+        for (int trigram : keys) {
+            int previous = 0;
+            int start = size;
+            for (int id : postings(trigram)) {
+                int mapped = remap[id];
+                if (mapped < 0) continue;
+                if (size + 5 > postings.length) postings = Arrays.copyOf(postings, postings.length * 2);
+                size = putVarint(postings, size, mapped - previous);
+                previous = mapped;
+            }
+            if (size == start) continue; // 只剩已删除文件的三元组
+            trigrams[count] = trigram;
+            offsets[count++] = start;
+            offsets[count] = size;
+        }
+        trigrams = Arrays.copyOf(trigrams, count);
+        offsets = Arrays.copyOf(offsets, count + 1);
+        postings = Arrays.copyOf(postings, size);
+        long newGeneration = generation + 1;
+
+        writeBase(live, trigrams, offsets, postings, newGeneration);
+        synchronized (this) {
+            entries.clear();
+            entries.addAll(live);
+            idsByPath.clear();
+            for (int id = 0; id < live.size(); id++) idsByPath.put(live.get(id).path, id);
+            deletedCount = 0;
+            baseTrigrams = trigrams;
+            baseOffsets = offsets;
+            basePostings = postings;
+            delta.clear();
+            generation = newGeneration;
+        }
+        resetLog(); // 日志头记录新的代数；此前崩溃时旧日志因代数不符被忽略
+    }
+
+    private int[] mergedKeys() {
+        Set<Integer> extra = new HashSet<>(delta.keySet());
+        for (int trigram : baseTrigrams) extra.remove(trigram);
+        int[] keys = Arrays.copyOf(baseTrigrams, baseTrigrams.length + extra.size());
+        int i = baseTrigrams.length;
+        for (int trigram : extra) keys[i++] = trigram;
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private void writeBase(List<Entry> live, int[] trigrams, int[] offsets, byte[] postings, long newGeneration)
+            throws IOException {
+        File temp = new File(baseFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, READ_CHUNK))) {
+            out.writeInt(BASE_MAGIC);
+            out.writeLong(newGeneration);
+            out.writeInt(live.size());
+            for (Entry entry : live) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+            }
+            out.writeInt(trigrams.length);
+            for (int i = 0; i < trigrams.length; i++) {
+                out.writeInt(trigrams[i]);
+                out.writeInt(offsets[i + 1] - offsets[i]);
+            }
+            out.writeInt(postings.length);
+            out.write(postings);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), baseFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        clear();
+        if (!baseFile.isFile()) {
+            resetLog();
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(baseFile), READ_CHUNK))) {
+            if (in.readInt() != BASE_MAGIC) throw new IOException("Bad index header");
+            long baseGeneration = in.readLong();
+            int fileCount = in.readInt();
+            List<Entry> loaded = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) loaded.add(new Entry(in.readUTF(), in.readLong(), in.readLong()));
+            int trigramCount = in.readInt();
+            int[] trigrams = new int[trigramCount];
+            int[] offsets = new int[trigramCount + 1];
+            for (int i = 0; i < trigramCount; i++) {
+                trigrams[i] = in.readInt();
+                offsets[i + 1] = offsets[i] + in.readInt();
+            }
+            byte[] postings = new byte[in.readInt()];
+            in.readFully(postings);
+            synchronized (this) {
+                entries.addAll(loaded);
+                for (int id = 0; id < loaded.size(); id++) idsByPath.put(loaded.get(id).path, id);
+                baseTrigrams = trigrams;
+                baseOffsets = offsets;
+                basePostings = postings;
+                generation = baseGeneration;
+            }
+        }
+        replayLog();
+    }
+
+    private synchronized void clear() {
+        entries.clear();
+        idsByPath.clear();
+        deletedCount = 0;
+        baseTrigrams = new int[0];
+        baseOffsets = new int[]{0};
+        basePostings = new byte[0];
+        delta.clear();
+        generation = 0;
+    }
+
+    // endregion
+
+    // region 日志
+
+    private static byte[] addRecord(int id, String path, long length, long lastModified, int[] trigrams) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32 + trigrams.length * 2);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(RECORD_ADD);
+            out.writeInt(id);
+            out.writeUTF(path);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeInt(trigrams.length);
+            byte[] encoded = new byte[trigrams.length * 5];
+            int size = 0;
+            int previous = 0;
+            for (int trigram : trigrams) {
+                size = putVarint(encoded, size, trigram - previous);
+                previous = trigram;
+            }
+            out.write(encoded, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 内存流不会失败
+        }
+        return payload.toByteArray();
+    }
+
+    private static byte[] deleteRecord(int id) {
+        return new byte[]{RECORD_DELETE, (byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id};
+    }
+
+    /**
+     * 追加一条记录：[int 长度][payload][int CRC32]；失败时只记录日志，下次启动的全量检查会补上
+     */
+    private void appendLog(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        try (FileOutputStream file = new FileOutputStream(logFile, true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            Log.e(TAG, "Index log append failed: " + e.getMessage());
+            return;
+        }
+        logBytes += payload.length + 8;
+    }
+
+    private void resetLog() throws IOException {
+        try (FileOutputStream file = new FileOutputStream(logFile);
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(LOG_MAGIC);
+            out.writeLong(generation);
+            out.flush();
+            file.getFD().sync();
+        }
+        logBytes = 0;
+    }
+
+    /**
+     * 重放日志；代数不符（合并后尚未清空日志时崩溃）则丢弃，遇到截断或校验失败的记录即停止
+     */
+    private void replayLog() throws IOException {
+        if (!logFile.isFile()) {
+            resetLog();
+            return;
+        }
+        long valid = 12;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), READ_CHUNK))) {
+            if (in.readInt() != LOG_MAGIC || in.readLong() != generation) {
+                in.close();
+                resetLog();
+                return;
+            }
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > logFile.length()) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!applyRecord(payload)) break;
+                valid += payload.length + 8;
+            }
+        }
+        if (valid < logFile.length()) {
+            try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+                out.getChannel().truncate(valid);
+            }
+        }
+        logBytes = valid - 12;
+    }
+
+    private boolean applyRecord(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        synchronized (this) {
+            if (type == RECORD_DELETE) {
+                int id = in.readInt();
+                if (id >= entries.size()) return false;
+                markDeleted(id);
+                return true;
+            }
+            if (type != RECORD_ADD) return false;
+            int id = in.readInt();
+            if (id != entries.size()) return false; // 编号必须连续
+            Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong());
+            int[] trigrams = new int[in.readInt()];
+            int previous = 0;
+            for (int i = 0; i < trigrams.length; i++) {
+                previous += readVarint(in);
+                trigrams[i] = previous;
+            }
+            Integer oldId = idsByPath.get(entry.path);
+            if (oldId != null) markDeleted(oldId);
+            addEntry(entry, trigrams);
+            return true;
+        }
+    }
+
+    // endregion
+
+    // region 编码
+
+    private static int trigram(byte a, byte b, byte c) {
+        return (fold(a) & 0xFF) << 16 | (fold(b) & 0xFF) << 8 | (fold(c) & 0xFF);
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static int putVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int[] decode(byte[] bytes, int start, int end) {
+        int[] ids = new int[end - start]; // 每个编号至少一个字节
+        int count = 0;
+        int value = 0;
+        int previous = 0;
+        int shift = 0;
+        for (int i = start; i < end; i++) {
+            int b = bytes[i];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += value;
+            ids[count++] = previous;
+            value = 0;
+            shift = 0;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // endregion
+}
+// 该文件实现工作区的持久化三元组索引
@@ -0,0 +1,417 @@
+package com.example.tnote.FileBrowser;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作区全文搜索（在应用目录树下查找字符串）：
+ * - 目录遍历与文件搜索以 fork/join 任务并行，线程数等于 CPU 核数
+ * - 按字节搜索 UTF-8 编码后的查找串（Boyer–Moore–Horspool），不解码文件；
+ *   小文件读入每线程复用的直接缓冲区，大文件内存映射
+ * - 先嗅探文件头：已知二进制格式的魔数或前 4KB 中含 NUL 字节的文件跳过
+ * - 提供三元组索引时先用索引筛选候选文件，只验证候选；索引不可用或查找串过短时遍历整个目录树
+ * - 结果按文件汇总并打分，分批投递到主线程，调用方按分数插入列表
+ * - 通过取消令牌随时停止，已在运行的任务在下一个文件前退出
+ */
+public final class WorkspaceSearch {
+    private static final int SNIFF_BYTES = 4096;
+    private static final int POOLED_BUFFER_BYTES = 64 * 1024;   // 不超过该大小的文件读入复用缓冲区
+    private static final long MAX_FILE_BYTES = 64L * 1024 * 1024; // 更大的文件不搜索
+    private static final int FILES_PER_TASK = 8;
+    private static final int MAX_HITS_PER_FILE = 5;               // 每个文件保留的预览行数
+    private static final int MAX_FILE_RESULTS = 1000;
+    private static final int PREVIEW_BYTES = 160;
+
+    // 常见二进制格式的文件头
+    private static final byte[][] BINARY_MAGIC = {
+            {(byte) 0x89, 'P', 'N', 'G'},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},      // JPEG
+            {'G', 'I', 'F', '8'},
+            {'%', 'P', 'D', 'F'},
+            {'P', 'K', 3, 4},                             // zip / jar / apk / docx
+            {0x7F, 'E', 'L', 'F'},
+            {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}, // class
+            {0x1F, (byte) 0x8B},                          // gzip
+            {'d', 'e', 'x', '\n'},
+            {'S', 'Q', 'L', 'i', 't', 'e', ' ', 'f', 'o', 'r', 'm', 'a', 't'},
+            {'R', 'I', 'F', 'F'},                         // wav / webp
+            {'7', 'z', (byte) 0xBC, (byte) 0xAF},
+    };
+
+    private static ForkJoinPool pool;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(POOLED_BUFFER_BYTES));
+
+    /**
+     * 一行命中
+     */
+    public static final class Hit {
+        public final int line;        // 行号，从 1 开始
+        public final String preview;  // 行内容（截断）
+
+        Hit(int line, String preview) {
+            this.line = line;
+            this.preview = preview;
+        }
+    }
+
+    /**
+     * 单个文件的搜索结果
+     */
+    public static final class FileResult {
+        public final File file;
+        public final String relativePath;
+        public final int matchCount;
+        public final List<Hit> hits;
+        public final float score;     // 越大越靠前
+
+        FileResult(File file, String relativePath, int matchCount, List<Hit> hits, float score) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.matchCount = matchCount;
+            this.hits = hits;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 结果回调（主线程）
+     */
+    public interface ResultListener {
+        void onResults(List<FileResult> results);
+
+        /**
+         * @param filesScanned 已搜索的文本文件数
+         * @param binarySkipped 跳过的二进制文件数
+         * @param bytesScanned 搜索的总字节数
+         * @param elapsedMs 耗时
+         */
+        void onComplete(int filesScanned, int binarySkipped, long bytesScanned, long elapsedMs);
+    }
+
+    private final File root;
+    private final byte[] needle;
+    private final int[] shift = new int[256];
+    private final boolean ignoreCase;
+    private final String nameQuery;
+    private final String query;
+    private final TrigramIndex index;
+    private final IOScheduler.CancellationToken token;
+    private final ResultListener listener;
+
+    private final ConcurrentLinkedQueue<FileResult> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final AtomicInteger filesScanned = new AtomicInteger();
+    private final AtomicInteger binarySkipped = new AtomicInteger();
+    private final AtomicInteger fileResults = new AtomicInteger();
+    private final AtomicLong bytesScanned = new AtomicLong();
+
+    private WorkspaceSearch(File root, String query, boolean ignoreCase, TrigramIndex index,
+                            IOScheduler.CancellationToken token, ResultListener listener) {
+        this.root = root;
+        this.query = query;
+        this.index = index;
+        this.ignoreCase = ignoreCase;
+        this.nameQuery = ignoreCase ? query.toLowerCase() : query;
+        this.token = token;
+        this.listener = listener;
+        needle = query.getBytes(StandardCharsets.UTF_8);
+        if (ignoreCase) {
+            for (int i = 0; i < needle.length; i++) needle[i] = fold(needle[i]);
+        }
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < needle.length - 1; i++) shift[needle[i] & 0xFF] = needle.length - 1 - i;
+    }
+
+    /**
+     * 开始搜索
+     * @param root 搜索的根目录
+     * @param query 查找串（非空）
+     * @param ignoreCase 是否忽略 ASCII 字母大小写
+     * @param listener 结果回调
+     * @return 取消令牌
+     */
+    public static IOScheduler.CancellationToken search(File root, String query, boolean ignoreCase,
+                                                       ResultListener listener) {
+        return search(root, query, ignoreCase, null, listener);
+    }
+
+    /**
+     * 开始搜索，先用三元组索引筛选候选文件
+     * @param index 工作区索引，为 null 时遍历整个目录树
+     */
+    public static IOScheduler.CancellationToken search(File root, String query, boolean ignoreCase,
+                                                       TrigramIndex index, ResultListener listener) {
+        IOScheduler.CancellationToken token = new IOScheduler.CancellationToken();
+        WorkspaceSearch search = new WorkspaceSearch(root, query, ignoreCase, index, token, listener);
+        // 协调任务在后台通道等待 fork/join 池完成，实际搜索在池中并行；
+        // 有索引时排在索引已排队的更新之后，避免漏掉应用外刚修改的文件
+        if (index != null) {
+            index.afterPendingUpdates(token, search::run);
+        } else {
+            IOScheduler.submit(IOScheduler.Priority.BACKGROUND, null, token, search::run);
+        }
+        return token;
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return pool;
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        List<File> candidates = index != null ? index.candidates(query) : null;
+        if (candidates != null) {
+            pool().invoke(new CandidateTask(candidates));
+        } else {
+            pool().invoke(new DirectoryTask(root, 0));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        IOScheduler.postToMain(() -> {
+            drain();
+            if (token.isCancelled()) return;
+            listener.onComplete(filesScanned.get(), binarySkipped.get(), bytesScanned.get(), elapsedMs);
+        });
+    }
+
+    /**
+     * 遍历一个目录：子目录各自成为任务，文件按组成为任务
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private final File directory;
+        private final int depth;
+
+        DirectoryTask(File directory, int depth) {
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (token.isCancelled()) return;
+            File[] children = directory.listFiles();
+            if (children == null) return;
+            List<RecursiveAction> tasks = new ArrayList<>();
+            List<File> batch = new ArrayList<>(FILES_PER_TASK);
+            for (File child : children) {
+                if (child.getName().startsWith(".")) continue; // 隐藏文件与保存时的临时文件
+                if (child.isDirectory()) {
+                    if (!Files.isSymbolicLink(child.toPath())) tasks.add(new DirectoryTask(child, depth + 1));
+                } else {
+                    batch.add(child);
+                    if (batch.size() == FILES_PER_TASK) {
+                        tasks.add(new FileTask(batch, depth + 1));
+                        batch = new ArrayList<>(FILES_PER_TASK);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) tasks.add(new FileTask(batch, depth + 1));
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * 验证索引给出的候选文件：按路径排序后把同一目录下的文件分组
+     */
+    private final class CandidateTask extends RecursiveAction {
+        private final List<File> candidates;
+
+        CandidateTask(List<File> candidates) {
+            this.candidates = candidates;
+        }
+
+        @Override
+        protected void compute() {
+            candidates.sort(null);
+            List<RecursiveAction> tasks = new ArrayList<>();
+            List<File> batch = new ArrayList<>(FILES_PER_TASK);
+            File parent = null;
+            for (File file : candidates) {
+                if (!batch.isEmpty() && (batch.size() == FILES_PER_TASK || !file.getParentFile().equals(parent))) {
+                    tasks.add(new FileTask(batch, depth(parent)));
+                    batch = new ArrayList<>(FILES_PER_TASK);
+                }
+                parent = file.getParentFile();
+                batch.add(file);
+            }
+            if (!batch.isEmpty()) tasks.add(new FileTask(batch, depth(parent)));
+            invokeAll(tasks);
+        }
+
+        /**
+         * 目录下文件的深度（根目录下的文件为 1，与目录遍历一致）
+         */
+        private int depth(File directory) {
+            int depth = 1;
+            for (File f = directory; f != null && !f.equals(root); f = f.getParentFile()) depth++;
+            return depth;
+        }
+    }
+
+    private final class FileTask extends RecursiveAction {
+        private final List<File> files;
+        private final int depth;
+
+        FileTask(List<File> files, int depth) {
+            this.files = files;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            for (File file : files) {
+                if (token.isCancelled() || fileResults.get() >= MAX_FILE_RESULTS) return;
+                try {
+                    searchFile(file, depth);
+                } catch (IOException e) {
+                    // 无法读取的文件直接跳过
+                }
+            }
+        }
+    }
+
+    private void searchFile(File file, int depth) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size < needle.length || size > MAX_FILE_BYTES) return;
+            ByteBuffer bytes;
+            if (size <= POOLED_BUFFER_BYTES) {
+                bytes = BUFFERS.get();
+                bytes.clear();
+                while (bytes.position() < size && channel.read(bytes) > 0) {
+                    // 读满为止
+                }
+                bytes.flip();
+            } else {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (isBinary(bytes)) {
+                binarySkipped.incrementAndGet();
+                return;
+            }
+            filesScanned.incrementAndGet();
+            bytesScanned.addAndGet(size);
+            scan(file, bytes, depth);
+        }
+    }
+
+    /**
+     * 在缓冲区中查找全部匹配，记录前几处所在的行
+     */
+    private void scan(File file, ByteBuffer bytes, int depth) {
+        int m = needle.length;
+        int limit = bytes.limit();
+        int count = 0;
+        List<Hit> hits = new ArrayList<>(MAX_HITS_PER_FILE);
+        int line = 1;
+        int lineCursor = 0;   // 已统计行号的位置
+        int lastHitLine = 0;
+        int position = 0;
+        while (position + m <= limit) {
+            int j = m - 1;
+            while (j >= 0 && fold(bytes.get(position + j)) == needle[j]) j--;
+            if (j >= 0) {
+                position += shift[fold(bytes.get(position + m - 1)) & 0xFF];
+                continue;
+            }
+            count++;
+            if (hits.size() < MAX_HITS_PER_FILE) {
+                for (; lineCursor < position; lineCursor++) {
+                    if (bytes.get(lineCursor) == '\n') line++;
+                }
+                if (line != lastHitLine) { // 同一行的多处匹配只预览一次
+                    hits.add(new Hit(line, preview(bytes, position)));
+                    lastHitLine = line;
+                }
+            }
+            position += m;
+        }
+        boolean nameMatches = (ignoreCase ? file.getName().toLowerCase() : file.getName()).contains(nameQuery);
+        if (count == 0 && !nameMatches) return;
+        if (fileResults.incrementAndGet() > MAX_FILE_RESULTS) return;
+        publish(new FileResult(file, relativePath(file), count, hits, score(file, count, nameMatches, depth)));
+    }
+
+    /**
+     * 排序分数：文件名命中优先，其次匹配数（对数）、目录层级浅、最近修改
+     */
+    private static float score(File file, int count, boolean nameMatches, int depth) {
+        float score = (float) (10 * Math.log1p(count)) - 2 * depth;
+        if (nameMatches) score += 100;
+        long age = System.currentTimeMillis() - file.lastModified();
+        if (age < 7L * 24 * 3600 * 1000) score += 5;
+        return score;
+    }
+
+    private void publish(FileResult result) {
+        pending.add(result);
+        if (drainPosted.compareAndSet(false, true)) {
+            IOScheduler.postToMain(this::drain); // 投递执行前到达的结果合并为一批
+        }
+    }
+
+    private void drain() {
+        drainPosted.set(false);
+        List<FileResult> batch = new ArrayList<>();
+        FileResult result;
+        while ((result = pending.poll()) != null) batch.add(result);
+        if (!batch.isEmpty() && !token.isCancelled()) listener.onResults(batch);
+    }
+
+    private String relativePath(File file) {
+        String rootPath = root.getAbsolutePath();
+        String path = file.getAbsolutePath();
+        return path.startsWith(rootPath + File.separator) ? path.substring(rootPath.length() + 1) : path;
+    }
+
+    /**
+     * 匹配所在行的内容（最多 PREVIEW_BYTES 字节，非法 UTF-8 替换）
+     */
+    private static String preview(ByteBuffer bytes, int position) {
+        int start = position;
+        while (start > 0 && bytes.get(start - 1) != '\n' && position - start < PREVIEW_BYTES / 2) start--;
+        int end = position;
+        int limit = bytes.limit();
+        while (end < limit && bytes.get(end) != '\n' && end - start < PREVIEW_BYTES) end++;
+        byte[] line = new byte[end - start];
+        for (int i = 0; i < line.length; i++) line[i] = bytes.get(start + i);
+        return new String(line, StandardCharsets.UTF_8).trim();
+    }
+
+    static boolean isBinary(ByteBuffer bytes) {
+        int length = Math.min(bytes.limit(), SNIFF_BYTES);
+        for (byte[] magic : BINARY_MAGIC) {
+            if (magic.length > length) continue;
+            boolean matches = true;
+            for (int i = 0; i < magic.length && matches; i++) matches = bytes.get(i) == magic[i];
+            if (matches) return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes.get(i) == 0) return true; // 文本文件（UTF-8 / GB18030）不含 NUL
+        }
+        return false;
+    }
+
+    private byte fold(byte b) {
+        return ignoreCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
+// 该文件实现工作区的并行全文搜索
@@ -15,6 +15,7 @@ import androidx.fragment.app.FragmentManager;
 
 import com.example.tnote.Editor.EditorFragment;
 import com.example.tnote.Utils.AnimGuideline;
+import com.example.tnote.Utils.EditorUtils.DocumentCache;
 import com.example.tnote.FileBrowser.FileBrowserFragment;
 import com.example.tnote.Utils.TabManager;
 
@@ -202,6 +203,12 @@ public class MainActivity extends AppCompatActivity {
         // 保存状态（如有需要可扩展）
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        DocumentCache.trimMemory(level); // 内存紧张时释放最近打开文件的缓存
+    }
+
     @Override
     protected void onDestroy() {
         // 清理资源
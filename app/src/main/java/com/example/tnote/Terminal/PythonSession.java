@@ -7,6 +7,7 @@ import com.chaquo.python.PyObject;
 import com.chaquo.python.Python;
 import com.chaquo.python.android.AndroidPlatform;
 import com.example.tnote.MainActivity;
+import com.example.tnote.Utils.IOScheduler;
 import com.example.tnote.Utils.Interfaces.Session;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.ExecutorService;
@@ -19,7 +20,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class PythonSession implements Session {
     private final Handler mainHandler;         // 主线程Handler用于UI更新
     private OutputListener outputListener;     // 输出监听器
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(); // 单线程执行器
+    // 解释器在会话自己的线程上串行执行命令，失控的脚本不会占用 IO 调度器的线程；每次 start 新建
+    private ExecutorService executor;
+    private volatile long runningThreadId; // 正在执行命令的 Python 线程号，0 表示空闲
     private final AtomicBoolean isAlive = new AtomicBoolean(false); // 会话存活状态
     private WeakReference<MainActivity> activityRef; // 对Activity的弱引用，防止内存泄漏
 
@@ -31,6 +34,7 @@ public class PythonSession implements Session {
     @Override
     public void start(OutputListener listener) {
         this.outputListener = listener;
+        this.executor = Executors.newSingleThreadExecutor();
         this.isAlive.set(true);
         sendSystemMessage("Python Session Started");
     }
@@ -54,7 +58,13 @@ public class PythonSession implements Session {
                 // 调用Python执行模块
                 PyObject module = py.getModule("executor");
                 Log.i("PythonSession", "command_exec: " + command);
-                PyObject result = module.callAttr("execute_code", command);
+                PyObject result;
+                runningThreadId = py.getModule("threading").callAttr("get_ident").toLong();
+                try {
+                    result = module.callAttr("execute_code", command);
+                } finally {
+                    runningThreadId = 0;
+                }
 
                 // 处理执行结果
                 String output = String.valueOf(result);
@@ -72,11 +82,28 @@ public class PythonSession implements Session {
 
     @Override
     public void terminate() {
-        executor.shutdownNow(); // 立即关闭执行器
+        if (executor != null) executor.shutdownNow(); // 丢弃排队中的命令
+        interruptRunningCommand();
         isAlive.set(false);
         sendSystemMessage("Python Session Ended!");
     }
 
+    /**
+     * 向正在执行的脚本抛出 KeyboardInterrupt，让死循环等失控脚本结束并释放线程
+     */
+    private void interruptRunningCommand() {
+        long threadId = runningThreadId;
+        if (threadId == 0) return;
+        // 需要获取 GIL，不在主线程等待
+        IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, null, () -> {
+            try {
+                Python.getInstance().getModule("executor").callAttr("interrupt", threadId);
+            } catch (Exception e) {
+                Log.w("PythonSession", "interrupt failed: " + e.getMessage());
+            }
+        });
+    }
+
     @Override
     public boolean isAlive() {
         return isAlive.get();
@@ -118,23 +118,18 @@ public class ShellSession implements Session {
     }
 
     /**
-     * 读取流数据并转发到监听器
+     * 读取流数据并以原始字节转发到监听器（多字节字符的解码交给接收方，跨块不会被拆坏）
+     * 监听器阻塞时本线程暂停读取，子进程在管道写满后随之阻塞
      * @param stream 输入流
      * @param listener 输出监听器
      * @param isError 是否为错误流
      */
     private void readStream(InputStream stream, OutputListener listener, boolean isError) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
-            char[] buffer = new char[1024];
+        try (InputStream input = stream) {
+            byte[] buffer = new byte[8192];
             int bytesRead;
-            while (isRunning.get() && (bytesRead = reader.read(buffer)) != -1) {
-                String output = new String(buffer, 0, bytesRead);
-                // 根据流类型回调
-                if (isError) {
-                    listener.onError(output);
-                } else {
-                    listener.onOutputReceived(output);
-                }
+            while (isRunning.get() && (bytesRead = input.read(buffer)) != -1) {
+                listener.onOutputBytes(buffer, bytesRead, isError);
             }
         } catch (IOException e) {
             if (isRunning.get()) {
@@ -0,0 +1,587 @@
+package com.example.tnote.Terminal;
+
+/**
+ * 终端模拟器（屏幕模型）：columns x rows 的单元格屏幕，每行是码点数组 + 打包样式数组（{@link TerminalLine}）
+ * - 光标定位、自动折行（写满最后一列后延迟到下一个字符再折行）、滚动区域、插入 / 删除行与字符、擦除
+ * - 主屏幕与备用屏幕（全屏程序用），备用屏幕不产生回滚
+ * - 宽字符（CJK、emoji）占两格；组合字符等零宽字符不占格
+ * - 主屏幕整屏滚动时移出顶部的行推入回滚缓冲区，行对象循环复用
+ * - 损坏跟踪：行内容一旦变化即置 {@link TerminalLine#dirty}，绘制方每帧只重绘这些行后清除标记
+ * 会话没有 PTY，输出中的换行只有 \n，因此 \n 按换行模式处理（同时回到行首）
+ * 线程约定：只在主线程使用
+ */
+public final class TerminalEmulator {
+    public static final int DEFAULT_LINE_LIMIT = 5000; // 默认保留的回滚行数
+    static final int DEFAULT_COLUMNS = 80;
+    static final int DEFAULT_ROWS = 24;
+    static final int MAX_COLUMNS = 1024;
+    private static final int TAB_WIDTH = 8;
+
+    private final TerminalScrollback scrollback;
+    private int columns;
+    private int rows;
+    private TerminalLine[] mainLines;
+    private TerminalLine[] altLines;
+    private TerminalLine[] lines; // 当前屏幕（主或备用）
+    private boolean alternate;
+
+    private int cursorRow;
+    private int cursorColumn;
+    private boolean wrapPending;   // 已写到最后一列，下一个字符先折行
+    private boolean autoWrap = true;
+    private boolean cursorVisible = true;
+    private int scrollTop;         // 滚动区域（含两端）
+    private int scrollBottom;
+    private int savedRow;          // ESC 7 / CSI s 保存的光标
+    private int savedColumn;
+    private int mainSavedRow;      // 进入备用屏幕前主屏幕的光标
+    private int mainSavedColumn;
+    private int usedRows;          // 主屏幕中写入过内容的行数（之下的空行不显示）
+    private long pushedCount;      // 累计推入回滚缓冲区的行数
+    private long firstDirtyPush = Long.MAX_VALUE; // 上次绘制后第一个带损坏标记推入回滚的行（按 pushedCount 计）
+    private boolean fullDamage;    // 屏幕尺寸变化，需要整体重绘
+
+    /**
+     * @param lineLimit 回滚缓冲区最多保留的行数
+     */
+    public TerminalEmulator(int lineLimit) {
+        scrollback = new TerminalScrollback(lineLimit);
+        columns = DEFAULT_COLUMNS;
+        rows = DEFAULT_ROWS;
+        mainLines = newLines(rows, 0, null);
+        altLines = newLines(rows, 0, null);
+        lines = mainLines;
+        scrollBottom = rows - 1;
+    }
+
+    /**
+     * 以指定样式追加 text 的 [start, end) 部分（普通字符与 C0 控制字符，转义序列由 {@link TerminalParser} 处理）
+     */
+    public void append(CharSequence text, int start, int end, long style) {
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            int codepoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codepoint = Character.toCodePoint(c, text.charAt(i + 1));
+                i++;
+            }
+            i++;
+            switch (codepoint) {
+                case '\n':
+                case 0x0B: // VT
+                case 0x0C: // FF
+                    nextLine();
+                    break;
+                case '\r':
+                    setCursorColumn(0);
+                    break;
+                case '\b':
+                    cursorBackward(1);
+                    break;
+                case '\t':
+                    setCursorColumn((cursorColumn / TAB_WIDTH + 1) * TAB_WIDTH);
+                    break;
+                default:
+                    if (codepoint < ' ' || codepoint == 0x7F) break; // 其余控制字符不显示
+                    put(codepoint, style);
+            }
+        }
+    }
+
+    private void put(int codepoint, long style) {
+        int width = charWidth(codepoint);
+        if (width == 0) return;
+        if (columns < 2) width = 1;
+        if (wrapPending) {
+            wrapPending = false;
+            cursorColumn = 0;
+            index();
+        }
+        if (width == 2 && cursorColumn == columns - 1) {
+            if (!autoWrap) return;
+            lines[cursorRow].erase(cursorColumn, columns, TextStyle.DEFAULT); // 宽字符放不下，换到下一行
+            cursorColumn = 0;
+            index();
+        }
+        TerminalLine line = lines[cursorRow];
+        splitWideNeighbours(line, cursorColumn, width);
+        line.set(cursorColumn, codepoint, style);
+        if (width == 2) line.set(cursorColumn + 1, TerminalLine.WIDE_TAIL, style);
+        if (cursorColumn + width >= columns) {
+            cursorColumn = columns - 1;
+            wrapPending = autoWrap;
+        } else {
+            cursorColumn += width;
+        }
+        if (!alternate) usedRows = Math.max(usedRows, cursorRow + 1);
+    }
+
+    /**
+     * 覆盖写入会拆开相邻宽字符时，把被拆开的另一半改为空格
+     */
+    private static void splitWideNeighbours(TerminalLine line, int column, int width) {
+        if (column > 0 && column < line.length && line.codepoints[column] == TerminalLine.WIDE_TAIL) {
+            line.set(column - 1, ' ', line.styles[column - 1]);
+        }
+        int after = column + width;
+        if (after < line.length && line.codepoints[after] == TerminalLine.WIDE_TAIL) {
+            line.set(after, ' ', line.styles[after]);
+        }
+    }
+
+    /**
+     * 字符占用的列数：0（组合字符、格式字符）、1 或 2（东亚宽字符与 emoji）
+     */
+    static int charWidth(int codepoint) {
+        if (codepoint < 0x300) return 1;
+        int type = Character.getType(codepoint);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) return 0;
+        if (codepoint < 0x1100) return 1;
+        if (codepoint <= 0x115F                                    // 谚文字母
+                || codepoint >= 0x2E80 && codepoint <= 0x303E      // CJK 部首、符号与标点
+                || codepoint >= 0x3041 && codepoint <= 0x33FF      // 假名、注音、CJK 兼容
+                || codepoint >= 0x3400 && codepoint <= 0x4DBF      // CJK 扩展 A
+                || codepoint >= 0x4E00 && codepoint <= 0x9FFF      // CJK 统一表意文字
+                || codepoint >= 0xA000 && codepoint <= 0xA4CF      // 彝文
+                || codepoint >= 0xAC00 && codepoint <= 0xD7A3      // 谚文音节
+                || codepoint >= 0xF900 && codepoint <= 0xFAFF      // CJK 兼容表意文字
+                || codepoint >= 0xFE30 && codepoint <= 0xFE4F      // CJK 兼容形式
+                || codepoint >= 0xFF00 && codepoint <= 0xFF60      // 全角字符
+                || codepoint >= 0xFFE0 && codepoint <= 0xFFE6
+                || codepoint >= 0x1F300 && codepoint <= 0x1F64F    // emoji
+                || codepoint >= 0x1F900 && codepoint <= 0x1F9FF
+                || codepoint >= 0x20000 && codepoint <= 0x3FFFD) { // CJK 扩展 B 及之后
+            return 2;
+        }
+        return 1;
+    }
+
+    // region 光标
+
+    void cursorForward(int count) {
+        setCursorColumn(cursorColumn + count);
+    }
+
+    void cursorBackward(int count) {
+        setCursorColumn(cursorColumn - count);
+    }
+
+    /**
+     * 光标移到 column 列（从 0 起）
+     */
+    void setCursorColumn(int column) {
+        cursorColumn = clamp(column, 0, columns - 1);
+        wrapPending = false;
+    }
+
+    /**
+     * 光标移到 row 行（从 0 起）
+     */
+    void setCursorRow(int row) {
+        cursorRow = clamp(row, 0, rows - 1);
+        wrapPending = false;
+    }
+
+    void setCursorPosition(int row, int column) {
+        setCursorRow(row);
+        setCursorColumn(column);
+    }
+
+    /**
+     * 光标上下移动 delta 行（负数向上）；光标在滚动区域内时不越过区域边界，不滚动
+     */
+    void cursorVertical(int delta) {
+        if (delta < 0) {
+            int limit = cursorRow >= scrollTop ? scrollTop : 0;
+            cursorRow = Math.max(limit, cursorRow + delta);
+        } else {
+            int limit = cursorRow <= scrollBottom ? scrollBottom : rows - 1;
+            cursorRow = Math.min(limit, cursorRow + delta);
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * 光标下移一行，在滚动区域底部时区域上滚（IND）
+     */
+    void index() {
+        if (cursorRow == scrollBottom) {
+            scrollUp(1);
+        } else if (cursorRow < rows - 1) {
+            cursorRow++;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * 光标上移一行，在滚动区域顶部时区域下滚（RI）
+     */
+    void reverseIndex() {
+        if (cursorRow == scrollTop) {
+            scrollDown(1);
+        } else if (cursorRow > 0) {
+            cursorRow--;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * 回到行首并下移一行（NEL）
+     */
+    void nextLine() {
+        cursorColumn = 0;
+        index();
+    }
+
+    void saveCursor() {
+        savedRow = cursorRow;
+        savedColumn = cursorColumn;
+    }
+
+    void restoreCursor() {
+        setCursorPosition(savedRow, savedColumn);
+    }
+
+    void setCursorVisible(boolean visible) {
+        if (cursorVisible != visible) {
+            cursorVisible = visible;
+            lines[cursorRow].dirty = true;
+        }
+    }
+
+    void setAutoWrap(boolean enabled) {
+        autoWrap = enabled;
+        if (!enabled) wrapPending = false;
+    }
+    // endregion
+
+    // region 滚动
+
+    /**
+     * 设置滚动区域（DECSTBM），光标回到左上角
+     * @param top 首行（从 0 起）
+     * @param bottom 末行（含），小于 0 表示屏幕底部
+     */
+    void setScrollRegion(int top, int bottom) {
+        top = Math.max(0, top);
+        bottom = bottom < 0 ? rows - 1 : Math.min(bottom, rows - 1);
+        if (top >= bottom) return;
+        scrollTop = top;
+        scrollBottom = bottom;
+        setCursorPosition(0, 0);
+    }
+
+    /**
+     * 滚动区域上滚 count 行（SU）；主屏幕整屏滚动时移出的行进入回滚缓冲区
+     */
+    void scrollUp(int count) {
+        // 行在列表中的位置不变：回滚增加一行相当于在末尾追加一行
+        boolean toScrollback = !alternate && scrollTop == 0 && scrollBottom == rows - 1;
+        shiftUp(scrollTop, scrollBottom, count, toScrollback);
+    }
+
+    /**
+     * 滚动区域下滚 count 行（SD），底部的行被丢弃
+     */
+    void scrollDown(int count) {
+        shiftDown(scrollTop, scrollBottom, count);
+    }
+
+    /**
+     * 在光标行插入 count 个空行（IL），光标在滚动区域外时无效
+     */
+    void insertLines(int count) {
+        if (cursorRow < scrollTop || cursorRow > scrollBottom) return;
+        shiftDown(cursorRow, scrollBottom, count);
+        setCursorColumn(0);
+    }
+
+    /**
+     * 删除光标行起 count 行（DL），下方的行上移
+     */
+    void deleteLines(int count) {
+        if (cursorRow < scrollTop || cursorRow > scrollBottom) return;
+        shiftUp(cursorRow, scrollBottom, count, false);
+        setCursorColumn(0);
+    }
+
+    private void shiftUp(int top, int bottom, int count, boolean toScrollback) {
+        count = Math.min(count, bottom - top + 1);
+        for (int i = 0; i < count; i++) {
+            TerminalLine first = lines[top];
+            if (toScrollback) pushToScrollback(first);
+            System.arraycopy(lines, top + 1, lines, top, bottom - top);
+            lines[bottom] = first;
+            first.clear();
+        }
+        if (!toScrollback) markDirty(top, bottom); // 区域内的行换了位置
+    }
+
+    /**
+     * 行推入回滚后行对象会被清空复用，其损坏标记随之丢失，因此单独记下位置
+     */
+    private void pushToScrollback(TerminalLine line) {
+        if (line.dirty) firstDirtyPush = Math.min(firstDirtyPush, pushedCount);
+        scrollback.push(line);
+        pushedCount++;
+    }
+
+    private void shiftDown(int top, int bottom, int count) {
+        count = Math.min(count, bottom - top + 1);
+        for (int i = 0; i < count; i++) {
+            TerminalLine last = lines[bottom];
+            System.arraycopy(lines, top, lines, top + 1, bottom - top);
+            lines[top] = last;
+            last.clear();
+        }
+        markDirty(top, bottom);
+    }
+    // endregion
+
+    // region 擦除与编辑
+
+    /**
+     * 行内擦除（EL）：0 光标到行尾，1 行首到光标，2 整行；光标不动
+     * @param style 擦除后的单元格样式（只保留背景色）
+     */
+    void eraseInLine(int mode, long style) {
+        TerminalLine line = lines[cursorRow];
+        switch (mode) {
+            case 0:
+                line.erase(cursorColumn, columns, style);
+                break;
+            case 1:
+                line.erase(0, cursorColumn + 1, style);
+                break;
+            case 2:
+                line.erase(0, columns, style);
+                break;
+        }
+    }
+
+    /**
+     * 屏幕擦除（ED）：0 光标到屏幕末尾，1 屏幕开头到光标，2 整屏，3 回滚缓冲区
+     */
+    void eraseInDisplay(int mode, long style) {
+        switch (mode) {
+            case 0:
+                eraseInLine(0, style);
+                for (int row = cursorRow + 1; row < rows; row++) lines[row].erase(0, columns, style);
+                break;
+            case 1:
+                for (int row = 0; row < cursorRow; row++) lines[row].erase(0, columns, style);
+                eraseInLine(1, style);
+                break;
+            case 2:
+                for (int row = 0; row < rows; row++) lines[row].erase(0, columns, style);
+                break;
+            case 3:
+                scrollback.clear();
+                break;
+        }
+    }
+
+    /**
+     * 从光标起擦除 count 个字符（ECH），光标不动
+     */
+    void eraseCharacters(int count, long style) {
+        lines[cursorRow].erase(cursorColumn, Math.min(cursorColumn + count, columns), style);
+    }
+
+    /**
+     * 删除光标处起 count 个字符（DCH），右侧内容左移
+     */
+    void deleteCharacters(int count) {
+        lines[cursorRow].delete(cursorColumn, count);
+    }
+
+    /**
+     * 在光标处插入 count 个空格（ICH），右侧内容右移，超出屏幕宽度的部分丢弃
+     */
+    void insertCharacters(int count, long style) {
+        lines[cursorRow].insert(cursorColumn, count, style, columns);
+    }
+    // endregion
+
+    // region 屏幕
+
+    /**
+     * 切换备用屏幕（?1049 等）：进入时保存主屏幕光标并清空备用屏幕，退出时恢复
+     */
+    void setAlternateScreen(boolean enabled) {
+        if (alternate == enabled) return;
+        if (enabled) {
+            mainSavedRow = cursorRow;
+            mainSavedColumn = cursorColumn;
+            for (TerminalLine line : altLines) line.clear();
+            lines = altLines;
+            setCursorPosition(0, 0);
+        } else {
+            lines = mainLines;
+            setCursorPosition(mainSavedRow, mainSavedColumn);
+        }
+        alternate = enabled;
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        markDirty(0, rows - 1);
+    }
+
+    /**
+     * 按视图大小调整屏幕；内容不重新折行，变窄时截断
+     * 主屏幕变矮时顶部多出的行推入回滚缓冲区，保证光标所在行仍在屏幕内
+     */
+    public void resize(int newColumns, int newRows) {
+        newColumns = clamp(newColumns, 1, MAX_COLUMNS);
+        newRows = Math.max(1, newRows);
+        if (newColumns == columns && newRows == rows) return;
+        if (newColumns < columns) {
+            for (TerminalLine line : mainLines) line.truncate(newColumns);
+            for (TerminalLine line : altLines) line.truncate(newColumns);
+        }
+        if (newRows != rows) {
+            int mainCursorRow = alternate ? mainSavedRow : cursorRow;
+            int excess = Math.max(0, Math.max(usedRows, mainCursorRow + 1) - newRows);
+            for (int i = 0; i < excess; i++) pushToScrollback(mainLines[i]);
+            usedRows = Math.max(0, usedRows - excess);
+            mainLines = newLines(newRows, excess, mainLines);
+            altLines = newLines(newRows, 0, altLines);
+            lines = alternate ? altLines : mainLines;
+            if (alternate) {
+                mainSavedRow -= excess;
+            } else {
+                cursorRow -= excess;
+            }
+        }
+        columns = newColumns;
+        rows = newRows;
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        cursorRow = clamp(cursorRow, 0, rows - 1);
+        cursorColumn = clamp(cursorColumn, 0, columns - 1);
+        mainSavedRow = clamp(mainSavedRow, 0, rows - 1);
+        savedRow = clamp(savedRow, 0, rows - 1);
+        wrapPending = false;
+        fullDamage = true; // 备用屏幕下推入回滚的是不可见的主屏幕行，行位置不再对应
+    }
+
+    /**
+     * 复位：清空两个屏幕与回滚缓冲区，恢复默认模式
+     */
+    public void clear() {
+        scrollback.clear();
+        for (TerminalLine line : mainLines) line.clear();
+        for (TerminalLine line : altLines) line.clear();
+        lines = mainLines;
+        alternate = false;
+        autoWrap = true;
+        cursorVisible = true;
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        cursorRow = cursorColumn = 0;
+        savedRow = savedColumn = 0;
+        wrapPending = false;
+        usedRows = 0;
+    }
+
+    public void setLineLimit(int lineLimit) {
+        scrollback.setLineLimit(lineLimit);
+    }
+
+    private void markDirty(int top, int bottom) {
+        for (int row = top; row <= bottom; row++) lines[row].dirty = true;
+    }
+
+    /**
+     * 新建 count 行，依次沿用 reuse 中从 offset 起的行对象，不足的部分新建
+     */
+    private static TerminalLine[] newLines(int count, int offset, TerminalLine[] reuse) {
+        TerminalLine[] result = new TerminalLine[count];
+        for (int i = 0; i < count; i++) {
+            int source = offset + i;
+            result[i] = reuse != null && source < reuse.length ? reuse[source] : new TerminalLine(DEFAULT_COLUMNS);
+            result[i].dirty = true;
+        }
+        return result;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+    // endregion
+
+    // region 供绘制使用
+
+    TerminalScrollback getScrollback() {
+        return scrollback;
+    }
+
+    /**
+     * 当前屏幕的第 row 行（从 0 起）
+     */
+    TerminalLine getScreenRow(int row) {
+        return lines[row];
+    }
+
+    /**
+     * 需要显示的屏幕行数：备用屏幕为整屏；主屏幕为已使用的行（光标之下从未写过的空行不显示）
+     */
+    int getVisibleRowCount() {
+        return alternate ? rows : Math.max(usedRows, cursorRow + 1);
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCursorRow() {
+        return cursorRow;
+    }
+
+    int getCursorColumn() {
+        return cursorColumn;
+    }
+
+    boolean isCursorVisible() {
+        return cursorVisible;
+    }
+
+    boolean isAlternateScreen() {
+        return alternate;
+    }
+
+    long getPushedCount() {
+        return pushedCount;
+    }
+
+    /**
+     * 上次绘制后第一个内容有变化、随后被推入回滚的行在回滚缓冲区中的位置；没有时返回 -1
+     */
+    int getFirstDamagedScrollbackRow() {
+        if (firstDirtyPush == Long.MAX_VALUE) return -1;
+        long oldestKept = pushedCount - scrollback.size(); // 回滚缓冲区保留的是最近推入的行
+        return (int) Math.max(0, firstDirtyPush - oldestKept);
+    }
+
+    /**
+     * 屏幕尺寸变化后需要整体重绘
+     */
+    boolean isFullyDamaged() {
+        return fullDamage;
+    }
+
+    /**
+     * 绘制完成后清除所有损坏标记
+     */
+    void clearDamage() {
+        for (TerminalLine line : lines) line.dirty = false;
+        firstDirtyPush = Long.MAX_VALUE;
+        fullDamage = false;
+    }
+    // endregion
+}
+// 该文件实现带屏幕模型与损坏跟踪的终端模拟器
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.text.Spanned;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -12,8 +11,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ScrollView;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
@@ -21,17 +18,36 @@ import androidx.fragment.app.Fragment;
 import com.example.tnote.MainActivity;
 import com.example.tnote.R;
 import com.example.tnote.Utils.Interfaces.Session;
-import com.example.tnote.Utils.AnsiColorHelper;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TerminalFragment extends Fragment {
+    private static final long ERROR_STYLE = TextStyle.withForeground(TextStyle.DEFAULT, TextStyle.indexed(9)); // 错误输出为亮红色
+
     // UI组件
-    private TextView tvOutput;
+    private TerminalView terminalView;
     private EditText etInput;
-    private ScrollView svOutput;
     private Button execButton;
 
+    // 输出缓冲：回滚行数有上限，视图只重绘变化的行
+    private final TerminalEmulator emulator = new TerminalEmulator(TerminalEmulator.DEFAULT_LINE_LIMIT);
+    // 标准输出与错误输出各一个解析器，转义序列被拆到两次输出中也能接续
+    private final TerminalParser outputParser = new TerminalParser(emulator, TextStyle.DEFAULT);
+    private final TerminalParser errorParser = new TerminalParser(emulator, ERROR_STYLE);
+    // 会话输出先进入队列，每帧统一写入模拟器并刷新一次视图
+    private final TerminalOutputQueue outputQueue = new TerminalOutputQueue(new TerminalOutputQueue.Sink() {
+        @Override
+        public void onText(CharSequence text, boolean isError) {
+            (isError ? errorParser : outputParser).feed(text, 0, text.length());
+        }
+
+        @Override
+        public void onFrameDrained() {
+            if (terminalView == null) return; // 视图已销毁，重建时从模拟器重新绑定
+            terminalView.update(); // 用户向上翻看时视图保持位置
+        }
+    });
+
     // 会话管理
     private Session currentSession;
     private ShellSession shellSession;
@@ -57,10 +73,10 @@ public class TerminalFragment extends Fragment {
     }
 
     private void bindViews(View view) {
-        tvOutput = view.findViewById(R.id.tv_terminal_output);
+        terminalView = view.findViewById(R.id.terminal_view);
         etInput = view.findViewById(R.id.et_command_input);
-        svOutput = view.findViewById(R.id.sv_output);
         execButton = view.findViewById(R.id.btn_send);
+        terminalView.attach(emulator); // 屏幕行列数随视图大小调整
     }
 
     private void initializeSessions() {
@@ -108,6 +124,11 @@ public class TerminalFragment extends Fragment {
             public void onError(String error) {
                 appendOutput(error, true);
             }
+
+            @Override
+            public void onOutputBytes(byte[] buffer, int length, boolean isError) {
+                outputQueue.offer(buffer, length, isError); // 积压过多时阻塞读取线程
+            }
         });
 
         appendOutput(message + "\n", false);
@@ -116,6 +137,7 @@ public class TerminalFragment extends Fragment {
     private void executeCurrentCommand() {
         boolean success = false;
         if (isExecuting.get()) return;
+        terminalView.scrollToBottom(); // 输入命令时回到最新输出
 
         String command = etInput.getText().toString();
 
@@ -141,7 +163,10 @@ public class TerminalFragment extends Fragment {
         if (currentSession==shellSession){
             commandHistory.add(command);
             if (command.startsWith("clear")) {
-                tvOutput.setText("") ;
+                emulator.clear();
+                outputParser.reset();
+                errorParser.reset();
+                terminalView.update();
                 success = true;
             }
             else {
@@ -176,23 +201,13 @@ public class TerminalFragment extends Fragment {
 
     // region 辅助方法
     private void appendOutput(CharSequence text, boolean isError) {
-        mainHandler.post(() -> {
-            Spanned formatted = isError ?
-                    AnsiColorHelper.formatRed(text) :
-                    AnsiColorHelper.convertAnsiToSpanned(text.toString());
-            tvOutput.append(formatted);
-            scrollToBottom();
-        });
+        outputQueue.offerText(text, isError);
     }
 
     private void clearInput() {
         mainHandler.post(() -> etInput.setText(""));
     }
 
-    private void scrollToBottom() {
-        svOutput.post(() -> svOutput.fullScroll(ScrollView.FOCUS_DOWN));
-    }
-
     private boolean handleKeyPress(int keyCode) {
         switch (keyCode) {
             case KeyEvent.KEYCODE_ENTER:
@@ -223,12 +238,14 @@ public class TerminalFragment extends Fragment {
         Log.d("TerminalFragment", "onDestroy()");
         if (shellSession != null) shellSession.terminate();
         if (pythonSession != null) pythonSession.terminate();
+        outputQueue.close(); // 唤醒可能因背压挂起的读取线程
     }
 
     @Override
     public void onDestroyView() {
         Log.d("TerminalFragment", "onDestroyView()");
         inputCache = etInput.getText().toString();
+        terminalView = null; // 输出仍写入模拟器，视图重建时重新绑定
         super.onDestroyView();
     }
 
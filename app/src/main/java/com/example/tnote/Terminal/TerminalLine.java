@@ -0,0 +1,115 @@
+package com.example.tnote.Terminal;
+
+import java.util.Arrays;
+
+/**
+ * 按单元格存放的一行：每格一个码点和一个打包样式（{@link TextStyle}），可以在任意列覆盖写入
+ * 宽字符占两格，第二格为 {@link #WIDE_TAIL}
+ * 数组只增长不收缩，同一行对象在整个会话中反复使用；任何修改都会置 dirty，由绘制方清除
+ */
+final class TerminalLine {
+    static final int WIDE_TAIL = 0; // 宽字符右半格的占位码点
+
+    int[] codepoints;
+    long[] styles;
+    int length;    // 已写入的单元格数
+    boolean dirty; // 上次绘制后内容是否有变化
+
+    TerminalLine(int capacity) {
+        codepoints = new int[capacity];
+        styles = new long[capacity];
+    }
+
+    /**
+     * 在 column 列写入一个字符，跳过的列以空格补齐
+     */
+    void set(int column, int codepoint, long style) {
+        ensureCapacity(column + 1);
+        if (column > length) {
+            Arrays.fill(codepoints, length, column, ' ');
+            Arrays.fill(styles, length, column, TextStyle.DEFAULT);
+        }
+        codepoints[column] = codepoint;
+        styles[column] = style;
+        length = Math.max(length, column + 1);
+        dirty = true;
+    }
+
+    /**
+     * 以空格擦除 [from, to) 列；擦除到行尾且样式为默认时直接截断
+     */
+    void erase(int from, int to, long style) {
+        if (from >= to) return;
+        if (to >= length && style == TextStyle.DEFAULT) {
+            if (from < length) {
+                length = from;
+                dirty = true;
+            }
+            return;
+        }
+        dirty = true;
+        ensureCapacity(to);
+        if (from > length) {
+            Arrays.fill(codepoints, length, from, ' ');
+            Arrays.fill(styles, length, from, TextStyle.DEFAULT);
+        }
+        Arrays.fill(codepoints, from, to, ' ');
+        Arrays.fill(styles, from, to, style);
+        length = Math.max(length, to);
+    }
+
+    /**
+     * 删除 column 列起的 count 个单元格，右侧内容左移
+     */
+    void delete(int column, int count) {
+        if (column >= length) return;
+        count = Math.min(count, length - column);
+        System.arraycopy(codepoints, column + count, codepoints, column, length - column - count);
+        System.arraycopy(styles, column + count, styles, column, length - column - count);
+        length -= count;
+        dirty = true;
+    }
+
+    /**
+     * 在 column 列插入 count 个空格，右侧内容右移，超出 maxLength 的部分被丢弃
+     */
+    void insert(int column, int count, long style, int maxLength) {
+        if (column >= length) return;
+        int newLength = Math.min(length + count, maxLength);
+        ensureCapacity(newLength);
+        int moved = newLength - column - count;
+        if (moved > 0) {
+            System.arraycopy(codepoints, column, codepoints, column + count, moved);
+            System.arraycopy(styles, column, styles, column + count, moved);
+        }
+        int end = Math.min(column + count, newLength);
+        Arrays.fill(codepoints, column, end, ' ');
+        Arrays.fill(styles, column, end, style);
+        length = newLength;
+        dirty = true;
+    }
+
+    void clear() {
+        length = 0;
+        dirty = true;
+    }
+
+    /**
+     * 截断到 maxLength 列以内（屏幕变窄时）
+     */
+    void truncate(int maxLength) {
+        if (length > maxLength) {
+            length = maxLength;
+            dirty = true;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > codepoints.length) {
+            int size = Math.max(capacity, codepoints.length * 2);
+            codepoints = Arrays.copyOf(codepoints, size);
+            styles = Arrays.copyOf(styles, size);
+        }
+    }
+}
+// 该文件实现终端中可覆盖写入的单元格行
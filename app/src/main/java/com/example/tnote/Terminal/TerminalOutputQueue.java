@@ -0,0 +1,213 @@
+package com.example.tnote.Terminal;
+
+import android.view.Choreographer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 会话输出队列：读取线程把输出追加到无锁队列，主线程每帧（Choreographer 回调）统一取出处理一次
+ * - 同一帧内的所有输出只触发一次 {@link Sink#onFrameDrained()}（刷新列表、滚动），不再每块输出各投递一个 Runnable
+ * - 单帧处理时间有上限，处理不完的留到下一帧，输入事件不会被输出饿死
+ * - 背压：积压字节超过高水位时读取线程挂起，降到低水位以下再继续读，子进程随之在管道写满时阻塞
+ * 线程约定：offer 可在任意线程调用（字节输出只应由读取线程调用，会阻塞），其余方法只在主线程调用
+ */
+public final class TerminalOutputQueue {
+    static final long HIGH_WATER = 512 * 1024; // 积压超过该字节数时挂起读取线程
+    static final long LOW_WATER = 128 * 1024;  // 积压降到该字节数以下时唤醒读取线程
+    private static final long FRAME_BUDGET_NANOS = 6_000_000L; // 每帧处理输出的时间上限
+    private static final long PARK_NANOS = 50_000_000L;        // 挂起的超时，防止漏唤醒
+
+    /**
+     * 输出的接收方（主线程回调）
+     */
+    public interface Sink {
+        /**
+         * 一段已解码的输出；text 在回调返回后会被复用，不能保存
+         */
+        void onText(CharSequence text, boolean isError);
+
+        /**
+         * 本帧的输出已全部交付
+         */
+        void onFrameDrained();
+    }
+
+    private static final class Chunk {
+        final byte[] bytes;     // 会话的原始字节输出
+        final CharSequence text; // 或主线程追加的文本（提示信息、命令回显）
+        final boolean isError;
+
+        Chunk(byte[] bytes, CharSequence text, boolean isError) {
+            this.bytes = bytes;
+            this.text = text;
+            this.isError = isError;
+        }
+    }
+
+    private final Sink sink;
+    private final Choreographer choreographer;
+    private final Choreographer.FrameCallback frameCallback = this::drain;
+    private final ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>(); // 因背压挂起的读取线程
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    // 以下只在主线程访问
+    private final StreamDecoder outputDecoder = new StreamDecoder();
+    private final StreamDecoder errorDecoder = new StreamDecoder();
+    private StreamDecoder activeDecoder; // 正在累积、尚未交付的通道
+
+    /**
+     * 需在主线程创建（绑定主线程的 Choreographer）
+     */
+    public TerminalOutputQueue(Sink sink) {
+        this.sink = sink;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * 追加原始字节输出（读取线程调用），数据被复制，buffer 可以立即复用
+     * 积压超过高水位时阻塞，直到主线程处理到低水位以下、队列关闭或线程被中断
+     */
+    public void offer(byte[] buffer, int length, boolean isError) {
+        if (closed || length <= 0) return;
+        chunks.add(new Chunk(Arrays.copyOf(buffer, length), null, isError));
+        long pending = pendingBytes.addAndGet(length);
+        schedule();
+        if (pending > HIGH_WATER) awaitDrain();
+    }
+
+    /**
+     * 追加一段文本（任意线程，不阻塞），与字节输出保持先后顺序
+     */
+    public void offerText(CharSequence text, boolean isError) {
+        if (closed || text.length() == 0) return;
+        chunks.add(new Chunk(null, text, isError));
+        schedule();
+    }
+
+    /**
+     * 丢弃积压的输出并唤醒所有挂起的读取线程，之后的输出被忽略
+     */
+    public void close() {
+        closed = true;
+        choreographer.removeFrameCallback(frameCallback);
+        chunks.clear();
+        pendingBytes.set(0);
+        wakeWaiters();
+    }
+
+    private void schedule() {
+        // Choreographer 允许从其他线程登记回调，回调总在主线程执行
+        if (scheduled.compareAndSet(false, true)) choreographer.postFrameCallback(frameCallback);
+    }
+
+    private void awaitDrain() {
+        Thread self = Thread.currentThread();
+        waiters.add(self); // 先登记再检查，主线程降到低水位后必然能看到本线程
+        try {
+            while (!closed && !self.isInterrupted() && pendingBytes.get() > LOW_WATER) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        } finally {
+            waiters.remove(self);
+        }
+    }
+
+    private void wakeWaiters() {
+        for (Thread waiter : waiters) LockSupport.unpark(waiter);
+    }
+
+    /**
+     * 帧回调：在时间预算内取出输出，相邻的同通道字节合并解码后一次交付
+     */
+    private void drain(long frameTimeNanos) {
+        scheduled.set(false); // 处理期间到达的输出会登记下一帧
+        if (closed) return;
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        long released = 0;
+        boolean delivered = false;
+        Chunk chunk;
+        while ((chunk = chunks.poll()) != null) {
+            delivered = true;
+            if (chunk.bytes != null) {
+                StreamDecoder decoder = chunk.isError ? errorDecoder : outputDecoder;
+                if (decoder != activeDecoder) flush();
+                activeDecoder = decoder;
+                decoder.decode(chunk.bytes);
+                released += chunk.bytes.length;
+            } else {
+                flush();
+                sink.onText(chunk.text, chunk.isError);
+            }
+            if (System.nanoTime() >= deadline) break;
+        }
+        flush();
+        if (released > 0 && pendingBytes.addAndGet(-released) <= LOW_WATER) wakeWaiters();
+        if (delivered) sink.onFrameDrained();
+        if (!chunks.isEmpty()) schedule();
+    }
+
+    private void flush() {
+        if (activeDecoder == null) return;
+        CharBuffer text = activeDecoder.take();
+        if (text.length() > 0) sink.onText(text, activeDecoder == errorDecoder);
+        activeDecoder = null;
+    }
+
+    /**
+     * 单个通道的 UTF-8 解码器：块边界处被拆开的多字节字符留到下一块拼接，不会变成乱码
+     */
+    private static final class StreamDecoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final byte[] carry = new byte[8]; // 上一块末尾不完整的字节序列
+        private int carryLength;
+        private CharBuffer output = CharBuffer.allocate(8192);
+
+        void decode(byte[] bytes) {
+            ByteBuffer input;
+            if (carryLength > 0) {
+                byte[] joined = new byte[carryLength + bytes.length];
+                System.arraycopy(carry, 0, joined, 0, carryLength);
+                System.arraycopy(bytes, 0, joined, carryLength, bytes.length);
+                input = ByteBuffer.wrap(joined);
+            } else {
+                input = ByteBuffer.wrap(bytes);
+            }
+            while (true) {
+                CoderResult result = decoder.decode(input, output, false);
+                if (!result.isOverflow()) break;
+                CharBuffer grown = CharBuffer.allocate(Math.max(output.capacity() * 2, output.position() + input.remaining()));
+                output.flip();
+                grown.put(output);
+                output = grown;
+            }
+            carryLength = input.remaining();
+            input.get(carry, 0, carryLength);
+        }
+
+        /**
+         * 取出已解码的文本（下次 decode 前有效）
+         */
+        CharBuffer take() {
+            output.flip();
+            CharBuffer text = output.duplicate();
+            output.clear();
+            return text;
+        }
+    }
+}
+// 该文件实现按帧批量处理的终端输出队列
@@ -0,0 +1,424 @@
+package com.example.tnote.Terminal;
+
+/**
+ * 流式 VT100/ANSI 转义序列解析器：按 DEC 状态机逐字符推进，状态跨输出块保留，被拆开的序列可以接续
+ * - 普通文本按段整体写入终端模拟器，不逐字符分配对象
+ * - SGR：粗体、暗色、斜体、下划线、闪烁、反显、隐藏、删除线，16 / 256 色与 24 位真彩色的前景和背景
+ * - 光标移动（CUU/CUD/CUF/CUB/CNL/CPL/CHA/CUP/HVP/VPA/HPA，保存与恢复）与擦除（EL/ED/ECH/DCH/ICH）
+ * - 滚动区域（DECSTBM）、滚动（SU/SD/IND/RI）、插入与删除行（IL/DL）
+ * - 私有模式：自动折行（?7）、光标显示（?25）、备用屏幕（?47/?1047/?1049）
+ * - OSC（窗口标题等）、字符集选择和未支持的序列被完整吞掉，不会作为文本显示
+ * 每个输出流各用一个实例（流之间交错到达时互不打断），共用同一个模拟器
+ * 线程约定：只在主线程使用
+ */
+final class TerminalParser {
+    private static final int STATE_GROUND = 0;
+    private static final int STATE_ESCAPE = 1;      // 收到 ESC
+    private static final int STATE_INTERMEDIATE = 2; // ESC 后的中间字符（如字符集选择 ESC ( B）
+    private static final int STATE_CSI = 3;          // ESC [ 参数部分
+    private static final int STATE_CSI_IGNORE = 4;   // 参数非法的 CSI，吞到结束字符为止
+    private static final int STATE_OSC = 5;          // ESC ] 字符串，BEL 或 ESC \ 结束
+    private static final int STATE_OSC_ESCAPE = 6;   // OSC 中收到 ESC
+
+    private static final char ESC = 0x1B;
+    private static final char BEL = 0x07;
+    private static final char CAN = 0x18;
+    private static final char SUB = 0x1A;
+    private static final String FORMAT_CONTROLS = "\b\t\n\r"; // 序列中夹带时仍需执行的控制字符
+
+    private static final int MAX_PARAMS = 16;
+    private static final int MAX_PARAM_VALUE = 65535;
+
+    private final TerminalEmulator emulator;
+    private final long baseStyle; // SGR 0 恢复到的样式
+    private long style;
+    private long savedStyle;
+
+    private int state = STATE_GROUND;
+    private final int[] params = new int[MAX_PARAMS];
+    private int paramCount;         // 已开始的参数个数（最后一个可能还在累积）
+    private char privateMarker;     // CSI 参数前的 ? > = < 标记，0 表示无
+    private char intermediate;      // CSI 中的中间字符，0 表示无
+
+    /**
+     * @param baseStyle 该流的基础样式（例如错误流为红色前景）
+     */
+    TerminalParser(TerminalEmulator emulator, long baseStyle) {
+        this.emulator = emulator;
+        this.baseStyle = baseStyle;
+        this.style = baseStyle;
+        this.savedStyle = baseStyle;
+    }
+
+    /**
+     * 解析 text 的 [start, end) 部分并写入模拟器
+     */
+    void feed(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end) {
+            if (state == STATE_GROUND) {
+                int runEnd = i;
+                while (runEnd < end && text.charAt(runEnd) != ESC) runEnd++;
+                if (runEnd > i) emulator.append(text, i, runEnd, style);
+                if (runEnd == end) return;
+                state = STATE_ESCAPE;
+                i = runEnd + 1;
+                continue;
+            }
+            char c = text.charAt(i++);
+            if (c == CAN || c == SUB) {
+                state = STATE_GROUND; // 取消当前序列
+                continue;
+            }
+            switch (state) {
+                case STATE_ESCAPE:
+                    escape(c);
+                    break;
+                case STATE_INTERMEDIATE:
+                    if (c < 0x20) {
+                        control(c);
+                    } else if (c >= 0x30) {
+                        state = STATE_GROUND; // 字符集选择等，结束字符收到即完成
+                    }
+                    break;
+                case STATE_CSI:
+                    csi(c);
+                    break;
+                case STATE_CSI_IGNORE:
+                    if (c == ESC) {
+                        state = STATE_ESCAPE;
+                    } else if (c >= 0x40 && c <= 0x7E) {
+                        state = STATE_GROUND;
+                    }
+                    break;
+                case STATE_OSC:
+                    if (c == BEL) {
+                        state = STATE_GROUND;
+                    } else if (c == ESC) {
+                        state = STATE_OSC_ESCAPE;
+                    }
+                    break;
+                case STATE_OSC_ESCAPE:
+                    if (c == '\\') {
+                        state = STATE_GROUND; // ST
+                    } else {
+                        escape(c); // OSC 未正常结束，按新的转义序列处理
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 恢复初始状态（样式与未完成的序列都被丢弃）
+     */
+    void reset() {
+        state = STATE_GROUND;
+        style = baseStyle;
+        savedStyle = baseStyle;
+    }
+
+    private void escape(char c) {
+        state = STATE_GROUND;
+        switch (c) {
+            case '[':
+                state = STATE_CSI;
+                paramCount = 0;
+                params[0] = 0;
+                privateMarker = 0;
+                intermediate = 0;
+                break;
+            case ']':
+                state = STATE_OSC;
+                break;
+            case ESC:
+                state = STATE_ESCAPE;
+                break;
+            case '7':
+                saveCursor();
+                break;
+            case '8':
+                restoreCursor();
+                break;
+            case 'D': // IND
+                emulator.index();
+                break;
+            case 'E': // NEL
+                emulator.nextLine();
+                break;
+            case 'M': // RI
+                emulator.reverseIndex();
+                break;
+            case 'c': // RIS
+                style = baseStyle;
+                savedStyle = baseStyle;
+                emulator.clear();
+                break;
+            default:
+                if (c < 0x20) {
+                    control(c);
+                    state = STATE_ESCAPE;
+                } else if (c < 0x30) {
+                    state = STATE_INTERMEDIATE;
+                }
+                // 其余单字符序列（键盘模式等）不影响显示，忽略
+        }
+    }
+
+    private void csi(char c) {
+        if (c >= '0' && c <= '9') {
+            if (paramCount == 0) paramCount = 1;
+            int index = paramCount - 1;
+            if (index < MAX_PARAMS) params[index] = Math.min(params[index] * 10 + (c - '0'), MAX_PARAM_VALUE);
+        } else if (c == ';' || c == ':') {
+            if (paramCount == 0) paramCount = 1;
+            if (paramCount < MAX_PARAMS) params[paramCount] = 0;
+            paramCount++;
+        } else if (c >= '<' && c <= '?') {
+            if (paramCount == 0 && privateMarker == 0) {
+                privateMarker = c;
+            } else {
+                state = STATE_CSI_IGNORE;
+            }
+        } else if (c >= 0x20 && c <= 0x2F) {
+            intermediate = c;
+        } else if (c >= 0x40 && c <= 0x7E) {
+            state = STATE_GROUND;
+            paramCount = Math.min(paramCount, MAX_PARAMS);
+            dispatchCsi(c);
+        } else if (c == ESC) {
+            state = STATE_ESCAPE;
+        } else if (c < 0x20) {
+            control(c); // 序列中夹带的控制字符照常执行
+        }
+    }
+
+    /**
+     * 序列中夹带的 C0 控制字符
+     */
+    private void control(char c) {
+        int index = FORMAT_CONTROLS.indexOf(c);
+        if (index >= 0) emulator.append(FORMAT_CONTROLS, index, index + 1, style);
+    }
+
+    private void dispatchCsi(char command) {
+        if (intermediate != 0) return; // 带中间字符的序列（光标形状等）不影响内容
+        if (privateMarker == '?') {
+            if (command == 'h' || command == 'l') setPrivateModes(command == 'h');
+            return;
+        }
+        if (privateMarker != 0) return;
+        switch (command) {
+            case 'm':
+                selectGraphicRendition();
+                break;
+            case 'A':
+                emulator.cursorVertical(-param(0, 1));
+                break;
+            case 'B':
+                emulator.cursorVertical(param(0, 1));
+                break;
+            case 'C':
+            case 'a': // HPR
+                emulator.cursorForward(param(0, 1));
+                break;
+            case 'D':
+                emulator.cursorBackward(param(0, 1));
+                break;
+            case 'E':
+                emulator.cursorVertical(param(0, 1));
+                emulator.setCursorColumn(0);
+                break;
+            case 'F':
+                emulator.cursorVertical(-param(0, 1));
+                emulator.setCursorColumn(0);
+                break;
+            case 'G':
+            case '`': // HPA
+                emulator.setCursorColumn(param(0, 1) - 1);
+                break;
+            case 'd': // VPA
+                emulator.setCursorRow(param(0, 1) - 1);
+                break;
+            case 'H':
+            case 'f':
+                emulator.setCursorPosition(param(0, 1) - 1, param(1, 1) - 1);
+                break;
+            case 'r':
+                emulator.setScrollRegion(param(0, 1) - 1, param(1, 0) - 1);
+                break;
+            case 'S':
+                emulator.scrollUp(param(0, 1));
+                break;
+            case 'T':
+                emulator.scrollDown(param(0, 1));
+                break;
+            case 'L':
+                emulator.insertLines(param(0, 1));
+                break;
+            case 'M':
+                emulator.deleteLines(param(0, 1));
+                break;
+            case 'J':
+                emulator.eraseInDisplay(param(0, 0), eraseStyle());
+                break;
+            case 'K':
+                emulator.eraseInLine(param(0, 0), eraseStyle());
+                break;
+            case 'X':
+                emulator.eraseCharacters(param(0, 1), eraseStyle());
+                break;
+            case 'P':
+                emulator.deleteCharacters(param(0, 1));
+                break;
+            case '@':
+                emulator.insertCharacters(param(0, 1), eraseStyle());
+                break;
+            case 's':
+                saveCursor();
+                break;
+            case 'u':
+                restoreCursor();
+                break;
+        }
+    }
+
+    /**
+     * DECSET / DECRST：一条序列可以同时设置多个模式
+     */
+    private void setPrivateModes(boolean enabled) {
+        for (int i = 0; i < paramCount; i++) {
+            switch (params[i]) {
+                case 7:
+                    emulator.setAutoWrap(enabled);
+                    break;
+                case 25:
+                    emulator.setCursorVisible(enabled);
+                    break;
+                case 47:
+                case 1047:
+                case 1049:
+                    if (enabled) saveCursor();
+                    emulator.setAlternateScreen(enabled);
+                    if (!enabled) style = savedStyle; // 光标位置由模拟器恢复
+                    break;
+                case 1048:
+                    if (enabled) {
+                        saveCursor();
+                    } else {
+                        restoreCursor();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 第 index 个参数，缺省或为 0 时返回 defaultValue
+     */
+    private int param(int index, int defaultValue) {
+        if (index >= paramCount || params[index] == 0) return defaultValue;
+        return params[index];
+    }
+
+    private void selectGraphicRendition() {
+        if (paramCount == 0) {
+            style = baseStyle;
+            return;
+        }
+        for (int i = 0; i < paramCount; i++) {
+            int code = params[i];
+            int flags = TextStyle.flags(style);
+            if (code == 0) {
+                style = baseStyle;
+            } else if (code >= 1 && code <= 9) {
+                style = TextStyle.withFlags(style, flags | flagOf(code));
+            } else if (code == 21) {
+                style = TextStyle.withFlags(style, flags | TextStyle.UNDERLINE); // 双下划线按单下划线显示
+            } else if (code == 22) {
+                style = TextStyle.withFlags(style, flags & ~(TextStyle.BOLD | TextStyle.DIM));
+            } else if (code >= 23 && code <= 29 && code != 26) {
+                int cleared = code == 25 ? flagOf(5) | flagOf(6) : flagOf(code - 20);
+                style = TextStyle.withFlags(style, flags & ~cleared);
+            } else if (code >= 30 && code <= 37) {
+                style = TextStyle.withForeground(style, TextStyle.indexed(code - 30));
+            } else if (code == 38 || code == 48) {
+                int color = extendedColor(i);
+                i += extendedColorLength(i);
+                if (color < 0) continue;
+                style = code == 38 ? TextStyle.withForeground(style, color) : TextStyle.withBackground(style, color);
+            } else if (code == 39) {
+                style = TextStyle.withForeground(style, TextStyle.foreground(baseStyle));
+            } else if (code >= 40 && code <= 47) {
+                style = TextStyle.withBackground(style, TextStyle.indexed(code - 40));
+            } else if (code == 49) {
+                style = TextStyle.withBackground(style, TextStyle.background(baseStyle));
+            } else if (code >= 90 && code <= 97) {
+                style = TextStyle.withForeground(style, TextStyle.indexed(code - 90 + 8));
+            } else if (code >= 100 && code <= 107) {
+                style = TextStyle.withBackground(style, TextStyle.indexed(code - 100 + 8));
+            }
+        }
+    }
+
+    private static int flagOf(int code) {
+        switch (code) {
+            case 1: return TextStyle.BOLD;
+            case 2: return TextStyle.DIM;
+            case 3: return TextStyle.ITALIC;
+            case 4: return TextStyle.UNDERLINE;
+            case 5:
+            case 6: return TextStyle.BLINK;
+            case 7: return TextStyle.REVERSE;
+            case 8: return TextStyle.INVISIBLE;
+            case 9: return TextStyle.STRIKETHROUGH;
+            default: return 0;
+        }
+    }
+
+    /**
+     * 解析 38 / 48 之后的 "5;n" 或 "2;r;g;b"，参数不完整时返回 -1
+     */
+    private int extendedColor(int index) {
+        if (index + 1 >= paramCount) return -1;
+        int kind = params[index + 1];
+        if (kind == 5 && index + 2 < paramCount) {
+            return TextStyle.indexed(params[index + 2]);
+        }
+        if (kind == 2 && index + 4 < paramCount) {
+            int r = Math.min(params[index + 2], 255);
+            int g = Math.min(params[index + 3], 255);
+            int b = Math.min(params[index + 4], 255);
+            return TextStyle.rgb(r << 16 | g << 8 | b);
+        }
+        return -1;
+    }
+
+    /**
+     * 38 / 48 之后被颜色参数占用的个数
+     */
+    private int extendedColorLength(int index) {
+        if (index + 1 >= paramCount) return 0;
+        int kind = params[index + 1];
+        int length = kind == 5 ? 2 : kind == 2 ? 4 : 1;
+        return Math.min(length, paramCount - index - 1);
+    }
+
+    /**
+     * 擦除与插入使用的样式：只保留当前背景色
+     */
+    private long eraseStyle() {
+        return TextStyle.encode(TextStyle.COLOR_DEFAULT, TextStyle.background(style), 0);
+    }
+
+    private void saveCursor() {
+        emulator.saveCursor();
+        savedStyle = style;
+    }
+
+    private void restoreCursor() {
+        emulator.restoreCursor();
+        style = savedStyle;
+    }
+}
+// 该文件实现终端输出的流式转义序列解析器
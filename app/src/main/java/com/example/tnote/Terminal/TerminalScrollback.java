@@ -0,0 +1,135 @@
+package com.example.tnote.Terminal;
+
+import java.util.Arrays;
+
+/**
+ * 终端回滚缓冲区：固定容量的环形行缓冲，行数达到上限后新行覆盖最旧的行
+ * - 推入的行压缩为紧凑形式：UTF-16 文本 + 样式游程（同样式的连续字符只记一次）
+ * - 被覆盖的行对象及其数组直接复用，稳定输出时不再分配内存
+ * 线程约定：只在主线程使用
+ */
+final class TerminalScrollback {
+    private static final int SHRINK_THRESHOLD = 1024; // 复用时数组超过该长度且远大于所需，则重新分配
+
+    /**
+     * 压缩后的一行
+     */
+    static final class Row {
+        char[] text = new char[16];
+        int length;
+        int[] runEnds = new int[2];     // 各游程在 text 中的结束位置（不含）
+        long[] runStyles = new long[2]; // 各游程的样式
+        int runCount;
+
+        /**
+         * 以单元格行的内容重写本行（宽字符的占位格不输出）
+         */
+        void set(TerminalLine line) {
+            int needed = line.length;
+            for (int i = 0; i < line.length; i++) {
+                if (Character.isSupplementaryCodePoint(line.codepoints[i])) needed++;
+            }
+            text = fit(text, needed);
+            length = 0;
+            runCount = 0;
+            for (int i = 0; i < line.length; i++) {
+                if (line.codepoints[i] == TerminalLine.WIDE_TAIL) continue;
+                long style = line.styles[i];
+                if (runCount == 0 || runStyles[runCount - 1] != style) {
+                    if (runCount == runStyles.length) growRuns();
+                    runStyles[runCount++] = style;
+                }
+                length += Character.toChars(line.codepoints[i], text, length);
+                runEnds[runCount - 1] = length;
+            }
+        }
+
+        private void growRuns() {
+            int size = runStyles.length * 2;
+            runEnds = Arrays.copyOf(runEnds, size);
+            runStyles = Arrays.copyOf(runStyles, size);
+        }
+
+        private static char[] fit(char[] array, int needed) {
+            if (needed > array.length) return new char[Math.max(needed, array.length * 2)];
+            if (array.length > SHRINK_THRESHOLD && needed < array.length / 4) return new char[Math.max(16, needed)];
+            return array;
+        }
+    }
+
+    private Row[] rows;
+    private int start;  // 最旧一行在环中的位置
+    private int size;
+    private long dropped; // 累计被覆盖（丢弃）的行数
+
+    /**
+     * @param lineLimit 最多保留的行数
+     */
+    TerminalScrollback(int lineLimit) {
+        rows = new Row[Math.max(1, lineLimit)];
+    }
+
+    /**
+     * 压缩并追加一行，已满时覆盖最旧的一行
+     */
+    void push(TerminalLine line) {
+        Row row;
+        if (size == rows.length) {
+            row = rows[start];
+            start = (start + 1) % rows.length;
+            dropped++;
+        } else {
+            int index = (start + size) % rows.length;
+            row = rows[index];
+            if (row == null) rows[index] = row = new Row();
+            size++;
+        }
+        row.set(line);
+    }
+
+    /**
+     * @param index 0 为最旧的一行
+     */
+    Row get(int index) {
+        return rows[(start + index) % rows.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getDroppedCount() {
+        return dropped;
+    }
+
+    int getLineLimit() {
+        return rows.length;
+    }
+
+    /**
+     * 修改行数上限，保留最新的行
+     */
+    void setLineLimit(int lineLimit) {
+        lineLimit = Math.max(1, lineLimit);
+        if (lineLimit == rows.length) return;
+        Row[] resized = new Row[lineLimit];
+        int kept = Math.min(size, lineLimit);
+        for (int i = 0; i < kept; i++) {
+            resized[i] = get(size - kept + i);
+        }
+        dropped += size - kept;
+        rows = resized;
+        start = 0;
+        size = kept;
+    }
+
+    /**
+     * 清空所有行（行对象保留以便复用）
+     */
+    void clear() {
+        dropped += size;
+        start = 0;
+        size = 0;
+    }
+}
+// 该文件实现终端输出的环形回滚缓冲区
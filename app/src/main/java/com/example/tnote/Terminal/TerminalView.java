@@ -0,0 +1,412 @@
+package com.example.tnote.Terminal;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.OverScroller;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.tnote.R;
+
+import java.util.Arrays;
+
+/**
+ * 终端输出视图：在 Canvas 上按等宽单元格直接绘制回滚缓冲区与屏幕，不经过 TextView / Span 的测量与排版
+ * - 绘制好的行缓存在离屏位图中：位图按行高分成若干槽位循环使用，第 n 行固定落在第 n % 槽位数 个槽位
+ * - 每帧只重绘有损坏标记或新进入视口的行；滚动只移动视口在位图中的起点，绘制时最多两次位图拷贝
+ * - 每种样式的 Paint 缓存在固定大小的表中原地复用；ASCII 文本直接从行的字符数组整段绘制，不复制不分配
+ * 行号使用绝对行号（累计丢弃的行数 + 在列表中的位置）：行推入回滚或最旧的行被丢弃都不改变已有行的绝对行号
+ * 输出变化后调用 {@link #update()}；线程约定：只在主线程使用
+ */
+public class TerminalView extends View {
+    private static final float TEXT_SIZE_SP = 14;
+    private static final int PAINT_CACHE_SIZE = 64; // 需为 2 的幂
+    private static final float ITALIC_SKEW = -0.25f;
+    private static final int DIM_ALPHA = 0x99;
+    private static final long NO_ROW = Long.MIN_VALUE;
+
+    private final Paint basePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final Paint cursorPaint = new Paint();
+    private final long[] paintKeys = new long[PAINT_CACHE_SIZE];
+    private final Paint[] paints = new Paint[PAINT_CACHE_SIZE];
+    private final TerminalScrollback.Row screenRow = new TerminalScrollback.Row(); // 绘制屏幕行时的压缩副本
+    private final Rect source = new Rect();
+    private final Rect destination = new Rect();
+    private int defaultForeground;
+    private int defaultBackground;
+    private float cellWidth;
+    private int cellHeight;
+    private float baseline; // 行内基线相对行顶的偏移
+
+    private TerminalEmulator emulator;
+    private TerminalScrollback scrollback;
+
+    // 行缓存
+    private Bitmap cache;
+    private Canvas cacheCanvas;
+    private long[] slotRows; // 各槽位缓存的绝对行号
+    private int slotCount;
+
+    // 视口
+    private GestureDetector gestureDetector;
+    private OverScroller scroller;
+    private int scrollBack; // 视口底部距内容底部的像素数，0 表示跟随输出
+    private long lastEnd;   // 上次 update 时内容末尾的绝对行号（不含）
+
+    // 构造方法
+    public TerminalView(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public TerminalView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public TerminalView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        defaultForeground = ContextCompat.getColor(context, R.color.ansi_white);
+        defaultBackground = ContextCompat.getColor(context, R.color.terminal_background);
+        basePaint.setTypeface(Typeface.MONOSPACE);
+        basePaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+        cellWidth = basePaint.measureText("M");
+        cellHeight = (int) Math.ceil(basePaint.getFontSpacing());
+        float ascent = basePaint.ascent();
+        baseline = (cellHeight - (basePaint.descent() - ascent)) / 2 - ascent;
+        cursorPaint.setColor(defaultForeground & 0x00FFFFFF | 0x80000000);
+
+        scroller = new OverScroller(context);
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                setScrollBack(scrollBack - (int) distanceY);
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                scroller.fling(0, scrollBack, 0, (int) velocityY, 0, 0, 0, maxScrollBack());
+                postInvalidateOnAnimation();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 关联终端模拟器，之后的绘制内容全部来自它
+     */
+    public void attach(TerminalEmulator emulator) {
+        this.emulator = emulator;
+        this.scrollback = emulator.getScrollback();
+        lastEnd = contentEnd();
+        emulator.clearDamage();
+        invalidateSlots(NO_ROW, Long.MAX_VALUE);
+        resizeEmulator();
+        invalidate();
+    }
+
+    /**
+     * 每帧输出处理完后调用：按损坏标记作废对应行的缓存，保持视口位置后请求重绘
+     */
+    public void update() {
+        if (emulator == null) return;
+        long start = scrollback.getDroppedCount();
+        long end = contentEnd();
+        if (emulator.isFullyDamaged()) {
+            invalidateSlots(NO_ROW, Long.MAX_VALUE);
+        } else {
+            int damaged = emulator.getFirstDamagedScrollbackRow();
+            if (damaged >= 0) invalidateSlots(start + damaged, start + scrollback.size()); // 改写后才滚出屏幕的行
+            long screenStart = start + scrollback.size();
+            for (int row = 0; row < emulator.getRows(); row++) {
+                if (emulator.getScreenRow(row).dirty) invalidateSlot(screenStart + row);
+            }
+            // 内容末尾移动时，两者之间的行在"有内容"与"空白"之间切换
+            if (end != lastEnd) invalidateSlots(Math.min(end, lastEnd), Math.max(end, lastEnd));
+        }
+        emulator.clearDamage();
+        if (scrollBack > 0 && end > lastEnd) {
+            scrollBack += (int) Math.min(Integer.MAX_VALUE, (end - lastEnd) * cellHeight); // 向上翻看时新输出不移动视口
+        }
+        lastEnd = end;
+        setScrollBack(scrollBack);
+    }
+
+    /**
+     * 回到底部并跟随输出
+     */
+    public void scrollToBottom() {
+        scroller.forceFinished(true);
+        setScrollBack(0);
+    }
+
+    private long contentEnd() {
+        return scrollback.getDroppedCount() + scrollback.size() + emulator.getVisibleRowCount();
+    }
+
+    private int maxScrollBack() {
+        if (emulator == null) return 0;
+        long contentHeight = (lastEnd - scrollback.getDroppedCount()) * cellHeight;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, contentHeight - getHeight()));
+    }
+
+    private void setScrollBack(int value) {
+        scrollBack = Math.max(0, Math.min(value, maxScrollBack()));
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) scroller.forceFinished(true);
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (scroller.computeScrollOffset()) {
+            setScrollBack(scroller.getCurrY());
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        releaseCache();
+        resizeEmulator();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseCache();
+    }
+
+    /**
+     * 按视图大小调整终端屏幕的行列数
+     */
+    private void resizeEmulator() {
+        if (emulator == null || getWidth() <= 0 || getHeight() <= 0) return;
+        emulator.resize((int) (getWidth() / cellWidth), getHeight() / cellHeight);
+        update();
+    }
+
+    // region 绘制
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (emulator == null || getWidth() <= 0 || getHeight() <= 0) return;
+        if (cache == null) allocateCache();
+
+        int height = getHeight();
+        // 内容不足一屏时从顶部开始显示
+        long top = Math.max(lastEnd * cellHeight - scrollBack - height, scrollback.getDroppedCount() * cellHeight);
+        long bottom = top + height;
+        long lastRow = Math.floorDiv(bottom - 1, cellHeight);
+        for (long row = Math.floorDiv(top, cellHeight); row <= lastRow; row++) {
+            int slot = (int) Math.floorMod(row, (long) slotCount);
+            if (slotRows[slot] != row) {
+                renderRow(row, slot * cellHeight);
+                slotRows[slot] = row;
+            }
+        }
+
+        // 视口在环形位图中最多跨越首尾两段
+        int cacheHeight = slotCount * cellHeight;
+        int sourceTop = (int) Math.floorMod(top, (long) cacheHeight);
+        int first = Math.min(height, cacheHeight - sourceTop);
+        source.set(0, sourceTop, getWidth(), sourceTop + first);
+        destination.set(0, 0, getWidth(), first);
+        canvas.drawBitmap(cache, source, destination, null);
+        if (first < height) {
+            source.set(0, 0, getWidth(), height - first);
+            destination.set(0, first, getWidth(), height);
+            canvas.drawBitmap(cache, source, destination, null);
+        }
+        drawCursor(canvas, top);
+    }
+
+    /**
+     * 光标不进入行缓存，每帧叠加绘制，移动光标不产生损坏
+     */
+    private void drawCursor(Canvas canvas, long top) {
+        if (!emulator.isCursorVisible()) return;
+        long row = scrollback.getDroppedCount() + scrollback.size() + emulator.getCursorRow();
+        float y = row * cellHeight - top;
+        if (y + cellHeight <= 0 || y >= getHeight()) return;
+        float x = emulator.getCursorColumn() * cellWidth;
+        canvas.drawRect(x, y, x + cellWidth, y + cellHeight, cursorPaint);
+    }
+
+    /**
+     * 把绝对行号为 row 的行绘制到位图中 top 处的槽位
+     */
+    private void renderRow(long row, int top) {
+        backgroundPaint.setColor(defaultBackground);
+        cacheCanvas.drawRect(0, top, cache.getWidth(), top + cellHeight, backgroundPaint);
+        long position = row - scrollback.getDroppedCount();
+        int screenStart = scrollback.size();
+        if (position < 0 || position >= screenStart + emulator.getVisibleRowCount()) return; // 内容之外的空白
+        TerminalScrollback.Row line;
+        if (position < screenStart) {
+            line = scrollback.get((int) position);
+        } else {
+            screenRow.set(emulator.getScreenRow((int) (position - screenStart)));
+            line = screenRow;
+        }
+        float y = top + baseline;
+        int column = 0;
+        int start = 0;
+        for (int i = 0; i < line.runCount; i++) {
+            int end = line.runEnds[i];
+            long style = line.runStyles[i];
+            int columns = columnsOf(line.text, start, end);
+            int background = backgroundOf(style);
+            if (background != defaultBackground) {
+                backgroundPaint.setColor(background);
+                cacheCanvas.drawRect(column * cellWidth, top, (column + columns) * cellWidth, top + cellHeight, backgroundPaint);
+            }
+            if ((TextStyle.flags(style) & TextStyle.INVISIBLE) == 0) {
+                drawRun(line.text, start, end, column, y, paintFor(style));
+            }
+            column += columns;
+            start = end;
+        }
+    }
+
+    /**
+     * 绘制同一样式的一段：连续的 ASCII 字符整段绘制，其余字符逐个放到所在列，宽字符占两列
+     */
+    private void drawRun(char[] text, int start, int end, int column, float y, Paint paint) {
+        int segmentStart = start;
+        int segmentColumn = column;
+        int i = start;
+        while (i < end) {
+            int codepoint = Character.codePointAt(text, i, end);
+            if (codepoint < 0x80) {
+                i++;
+                column++;
+                continue;
+            }
+            if (i > segmentStart) {
+                cacheCanvas.drawText(text, segmentStart, i - segmentStart, segmentColumn * cellWidth, y, paint);
+            }
+            int charCount = Character.charCount(codepoint);
+            cacheCanvas.drawText(text, i, charCount, column * cellWidth, y, paint);
+            column += TerminalEmulator.charWidth(codepoint);
+            i += charCount;
+            segmentStart = i;
+            segmentColumn = column;
+        }
+        if (i > segmentStart) {
+            cacheCanvas.drawText(text, segmentStart, i - segmentStart, segmentColumn * cellWidth, y, paint);
+        }
+    }
+
+    private static int columnsOf(char[] text, int start, int end) {
+        int columns = 0;
+        for (int i = start; i < end; ) {
+            int codepoint = Character.codePointAt(text, i, end);
+            columns += codepoint < 0x80 ? 1 : TerminalEmulator.charWidth(codepoint);
+            i += Character.charCount(codepoint);
+        }
+        return columns;
+    }
+    // endregion
+
+    // region 样式
+
+    /**
+     * 样式对应的文字 Paint：按样式值散列到固定槽位，未命中时原地重新配置该槽位的 Paint
+     */
+    private Paint paintFor(long style) {
+        int index = (int) ((style ^ style >>> 32) * 0x9E3779B1L >>> 16) & (PAINT_CACHE_SIZE - 1);
+        Paint paint = paints[index];
+        if (paint != null && paintKeys[index] == style) return paint;
+        if (paint == null) paints[index] = paint = new Paint();
+        int flags = TextStyle.flags(style);
+        paint.set(basePaint);
+        paint.setColor(foregroundOf(style));
+        if ((flags & TextStyle.DIM) != 0) paint.setAlpha(DIM_ALPHA);
+        paint.setFakeBoldText((flags & TextStyle.BOLD) != 0);
+        paint.setTextSkewX((flags & TextStyle.ITALIC) != 0 ? ITALIC_SKEW : 0);
+        paint.setUnderlineText((flags & TextStyle.UNDERLINE) != 0);
+        paint.setStrikeThruText((flags & TextStyle.STRIKETHROUGH) != 0);
+        paintKeys[index] = style;
+        return paint;
+    }
+
+    private int foregroundOf(long style) {
+        if ((TextStyle.flags(style) & TextStyle.REVERSE) != 0) {
+            return TextStyle.resolve(TextStyle.background(style), defaultBackground);
+        }
+        return TextStyle.resolve(TextStyle.foreground(style), defaultForeground);
+    }
+
+    private int backgroundOf(long style) {
+        if ((TextStyle.flags(style) & TextStyle.REVERSE) != 0) {
+            return TextStyle.resolve(TextStyle.foreground(style), defaultForeground);
+        }
+        return TextStyle.resolve(TextStyle.background(style), defaultBackground);
+    }
+    // endregion
+
+    // region 行缓存
+
+    /**
+     * 位图高度为视口行数再加两行，视口跨越的行总能各占一个槽位
+     */
+    private void allocateCache() {
+        slotCount = getHeight() / cellHeight + 2;
+        cache = Bitmap.createBitmap(getWidth(), slotCount * cellHeight, Bitmap.Config.ARGB_8888);
+        cacheCanvas = new Canvas(cache);
+        slotRows = new long[slotCount];
+        Arrays.fill(slotRows, NO_ROW);
+    }
+
+    private void releaseCache() {
+        if (cache != null) cache.recycle();
+        cache = null;
+        cacheCanvas = null;
+        slotRows = null;
+    }
+
+    private void invalidateSlot(long row) {
+        if (slotRows == null) return;
+        int slot = (int) Math.floorMod(row, (long) slotCount);
+        if (slotRows[slot] == row) slotRows[slot] = NO_ROW;
+    }
+
+    /**
+     * 作废缓存中绝对行号在 [from, to) 之间的行
+     */
+    private void invalidateSlots(long from, long to) {
+        if (slotRows == null) return;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotRows[slot] >= from && slotRows[slot] < to) slotRows[slot] = NO_ROW;
+        }
+    }
+    // endregion
+}
+// 该文件实现按单元格直接绘制的终端输出视图
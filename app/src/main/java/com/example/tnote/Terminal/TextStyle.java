@@ -0,0 +1,109 @@
+package com.example.tnote.Terminal;
+
+/**
+ * 终端字符样式：前景色、背景色与字形标志打包在一个 long 中，按值存放在单元格数组里，不分配对象
+ * 布局（从低位起）：前景色 26 位 | 背景色 26 位 | 标志 12 位
+ * 颜色编码：第 24、25 位为类型（默认色 / 256 色索引 / 24 位真彩色），低 24 位为索引或 RGB
+ */
+public final class TextStyle {
+    public static final long DEFAULT = 0;
+
+    public static final int COLOR_DEFAULT = 0;
+    private static final int KIND_INDEXED = 1 << 24;
+    private static final int KIND_RGB = 2 << 24;
+    private static final int KIND_MASK = 3 << 24;
+    private static final int COLOR_BITS = 26;
+    private static final long COLOR_MASK = (1L << COLOR_BITS) - 1;
+
+    // 字形标志
+    public static final int BOLD = 1;
+    public static final int DIM = 1 << 1;
+    public static final int ITALIC = 1 << 2;
+    public static final int UNDERLINE = 1 << 3;
+    public static final int BLINK = 1 << 4;
+    public static final int REVERSE = 1 << 5;
+    public static final int INVISIBLE = 1 << 6;
+    public static final int STRIKETHROUGH = 1 << 7;
+
+    /**
+     * xterm 256 色表：0-15 与 colors.xml 中的 ANSI 色一致，16-231 为 6x6x6 色立方，232-255 为灰阶
+     */
+    private static final int[] PALETTE = new int[256];
+
+    static {
+        int[] ansi = {
+                0xFF000000, 0xFFCD0000, 0xFF00CD00, 0xFFCDCD00, 0xFF0000CD, 0xFFCD00CD, 0xFF00CDCD, 0xFFE5E5E5,
+                0xFF666666, 0xFFFF0000, 0xFF00FF00, 0xFFFFFF00, 0xFF0000FF, 0xFFFF00FF, 0xFF00FFFF, 0xFFFFFFFF
+        };
+        System.arraycopy(ansi, 0, PALETTE, 0, ansi.length);
+        int[] levels = {0, 95, 135, 175, 215, 255};
+        for (int i = 0; i < 216; i++) {
+            PALETTE[16 + i] = 0xFF000000 | levels[i / 36] << 16 | levels[i / 6 % 6] << 8 | levels[i % 6];
+        }
+        for (int i = 0; i < 24; i++) {
+            int gray = 8 + 10 * i;
+            PALETTE[232 + i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+        }
+    }
+
+    private TextStyle() {
+    }
+
+    /**
+     * 256 色表中的颜色
+     */
+    public static int indexed(int index) {
+        return KIND_INDEXED | (index & 0xFF);
+    }
+
+    /**
+     * 24 位真彩色
+     */
+    public static int rgb(int rgb) {
+        return KIND_RGB | (rgb & 0xFFFFFF);
+    }
+
+    public static long encode(int foreground, int background, int flags) {
+        return (foreground & COLOR_MASK) | (background & COLOR_MASK) << COLOR_BITS | (long) flags << (2 * COLOR_BITS);
+    }
+
+    public static int foreground(long style) {
+        return (int) (style & COLOR_MASK);
+    }
+
+    public static int background(long style) {
+        return (int) (style >>> COLOR_BITS & COLOR_MASK);
+    }
+
+    public static int flags(long style) {
+        return (int) (style >>> (2 * COLOR_BITS));
+    }
+
+    public static long withForeground(long style, int color) {
+        return encode(color, background(style), flags(style));
+    }
+
+    public static long withBackground(long style, int color) {
+        return encode(foreground(style), color, flags(style));
+    }
+
+    public static long withFlags(long style, int flags) {
+        return encode(foreground(style), background(style), flags);
+    }
+
+    /**
+     * 把颜色编码换算为 ARGB
+     * @param defaultColor 默认色（终端的前景或背景色）
+     */
+    public static int resolve(int color, int defaultColor) {
+        switch (color & KIND_MASK) {
+            case KIND_INDEXED:
+                return PALETTE[color & 0xFF];
+            case KIND_RGB:
+                return 0xFF000000 | (color & 0xFFFFFF);
+            default:
+                return defaultColor;
+        }
+    }
+}
+// 该文件定义终端单元格的打包样式与 256 色表
@@ -0,0 +1,155 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import com.example.tnote.Utils.FileIOUtils;
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近打开文件的缓存：解码后的文本与各行行尾词法状态，按规范路径索引，以文件长度和修改时间校验
+ * - 再次打开未变化的文件时不必重新读取、解码，也不必从文件开头重新传播高亮状态
+ * - 缓存的字符数组直接作为分片表的原始缓冲区（两者都只读），打开期间不额外占用内存
+ * - 按最近使用顺序淘汰，总大小受预算限制；系统内存紧张时（onTrimMemory）缩小或清空
+ * 查找与写入都在 IO 线程进行，缓存本身由锁保护
+ */
+public final class DocumentCache {
+    private static final String TAG = "DocumentCache";
+    private static final long BUDGET = Math.min(16L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+
+    /**
+     * 缓存的文档：text 的前 length 个字符即文件解码后的内容，调用方不得修改
+     */
+    public static final class Entry {
+        public final char[] text;
+        public final int length;
+        public final FileIOUtils.Encoding encoding;
+        public final int[] lineStates; // 各行行尾词法状态，可能为 null
+        public final long fileLength;   // 内容对应的文件长度与修改时间
+        public final long fileModified;
+
+        Entry(char[] text, int length, FileIOUtils.Encoding encoding, int[] lineStates, long fileLength, long fileModified) {
+            this.text = text;
+            this.length = length;
+            this.encoding = encoding;
+            this.lineStates = lineStates;
+            this.fileLength = fileLength;
+            this.fileModified = fileModified;
+        }
+
+        long bytes() {
+            return 2L * text.length + (lineStates != null ? 4L * lineStates.length : 0);
+        }
+    }
+
+    public interface LookupCallback {
+        /**
+         * 查找完成（主线程）
+         * @param entry 与文件当前内容一致的缓存，没有时为 null
+         */
+        void onResult(Entry entry);
+    }
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // 按访问顺序
+    private static long totalBytes;
+
+    private DocumentCache() {
+    }
+
+    /**
+     * 在交互通道中查找文件的缓存；文件长度或修改时间已变化的条目被移除
+     * @return 取消令牌，取消后不再回调
+     */
+    public static IOScheduler.CancellationToken lookup(File file, LookupCallback callback) {
+        IOScheduler.CancellationToken token = new IOScheduler.CancellationToken();
+        return IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, null, token, () -> {
+            Entry entry = null;
+            String key = keyOf(file);
+            if (key != null) {
+                long length = file.length();
+                long modified = file.lastModified();
+                synchronized (lock) {
+                    entry = entries.get(key);
+                    if (entry != null && (entry.fileLength != length || entry.fileModified != modified)) {
+                        removeLocked(key);
+                        entry = null;
+                    }
+                }
+            }
+            Entry result = entry;
+            IOScheduler.postToMain(() -> {
+                if (!token.isCancelled()) callback.onResult(result);
+            });
+        });
+    }
+
+    /**
+     * 缓存文件内容（编辑器关闭且内容与文件一致时调用，主线程），文本在后台复制
+     * @param text 与文件内容一致的文档快照
+     * @param lineStates 各行行尾词法状态，可为 null
+     * @param fileLength 快照对应的文件长度（读入或保存时记录）
+     * @param fileModified 快照对应的文件修改时间
+     */
+    public static void put(File file, PieceTable.Snapshot text, FileIOUtils.Encoding encoding, int[] lineStates,
+                           long fileLength, long fileModified) {
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, null, () -> {
+            String key = keyOf(file);
+            if (key == null) return;
+            char[] chars = new char[text.length()];
+            text.getChars(0, chars.length, chars, 0);
+            Entry entry = new Entry(chars, chars.length, encoding, lineStates, fileLength, fileModified);
+            synchronized (lock) {
+                removeLocked(key);
+                if (entry.bytes() > BUDGET) return; // 单个文件超出预算，不缓存
+                entries.put(key, entry);
+                totalBytes += entry.bytes();
+                trimLocked(BUDGET);
+            }
+        });
+    }
+
+    /**
+     * 响应系统的内存紧张通知：界面不可见或内存偏低时只保留一半预算，更严重时清空
+     */
+    public static void trimMemory(int level) {
+        synchronized (lock) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                entries.clear();
+                totalBytes = 0;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                trimLocked(BUDGET / 2);
+            }
+        }
+        Log.println(Log.INFO, TAG, "trim level " + level + ", " + totalBytes + " bytes cached");
+    }
+
+    private static String keyOf(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void removeLocked(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) totalBytes -= old.bytes();
+    }
+
+    private static void trimLocked(long limit) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > limit && iterator.hasNext()) {
+            totalBytes -= iterator.next().getValue().bytes();
+            iterator.remove(); // 最久未使用的在前
+        }
+    }
+}
+// 该文件实现按路径、长度和修改时间校验的最近打开文件缓存
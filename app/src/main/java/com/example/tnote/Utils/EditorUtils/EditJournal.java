@@ -0,0 +1,472 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 文档的追加式编辑日志，进程被系统杀死后用于恢复未保存的修改：
+ * - 每次编辑记录为一条紧凑的二进制记录（变长整数 + UTF-8 + CRC32），先写入内存缓冲，
+ *   每 GROUP_COMMIT_MS 合并一次追加到日志文件并 fsync
+ * - 保存时在日志流中写入快照标记；保存落盘后（IO 线程）原子更新 base 文件，
+ *   记录磁盘上的文件对应哪个快照以及当时的长度和修改时间
+ * - 重新打开文件时校验 base 与磁盘文件一致，重放该快照标记之后的编辑；不一致（文件被外部修改）则丢弃日志
+ * - 日志超过 COMPACT_THRESHOLD_BYTES 时通知编辑器做一次完整保存，落盘后截掉已保存快照之前的记录
+ * 记录、标记在主线程调用；文件读写都在 IO 调度器中以日志路径为 key 串行执行
+ */
+public final class EditJournal {
+    private static final String TAG = "EditJournal";
+    static final int JOURNAL_MAGIC = 0x544E4A31;         // "TNJ1"
+    private static final int BASE_MAGIC = 0x544E4231;    // "TNB1"
+    private static final long GROUP_COMMIT_MS = 500;
+    private static final long COMPACT_THRESHOLD_BYTES = 256 * 1024;
+    private static final int HEADER_BYTES = 4;
+    private static final int TYPE_EDIT = 1;
+    private static final int TYPE_SNAPSHOT = 2;
+
+    /**
+     * 一条待重放的编辑：把 [offset, offset + removed) 替换为 inserted
+     */
+    public static final class Edit {
+        public final int offset;
+        public final int removed;
+        public final String inserted;
+
+        Edit(int offset, int removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
+    public interface RecoveryCallback {
+        /**
+         * 日志加载完成（主线程），edits 为需要重放到刚读入的文档上的编辑，可能为空
+         */
+        void onRecovered(List<Edit> edits);
+    }
+
+    public interface CompactionListener {
+        /**
+         * 日志已足够大，应做一次完整保存（主线程）
+         */
+        void onCompactionDue();
+    }
+
+    private final File target;
+    private final File journalFile;
+    private final File baseFile;
+    private final String key;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+    private CompactionListener compactionListener;
+
+    // 以下字段只在主线程访问
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private boolean recording;
+    private boolean flushScheduled;
+    private boolean compactionRequested;
+    private long journalBytes;        // 日志文件大小（含已提交但未写完的部分）
+    private long nextSnapshotId;
+    private boolean editedSinceSnapshot; // 最近一次快照标记之后是否又记录过编辑
+
+    private EditJournal(File target, File directory) {
+        this.target = target.getAbsoluteFile();
+        String name = Integer.toHexString(this.target.getPath().hashCode()) + "-" + this.target.getName();
+        this.journalFile = new File(directory, name + ".journal");
+        this.baseFile = new File(directory, name + ".base");
+        this.key = journalFile.getPath();
+    }
+
+    /**
+     * 获取文件对应的日志（日志保存在应用私有目录）
+     */
+    public static EditJournal forFile(Context context, File file) {
+        File directory = new File(context.getFilesDir(), "journal");
+        if (!directory.isDirectory() && !directory.mkdirs()) Log.e(TAG, "Cannot create " + directory);
+        return new EditJournal(file, directory);
+    }
+
+    public void setCompactionListener(CompactionListener listener) {
+        this.compactionListener = listener;
+    }
+
+    /**
+     * 读取已有日志并校验，返回需要重放的编辑；之后日志准备好继续追加，
+     * 调用方重放完成后调用 {@link #startRecording()}
+     * 须在目标文件读入之后调用
+     */
+    public void recover(RecoveryCallback callback) {
+        IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, key, () -> {
+            List<Edit> edits = new ArrayList<>();
+            long lastSnapshot = 0;
+            try {
+                Base base = readBase();
+                if (base != null && base.length == target.length() && base.lastModified == target.lastModified()) {
+                    lastSnapshot = readJournal(journalFile, base.snapshotId, edits);
+                } else {
+                    resetFiles();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Journal unreadable, starting over: " + e.getMessage());
+                edits.clear();
+                lastSnapshot = 0;
+                try {
+                    resetFiles();
+                } catch (IOException resetError) {
+                    Log.e(TAG, "Cannot reset journal: " + resetError.getMessage());
+                }
+            }
+            long size = journalFile.length();
+            long snapshotId = lastSnapshot;
+            IOScheduler.postToMain(() -> {
+                journalBytes = size;
+                nextSnapshotId = snapshotId + 1;
+                callback.onRecovered(edits);
+            });
+        });
+    }
+
+    /**
+     * 开始记录编辑（重放完成后调用）
+     */
+    public void startRecording() {
+        recording = true;
+    }
+
+    /**
+     * 记录一次编辑（主线程，TextWatcher.onTextChanged 中调用）
+     */
+    public void recordEdit(int offset, int removed, CharSequence inserted) {
+        if (!recording) return;
+        editedSinceSnapshot = true;
+        append(editPayload(offset, removed, inserted));
+    }
+
+    /**
+     * 在保存开始时调用（主线程，与取快照同时），在日志流中写入快照标记
+     * @return 快照编号；保存落盘后在 IO 线程调用 {@link #onSnapshotCommitted(long)}
+     */
+    public long markSnapshot() {
+        long id = nextSnapshotId++;
+        editedSinceSnapshot = false;
+        if (recording) append(snapshotPayload(id));
+        return id;
+    }
+
+    /**
+     * 最近一次快照标记之后是否记录过编辑（主线程）；有则重新打开时这些编辑会被重放，
+     * 对应的文本不能当作与磁盘一致的内容缓存
+     */
+    public boolean hasEditsSinceSnapshot() {
+        return editedSinceSnapshot;
+    }
+
+    /**
+     * 快照已写入目标文件（在保存任务的 IO 线程、文件替换后立即调用）：
+     * 原子更新 base，重放时将从该快照标记之后开始
+     */
+    public void onSnapshotCommitted(long snapshotId) {
+        try {
+            File temp = new File(baseFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(BASE_MAGIC);
+                data.writeLong(snapshotId);
+                data.writeLong(target.length());
+                data.writeLong(target.lastModified());
+                data.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), baseFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot update journal base: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 截掉已保存快照之前的记录（完整保存成功后在主线程调用）
+     */
+    public void compact() {
+        flush(); // 先提交缓冲，保证压缩任务排在这些追加之后
+        // 与分组 fsync 同一 key，按保存优先级执行：压缩只读写一个小文件，不能让之后的追加等待后台配额
+        IOScheduler.submit(IOScheduler.Priority.SAVE, key, () -> {
+            long size;
+            try {
+                Base base = readBase();
+                if (base == null) throw new IOException("Journal base missing");
+                byte[] tail = readTailAfter(journalFile, base.snapshotId);
+                File temp = new File(journalFile.getPath() + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(temp);
+                     DataOutputStream data = new DataOutputStream(out)) {
+                    data.writeInt(JOURNAL_MAGIC);
+                    data.write(tail);
+                    data.flush();
+                    out.getFD().sync();
+                }
+                Files.move(temp.toPath(), journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                size = HEADER_BYTES + tail.length;
+            } catch (IOException e) {
+                Log.e(TAG, "Journal compaction failed: " + e.getMessage());
+                size = journalFile.length();
+            }
+            long compacted = size;
+            IOScheduler.postToMain(() -> {
+                journalBytes = compacted;
+                compactionRequested = false;
+            });
+        });
+    }
+
+    /**
+     * 立即提交缓冲中的记录（如 onPause 时）
+     */
+    public void flush() {
+        if (flushScheduled) {
+            mainHandler.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+        }
+        if (pending.size() == 0) return;
+        byte[] bytes = pending.toByteArray();
+        pending = new ByteArrayOutputStream();
+        journalBytes += bytes.length;
+        IOScheduler.submit(IOScheduler.Priority.SAVE, key, () -> {
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                out.write(bytes);
+                out.getChannel().force(false); // 一组记录一次 fsync
+            } catch (IOException e) {
+                Log.e(TAG, "Journal append failed: " + e.getMessage());
+            }
+        });
+        if (!compactionRequested && journalBytes > COMPACT_THRESHOLD_BYTES && compactionListener != null) {
+            compactionRequested = true;
+            compactionListener.onCompactionDue();
+        }
+    }
+
+    /**
+     * 停止记录并提交剩余缓冲（编辑器销毁时调用）
+     */
+    public void close() {
+        flush();
+        recording = false;
+    }
+
+    // region 记录编码
+
+    /**
+     * 追加一条记录到缓冲，并安排合并提交
+     */
+    private void append(byte[] payload) {
+        writeRecord(pending, payload);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, GROUP_COMMIT_MS);
+        }
+    }
+
+    static byte[] editPayload(int offset, int removed, CharSequence inserted) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + inserted.length());
+        payload.write(TYPE_EDIT);
+        writeVarint(payload, offset);
+        writeVarint(payload, removed);
+        byte[] text = inserted.toString().getBytes(StandardCharsets.UTF_8);
+        payload.write(text, 0, text.length);
+        return payload.toByteArray();
+    }
+
+    static byte[] snapshotPayload(long id) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(10);
+        payload.write(TYPE_SNAPSHOT);
+        writeVarint(payload, id);
+        return payload.toByteArray();
+    }
+
+    /**
+     * 记录格式：[变长整数 payload 长度][payload][CRC32(payload)，大端 4 字节]
+     */
+    static void writeRecord(ByteArrayOutputStream out, byte[] payload) {
+        writeVarint(out, payload.length);
+        out.write(payload, 0, payload.length);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        int value = (int) crc.getValue();
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // endregion
+
+    // region 文件读取（IO 线程）
+
+    private static final class Base {
+        final long snapshotId;
+        final long length;
+        final long lastModified;
+
+        Base(long snapshotId, long length, long lastModified) {
+            this.snapshotId = snapshotId;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private Base readBase() throws IOException {
+        if (!baseFile.isFile() || !journalFile.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(baseFile))) {
+            if (in.readInt() != BASE_MAGIC) return null;
+            return new Base(in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    /**
+     * 以目标文件当前状态为快照 0 重新开始日志
+     */
+    private void resetFiles() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(journalFile);
+             DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(JOURNAL_MAGIC);
+            data.flush();
+            out.getFD().sync();
+        }
+        onSnapshotCommitted(0);
+    }
+
+    /**
+     * 逐条读取日志，收集快照 snapshotId 之后的编辑；遇到损坏或截断的记录（崩溃时写了一半）即停止，
+     * 并把文件截到最后一条完整记录，后续追加接在其后
+     * @return 日志中出现过的最大快照编号
+     */
+    static long readJournal(File journalFile, long snapshotId, List<Edit> edits) throws IOException {
+        long lastSnapshot = snapshotId;
+        long validLength = HEADER_BYTES;
+        boolean collecting = snapshotId == 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            if (in.readInt() != JOURNAL_MAGIC) throw new IOException("Bad journal header");
+            byte[] payload;
+            while ((payload = readRecord(in, journalFile.length())) != null) {
+                validLength += varintLength(payload.length) + payload.length + 4;
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+                int type = fields.readUnsignedByte();
+                if (type == TYPE_SNAPSHOT) {
+                    long id = readVarint(fields);
+                    lastSnapshot = Math.max(lastSnapshot, id);
+                    if (id == snapshotId) {
+                        collecting = true;
+                        edits.clear(); // 标记之前的编辑已包含在磁盘文件中
+                    }
+                } else if (type == TYPE_EDIT && collecting) {
+                    int offset = (int) readVarint(fields);
+                    int removed = (int) readVarint(fields);
+                    int headerLength = payload.length - fields.available();
+                    String inserted = new String(payload, headerLength, payload.length - headerLength, StandardCharsets.UTF_8);
+                    edits.add(new Edit(offset, removed, inserted));
+                }
+            }
+        }
+        if (validLength < journalFile.length()) {
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                out.getChannel().truncate(validLength);
+            }
+        }
+        return lastSnapshot;
+    }
+
+    /**
+     * 读取从快照 snapshotId 的标记开始的所有完整记录（原样字节）
+     */
+    static byte[] readTailAfter(File journalFile, long snapshotId) throws IOException {
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        boolean keeping = snapshotId == 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            if (in.readInt() != JOURNAL_MAGIC) throw new IOException("Bad journal header");
+            byte[] payload;
+            while ((payload = readRecord(in, journalFile.length())) != null) {
+                if (keeping) {
+                    writeRecord(tail, payload);
+                } else if (payload[0] == TYPE_SNAPSHOT) {
+                    DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+                    keeping = readVarint(fields) == snapshotId;
+                    if (keeping) writeRecord(tail, payload); // 保留标记本身，重放仍从它之后开始
+                }
+            }
+        }
+        return tail.toByteArray();
+    }
+
+    /**
+     * 读取一条记录的 payload，文件结束、截断或校验失败时返回 null
+     * @param limit 记录长度上限（日志文件大小），防止损坏的长度字段导致超大分配
+     */
+    private static byte[] readRecord(DataInputStream in, long limit) throws IOException {
+        try {
+            long length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 28) return null; // 长度字段损坏
+                int b = in.readUnsignedByte();
+                length |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            if (length <= 0 || length > limit) return null;
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            int expected = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            return (int) crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    // endregion
+}
+// 该文件实现编辑日志与崩溃恢复
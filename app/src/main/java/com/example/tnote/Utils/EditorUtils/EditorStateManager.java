@@ -1,19 +1,39 @@
 package com.example.tnote.Utils.EditorUtils;
 
-import java.util.Stack;
+import android.text.Editable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * EditorStateManager 用于管理文本编辑器的状态，包括撤销、重做和修改标记。
+ * 撤销历史以增量操作（位置 + 删除文本 + 插入文本）记录，而不是整篇文本快照：
+ * - 连续输入/连续退格会合并为一个操作
+ * - 多个操作可通过 beginTransaction/endTransaction 组成一个撤销单元
+ * - 历史总占用按字节预算限制，超出时从最旧的单元开始淘汰（O(1)）
+ * 撤销/重做的耗时只与改动长度相关，与文档大小无关。
  */
 public class EditorStateManager {
+    public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024; // 默认历史内存预算 4MB
+    private static final long COALESCE_WINDOW_MS = 1000;               // 连续输入合并的时间窗口
+    private static final int EDIT_OVERHEAD_BYTES = 64;                 // 单个操作对象的估算开销
+
     // 标记文档是否被修改
     private boolean isModified;
 
-    // 撤销栈，用于存储历史状态
-    private final Stack<CharSequence> undoStack = new Stack<>();
+    // 撤销/重做队列，队首为最新的撤销单元
+    private final ArrayDeque<Transaction> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Transaction> redoStack = new ArrayDeque<>();
 
-    // 重做栈，用于存储被撤销的状态
-    private final Stack<CharSequence> redoStack = new Stack<>();
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private long memoryUsage;          // 撤销+重做历史的估算字节数
+    private int transactionDepth;      // 事务嵌套深度
+    private Transaction openTransaction;
+    private boolean isApplying;        // 正在执行撤销/重做，此时产生的文本变化不记录
 
     /**
      * 标记当前文档为已修改
@@ -29,45 +49,152 @@ public class EditorStateManager {
         isModified = false;
     }
 
+    public boolean isModified() {
+        return isModified;
+    }
+
     /**
-     * 保存编辑状态到撤销栈
+     * 设置撤销历史的内存预算
+     * @param bytes 预算字节数
+     */
+    public void setMemoryBudget(long bytes) {
+        memoryBudget = Math.max(0, bytes);
+        trimToBudget();
+    }
+
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * 记录一次文本替换（来自 TextWatcher 的增量）
      *
-     * @param text 当前文本状态
+     * @param offset 变化起点
+     * @param removed 被替换掉的文本
+     * @param inserted 新插入的文本
+     */
+    public void recordEdit(int offset, CharSequence removed, CharSequence inserted) {
+        if (isApplying || (removed.length() == 0 && inserted.length() == 0)) return;
+        clearRedo();
+
+        long now = System.currentTimeMillis();
+        Transaction target = openTransaction != null ? openTransaction : undoStack.peekFirst();
+        Edit last = target != null && !target.sealed ? target.last() : null;
+        if (last != null && last.tryCoalesce(offset, removed, inserted, now)) {
+            target.bytes += sizeOf(removed) + sizeOf(inserted);
+            memoryUsage += sizeOf(removed) + sizeOf(inserted);
+        } else {
+            Edit edit = new Edit(offset, removed, inserted, now);
+            if (openTransaction != null) {
+                openTransaction.add(edit);
+            } else {
+                if (target != null) target.sealed = true; // 无法合并时结束上一单元
+                Transaction transaction = new Transaction();
+                transaction.add(edit);
+                undoStack.addFirst(transaction);
+            }
+            memoryUsage += edit.bytes();
+        }
+        trimToBudget();
+    }
+
+    /**
+     * 开始一个事务，事务内的所有操作作为一个单元撤销（可嵌套）
+     */
+    public void beginTransaction() {
+        if (transactionDepth++ == 0) {
+            Transaction previous = undoStack.peekFirst();
+            if (previous != null) previous.sealed = true;
+            openTransaction = new Transaction();
+        }
+    }
+
+    /**
+     * 结束事务
      */
-    public void saveState(CharSequence text) {
-        undoStack.push(text);
-        // 限制撤销栈的大小为100，防止内存占用过高
-        if (undoStack.size() > 100) {
-            undoStack.remove(0); // 移除最旧的状态
+    public void endTransaction() {
+        if (transactionDepth == 0) return;
+        if (--transactionDepth == 0) {
+            Transaction transaction = openTransaction;
+            openTransaction = null;
+            if (!transaction.edits.isEmpty()) {
+                transaction.sealed = true;
+                undoStack.addFirst(transaction);
+            }
         }
     }
 
+    /**
+     * 结束当前的合并，使下一次输入成为新的撤销单元（如光标跳转后调用）
+     */
+    public void breakCoalescing() {
+        Transaction previous = undoStack.peekFirst();
+        if (previous != null) previous.sealed = true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
     /**
      * 撤销上一步的操作
      *
-     * @return 撤销后的文本状态，若栈为空则返回 null
+     * @param editable 目标文本
+     * @return 撤销后建议的光标位置，若无可撤销操作则返回 -1
      */
-    public CharSequence undo() {
-        if (!undoStack.isEmpty()) {
-            CharSequence state = undoStack.pop(); // 移除并获取最新的状态
-            redoStack.push(state); // 将撤销的状态推入重做栈
-            return state;
+    public int undo(Editable editable) {
+        Transaction transaction = undoStack.pollFirst();
+        if (transaction == null) return -1;
+        int cursor = -1;
+        isApplying = true;
+        try {
+            for (int i = transaction.edits.size() - 1; i >= 0; i--) {
+                Edit edit = transaction.edits.get(i);
+                editable.replace(edit.offset, edit.offset + edit.inserted.length(), edit.removed);
+                cursor = edit.offset + edit.removed.length();
+            }
+        } finally {
+            isApplying = false;
         }
-        return null; // 如果撤销栈为空，返回 null
+        transaction.sealed = true;
+        redoStack.addFirst(transaction);
+        markModified();
+        return cursor;
     }
 
     /**
      * 重做上一步撤销的操作
      *
-     * @return 重做后的文本状态，若重做栈为空则返回 null
+     * @param editable 目标文本
+     * @return 重做后建议的光标位置，若无可重做操作则返回 -1
      */
-    public CharSequence redo() {
-        if (!redoStack.isEmpty()) {
-            CharSequence state = redoStack.pop(); // 移除并获取最新的重做状态
-            undoStack.push(state); // 将重做的状态推回撤销栈
-            return state;
+    public int redo(Editable editable) {
+        Transaction transaction = redoStack.pollFirst();
+        if (transaction == null) return -1;
+        int cursor = -1;
+        isApplying = true;
+        try {
+            for (Edit edit : transaction.edits) {
+                editable.replace(edit.offset, edit.offset + edit.removed.length(), edit.inserted);
+                cursor = edit.offset + edit.inserted.length();
+            }
+        } finally {
+            isApplying = false;
         }
-        return null; // 如果重做栈为空，返回 null
+        undoStack.addFirst(transaction);
+        markModified();
+        return cursor;
+    }
+
+    /**
+     * 是否正在执行撤销/重做（用于 TextWatcher 跳过记录）
+     */
+    public boolean isApplying() {
+        return isApplying;
     }
 
     /**
@@ -76,6 +203,169 @@ public class EditorStateManager {
     public void reset() {
         undoStack.clear(); // 清空撤销栈
         redoStack.clear(); // 清空重做栈
+        openTransaction = null;
+        transactionDepth = 0;
+        memoryUsage = 0;
         clearModified(); // 清除修改标记
     }
-}
\ No newline at end of file
+
+    /**
+     * 把修改标记与撤销/重做历史写出（编辑器休眠时使用），未结束的事务不写出
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(isModified);
+        writeStack(out, undoStack);
+        writeStack(out, redoStack);
+    }
+
+    /**
+     * 读回 {@link #writeTo} 写出的状态，替换当前的全部历史
+     */
+    public void readFrom(DataInput in) throws IOException {
+        reset();
+        isModified = in.readBoolean();
+        readStack(in, undoStack);
+        readStack(in, redoStack);
+        trimToBudget();
+    }
+
+    private static void writeStack(DataOutput out, ArrayDeque<Transaction> stack) throws IOException {
+        out.writeInt(stack.size());
+        for (Transaction transaction : stack) {
+            out.writeInt(transaction.edits.size());
+            for (Edit edit : transaction.edits) {
+                out.writeInt(edit.offset);
+                writeText(out, edit.removed);
+                writeText(out, edit.inserted);
+            }
+        }
+    }
+
+    private void readStack(DataInput in, ArrayDeque<Transaction> stack) throws IOException {
+        int transactions = in.readInt();
+        for (int i = 0; i < transactions; i++) {
+            Transaction transaction = new Transaction();
+            int edits = in.readInt();
+            for (int j = 0; j < edits; j++) {
+                int offset = in.readInt();
+                CharSequence removed = readText(in);
+                CharSequence inserted = readText(in);
+                transaction.add(new Edit(offset, removed, inserted, 0));
+            }
+            transaction.sealed = true; // 恢复后的输入总是开始新的单元
+            stack.addLast(transaction);
+            memoryUsage += transaction.bytes;
+        }
+    }
+
+    // 按 UTF-16 写出，可以包含任意字符（writeUTF 限长 64KB）
+    private static void writeText(DataOutput out, CharSequence text) throws IOException {
+        out.writeInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            out.writeChar(text.charAt(i));
+        }
+    }
+
+    private static CharSequence readText(DataInput in) throws IOException {
+        int length = in.readInt();
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(in.readChar());
+        }
+        return text;
+    }
+
+    private void clearRedo() {
+        for (Transaction transaction : redoStack) {
+            memoryUsage -= transaction.bytes;
+        }
+        redoStack.clear();
+    }
+
+    /**
+     * 超出预算时从最旧的单元开始淘汰，至少保留最新的一个单元
+     */
+    private void trimToBudget() {
+        while (memoryUsage > memoryBudget && !redoStack.isEmpty()) {
+            memoryUsage -= redoStack.pollLast().bytes;
+        }
+        while (memoryUsage > memoryBudget && undoStack.size() > 1) {
+            memoryUsage -= undoStack.pollLast().bytes;
+        }
+    }
+
+    private static long sizeOf(CharSequence text) {
+        return 2L * text.length();
+    }
+
+    /**
+     * 撤销单元：一组按发生顺序排列的操作
+     */
+    private static final class Transaction {
+        final List<Edit> edits = new ArrayList<>(1);
+        long bytes;
+        boolean sealed; // 已封闭的单元不再接受合并
+
+        void add(Edit edit) {
+            edits.add(edit);
+            bytes += edit.bytes();
+        }
+
+        Edit last() {
+            return edits.isEmpty() ? null : edits.get(edits.size() - 1);
+        }
+    }
+
+    /**
+     * 单个增量操作：在 offset 处用 inserted 替换了 removed
+     */
+    private static final class Edit {
+        int offset;
+        final StringBuilder removed;
+        final StringBuilder inserted;
+        long lastTime;
+
+        Edit(int offset, CharSequence removed, CharSequence inserted, long time) {
+            this.offset = offset;
+            this.removed = new StringBuilder(removed);
+            this.inserted = new StringBuilder(inserted);
+            this.lastTime = time;
+        }
+
+        long bytes() {
+            return EDIT_OVERHEAD_BYTES + sizeOf(removed) + sizeOf(inserted);
+        }
+
+        /**
+         * 尝试把新的增量合并进当前操作：
+         * - 紧接在已插入文本之后继续输入（遇到换行后不再合并）
+         * - 在已删除位置之前继续退格
+         */
+        boolean tryCoalesce(int offset, CharSequence removed, CharSequence inserted, long time) {
+            if (time - lastTime > COALESCE_WINDOW_MS) return false;
+            boolean typing = removed.length() == 0 && inserted.length() > 0
+                    && this.removed.length() == 0
+                    && offset == this.offset + this.inserted.length()
+                    && !endsWithNewline(this.inserted);
+            if (typing) {
+                this.inserted.append(inserted);
+                lastTime = time;
+                return true;
+            }
+            boolean backspace = inserted.length() == 0 && removed.length() > 0
+                    && this.inserted.length() == 0
+                    && offset + removed.length() == this.offset;
+            if (backspace) {
+                this.removed.insert(0, removed);
+                this.offset = offset;
+                lastTime = time;
+                return true;
+            }
+            return false;
+        }
+
+        private static boolean endsWithNewline(CharSequence text) {
+            return text.length() > 0 && text.charAt(text.length() - 1) == '\n';
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.text.Editable;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.widget.EditText;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 编辑器的查找替换引擎：
+ * - 查找在 IO 调度器的后台通道中对文档快照进行，匹配位置分批回到主线程，边查找边显示
+ * - 只为可见区域内的匹配添加背景色 Span，滚动时随可见区域更新，匹配很多时也不拖慢排版
+ * - 全部替换在后台生成替换后的区间文本，主线程用一次 replace 应用：
+ *   TextWatcher、撤销记录、编辑日志与增量高亮都只触发一次
+ * 文本一旦变化，已有匹配位置作废，调用方需重新查找
+ * 线程约定：公开方法都在主线程调用
+ */
+public final class FindReplaceEngine {
+    private static final int BATCH_MATCHES = 512;   // 每批回传的匹配数
+    private static final long BATCH_INTERVAL_MS = 50; // 匹配稀疏时至少按该间隔回传
+    private static final int MAX_MATCHES = 100_000; // 超过后停止查找，避免匹配位置占用过多内存
+
+    /**
+     * 匹配变化回调（主线程）
+     */
+    public interface Listener {
+        /**
+         * @param count 已找到的匹配数
+         * @param current 当前选中的匹配下标，没有时为 -1
+         * @param complete 查找是否已结束
+         */
+        void onMatchesChanged(int count, int current, boolean complete);
+    }
+
+    /**
+     * 全部替换完成回调（主线程）
+     */
+    public interface ReplaceCallback {
+        /**
+         * @param count 替换的匹配数；文本在替换计算期间被修改时为 -1
+         */
+        void onReplaced(int count);
+    }
+
+    private final EditText editor;
+    private final int matchColor;
+    private final int currentColor;
+    private final String key = "find@" + Integer.toHexString(System.identityHashCode(this));
+    private Listener listener;
+
+    private TextSearcher.Query query;
+    private int[] starts = new int[BATCH_MATCHES];
+    private int[] ends = new int[BATCH_MATCHES];
+    private int count;
+    private int current = -1;
+    private boolean complete = true;
+    private int generation;                  // 文本变化或新查找时递增，过期的后台结果直接丢弃
+    private int textVersion;                 // 任何文本变化（包括整体 setText）都递增，后台替换据此判断快照是否过期
+    private IOScheduler.CancellationToken task;
+
+    // 可见区域及其中已添加的 Span
+    private int viewportStart;
+    private int viewportEnd;
+    private final List<BackgroundColorSpan> spans = new ArrayList<>();
+
+    /**
+     * @param matchColor 匹配的背景色
+     * @param currentColor 当前匹配的背景色
+     */
+    public FindReplaceEngine(EditText editor, int matchColor, int currentColor) {
+        this.editor = editor;
+        this.matchColor = matchColor;
+        this.currentColor = currentColor;
+        editor.addTextChangedListener(new TextWatcherAdapter() {
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                textVersion++;
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+            }
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public TextSearcher.Query getQuery() {
+        return query;
+    }
+
+    public int getMatchCount() {
+        return count;
+    }
+
+    /**
+     * 开始新的查找，取消尚未结束的查找
+     * @param text 文档快照，查找期间内容不变
+     * @param query 查找条件，为 null 或空时只清除结果
+     */
+    public void search(CharSequence text, TextSearcher.Query query) {
+        this.query = query;
+        clearMatches();
+        if (query == null || query.isEmpty()) {
+            notifyListener();
+            return;
+        }
+        complete = false;
+        int searchGeneration = generation;
+        IOScheduler.CancellationToken token = new IOScheduler.CancellationToken();
+        task = IOScheduler.submit(IOScheduler.Priority.BACKGROUND, key, token, () -> {
+            MatchBatcher batcher = new MatchBatcher(searchGeneration);
+            TextSearcher.find(text, query, token, batcher);
+            if (!token.isCancelled()) batcher.flush(true);
+        });
+        notifyListener();
+    }
+
+    /**
+     * 文本已变化（TextWatcher 中调用）：停止查找并清除作废的匹配，查找条件保留
+     */
+    public void invalidate() {
+        if (count == 0 && complete && task == null) return;
+        clearMatches();
+        notifyListener();
+    }
+
+    /**
+     * 结束查找，清除条件与高亮
+     */
+    public void close() {
+        query = null;
+        clearMatches();
+    }
+
+    /**
+     * 根据编辑器的滚动位置更新可见区域，在滚动或布局变化后调用
+     */
+    public void updateViewport() {
+        Layout layout = editor.getLayout();
+        if (layout == null) return;
+        int top = Math.max(0, editor.getScrollY() - editor.getTotalPaddingTop());
+        int firstLine = layout.getLineForVertical(top);
+        int lastLine = layout.getLineForVertical(top + editor.getHeight());
+        int start = layout.getLineStart(firstLine);
+        int end = layout.getLineEnd(lastLine);
+        if (start == viewportStart && end == viewportEnd) return;
+        viewportStart = start;
+        viewportEnd = end;
+        refreshSpans();
+    }
+
+    /**
+     * 选中光标之后（或之前）最近的匹配并滚动到该处
+     * @param forward true 为下一个，false 为上一个
+     */
+    public void select(boolean forward) {
+        if (count == 0) return;
+        int caret = forward ? editor.getSelectionEnd() : editor.getSelectionStart();
+        int index = firstMatchAtOrAfter(caret);
+        if (!forward) index--;
+        index = (index + count) % count; // 到头后回绕
+        current = index;
+        editor.setSelection(starts[index], ends[index]); // EditText 会把选区滚动到可见区域
+        refreshSpans();
+        notifyListener();
+    }
+
+    /**
+     * 替换当前选中的匹配
+     * @return 是否替换了
+     */
+    public boolean replaceCurrent(String replacement) {
+        if (current < 0 || current >= count || query == null) return false;
+        int start = starts[current];
+        int end = ends[current];
+        Editable text = editor.getText();
+        String expanded = TextSearcher.replacementAt(text, query, replacement, start, end);
+        if (expanded == null) return false;
+        text.replace(start, end, expanded); // 触发 invalidate()，调用方重新查找
+        editor.setSelection(start + expanded.length());
+        return true;
+    }
+
+    /**
+     * 在后台计算全部替换，完成后一次性应用到编辑器
+     * @param text 文档快照
+     * @param replacement 替换文本
+     * @param callback 完成回调
+     */
+    public void replaceAll(CharSequence text, String replacement, ReplaceCallback callback) {
+        TextSearcher.Query replaceQuery = query;
+        if (replaceQuery == null || replaceQuery.isEmpty()) return;
+        int replaceVersion = textVersion;
+        IOScheduler.submit(IOScheduler.Priority.BACKGROUND, key, () -> {
+            TextSearcher.Replacement result = TextSearcher.replaceAll(text, replaceQuery, replacement, null);
+            IOScheduler.postToMain(() -> {
+                if (replaceVersion != textVersion) {
+                    callback.onReplaced(-1); // 计算期间文本已变化，位置不再可靠
+                    return;
+                }
+                if (result == null) {
+                    callback.onReplaced(0);
+                    return;
+                }
+                editor.getText().replace(result.start, result.end, result.text);
+                callback.onReplaced(result.count);
+            });
+        });
+    }
+
+    private void clearMatches() {
+        generation++;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        count = 0;
+        current = -1;
+        complete = true;
+        removeSpans();
+    }
+
+    private void appendMatches(int[] batchStarts, int[] batchEnds, int batchCount) {
+        if (count + batchCount > starts.length) {
+            int capacity = Math.max(count + batchCount, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        System.arraycopy(batchStarts, 0, starts, count, batchCount);
+        System.arraycopy(batchEnds, 0, ends, count, batchCount);
+        int first = count;
+        count += batchCount;
+        // 新匹配落在可见区域内时才需要更新 Span
+        if (batchCount > 0 && starts[first] < viewportEnd && ends[count - 1] > viewportStart) refreshSpans();
+    }
+
+    /**
+     * 重新添加可见区域内的匹配 Span
+     */
+    private void refreshSpans() {
+        removeSpans();
+        Editable text = editor.getText();
+        int length = text.length();
+        for (int i = firstMatchAtOrAfter(viewportStart - 1); i < count && starts[i] < viewportEnd; i++) {
+            if (ends[i] <= viewportStart || ends[i] > length) continue;
+            BackgroundColorSpan span = new BackgroundColorSpan(i == current ? currentColor : matchColor);
+            text.setSpan(span, starts[i], ends[i], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            spans.add(span);
+        }
+    }
+
+    private void removeSpans() {
+        if (spans.isEmpty()) return;
+        Editable text = editor.getText();
+        for (BackgroundColorSpan span : spans) text.removeSpan(span);
+        spans.clear();
+    }
+
+    /**
+     * 第一个终点大于 offset 的匹配下标（匹配互不重叠，终点同样递增）
+     */
+    private int firstMatchAtOrAfter(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void notifyListener() {
+        if (listener != null) listener.onMatchesChanged(count, current, complete);
+    }
+
+    /**
+     * 在后台线程收集匹配，按数量或时间间隔分批投递到主线程
+     */
+    private final class MatchBatcher implements TextSearcher.MatchSink {
+        private final int searchGeneration;
+        private int[] batchStarts = new int[BATCH_MATCHES];
+        private int[] batchEnds = new int[BATCH_MATCHES];
+        private int batchCount;
+        private int total;
+        private long lastFlush = System.nanoTime();
+
+        MatchBatcher(int searchGeneration) {
+            this.searchGeneration = searchGeneration;
+        }
+
+        @Override
+        public boolean onMatch(int start, int end) {
+            batchStarts[batchCount] = start;
+            batchEnds[batchCount] = end;
+            batchCount++;
+            total++;
+            if (batchCount == BATCH_MATCHES
+                    || System.nanoTime() - lastFlush > BATCH_INTERVAL_MS * 1_000_000L) {
+                flush(false);
+            }
+            return total < MAX_MATCHES;
+        }
+
+        void flush(boolean last) {
+            int[] flushStarts = batchStarts;
+            int[] flushEnds = batchEnds;
+            int flushCount = batchCount;
+            batchStarts = new int[BATCH_MATCHES];
+            batchEnds = new int[BATCH_MATCHES];
+            batchCount = 0;
+            lastFlush = System.nanoTime();
+            IOScheduler.postToMain(() -> {
+                if (searchGeneration != generation) return; // 已开始新的查找或文本已变化
+                appendMatches(flushStarts, flushEnds, flushCount);
+                if (last) {
+                    complete = true;
+                    task = null;
+                }
+                notifyListener();
+            });
+        }
+    }
+}
+// 该文件实现编辑器的后台查找与批量替换
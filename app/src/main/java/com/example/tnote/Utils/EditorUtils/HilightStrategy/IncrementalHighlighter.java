@@ -0,0 +1,426 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+import android.graphics.Typeface;
+import android.text.Editable;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.StyleSpan;
+
+import com.example.tnote.Utils.EditorUtils.LineIndex;
+import com.example.tnote.Utils.Interfaces.SyntaxHighlightStrategy;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 增量高亮器：
+ * - 跟踪每行行尾的词法状态（行起点来自共享的 LineIndex）
+ * - 根据 LineIndex 的行变化通知记录脏行范围
+ * - 为脏行生成文本片段副本（Job），交给后台线程做词法分析
+ * - 在主线程把 token 流与现有 Span 做差异比较，只增删变化的部分
+ * 词法分析从脏行开始向后传播，直到某行行尾状态与旧值一致。
+ * 只有可见区域及其前后预读范围（目标区域）内的行会被绘制 Span，
+ * 目标区域之后的脏行推迟到滚动到附近时再分析，远离可见区域的 Span 会被释放
+ */
+class IncrementalHighlighter {
+    private static final int UNKNOWN_STATE = Integer.MIN_VALUE; // 尚未计算的行状态
+    private static final int LOOKAHEAD_CHARS = 4 * 1024;        // 脏行之后额外带上的文本，用于状态传播
+    private static final int MAX_WINDOW_CHARS = 64 * 1024;      // 单个 Job 最多复制的字符数
+    static final int DEFAULT_LOOKAHEAD_LINES = 80;               // 可见区域前后默认预读的行数
+
+    private final LineIndex lines;
+    private int[] lineStates = new int[]{UNKNOWN_STATE};
+    private boolean[] linePainted = new boolean[1]; // 该行是否已绘制 Span
+    private int lineCount = 1;          // 与 lines 同步的行数
+
+    // 已绘制行的外包范围（含），用于释放时缩小扫描区间
+    private int paintedFirst = 0;
+    private int paintedLast = -1;
+
+    // 可见行范围与预读行数
+    private int visibleFirst = 0;
+    private int visibleLast = 0;
+    private int lookaheadLines = DEFAULT_LOOKAHEAD_LINES;
+
+    // 脏行范围（含），dirtyFirst > dirtyLast 表示没有待处理的改动
+    private int dirtyFirst = 0;
+    private int dirtyLast = 0;
+
+    IncrementalHighlighter(LineIndex lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * 按 LineIndex 的当前内容重建行状态（LineIndex 已 reset 之后调用），并把所有行标记为脏
+     */
+    void reset() {
+        lineCount = lines.getLineCount();
+        ensureCapacity(lineCount);
+        Arrays.fill(lineStates, 0, lineCount, UNKNOWN_STATE);
+        Arrays.fill(linePainted, 0, lineCount, false);
+        paintedFirst = 0;
+        paintedLast = -1;
+        visibleFirst = 0;
+        visibleLast = 0;
+        dirtyFirst = 0;
+        dirtyLast = lineCount - 1;
+    }
+
+    /**
+     * 导出各行行尾状态（编辑器休眠时保存），脏行及其之后的状态已不可靠，记为未知
+     */
+    int[] exportLineStates() {
+        int[] states = Arrays.copyOf(lineStates, lineCount);
+        if (dirtyFirst <= dirtyLast) Arrays.fill(states, dirtyFirst, lineCount, UNKNOWN_STATE);
+        return states;
+    }
+
+    /**
+     * 按 LineIndex 的当前内容恢复 {@link #exportLineStates} 导出的状态：
+     * 所有行都未绘制，但已知状态的行可以直接作为分析起点，只有第一个未知状态之后的行是脏行。
+     * 行数不符时退回到 {@link #reset()}
+     */
+    void restore(int[] states) {
+        reset();
+        if (states.length != lineCount) return;
+        System.arraycopy(states, 0, lineStates, 0, lineCount);
+        int firstUnknown = 0;
+        while (firstUnknown < lineCount && states[firstUnknown] != UNKNOWN_STATE) firstUnknown++;
+        dirtyFirst = firstUnknown;
+        dirtyLast = firstUnknown < lineCount ? lineCount - 1 : -1;
+    }
+
+    /**
+     * 设置预读行数：可见区域前后各绘制这么多行，超出两倍预读的 Span 会被释放
+     */
+    void setLookaheadLines(int lines) {
+        lookaheadLines = Math.max(0, lines);
+    }
+
+    /**
+     * 更新可见区域（按字符偏移），并释放远离可见区域的 Span
+     * @return 可见行范围是否发生变化
+     */
+    boolean setViewport(Editable editable, int startOffset, int endOffset) {
+        int first = lines.getLineForOffset(startOffset);
+        int last = Math.max(first, lines.getLineForOffset(endOffset));
+        if (first == visibleFirst && last == visibleLast) return false;
+        visibleFirst = first;
+        visibleLast = last;
+        releaseFarLines(editable);
+        return true;
+    }
+
+    /**
+     * 移除保留区域（目标区域再向外扩展一个预读距离）之外的 Span
+     */
+    private void releaseFarLines(Editable editable) {
+        if (paintedFirst > paintedLast) return;
+        int keepFirst = Math.max(0, visibleFirst - 2 * lookaheadLines);
+        int keepLast = Math.min(lineCount - 1, visibleLast + 2 * lookaheadLines);
+        if (paintedFirst < keepFirst) {
+            releaseLines(editable, paintedFirst, Math.min(paintedLast, keepFirst - 1));
+        }
+        if (paintedLast > keepLast) {
+            releaseLines(editable, Math.max(paintedFirst, keepLast + 1), paintedLast);
+        }
+        paintedFirst = Math.max(paintedFirst, keepFirst);
+        paintedLast = Math.min(paintedLast, keepLast);
+    }
+
+    private void releaseLines(Editable editable, int first, int last) {
+        if (first > last) return;
+        int from = lines.getLineStart(first);
+        int to = lines.getLineEnd(last);
+        for (TokenSpan span : editable.getSpans(from, to, TokenSpan.class)) {
+            int spanStart = editable.getSpanStart(span);
+            if (spanStart >= from && spanStart <= to) removeSpan(editable, span);
+        }
+        Arrays.fill(linePainted, first, last + 1, false);
+    }
+
+    /**
+     * LineIndex 行结构变化：移动后续行的状态并标记脏行
+     */
+    void onLinesChanged(int firstLine, int removedLines, int addedLines) {
+        int lastOldLine = firstLine + removedLines;
+        int newCount = lines.getLineCount();
+        ensureCapacity(newCount);
+
+        // 移动后续行
+        int tail = lineCount - lastOldLine - 1;
+        int tailFrom = lastOldLine + 1;
+        int tailTo = firstLine + addedLines + 1;
+        System.arraycopy(lineStates, tailFrom, lineStates, tailTo, tail);
+        System.arraycopy(linePainted, tailFrom, linePainted, tailTo, tail);
+        Arrays.fill(lineStates, firstLine, tailTo, UNKNOWN_STATE);
+        Arrays.fill(linePainted, firstLine + 1, tailTo, false);
+
+        int shift = newCount - lineCount;
+        lineCount = newCount;
+        if (paintedFirst > lastOldLine) paintedFirst += shift;
+        if (paintedLast >= firstLine) paintedLast = Math.max(paintedLast + shift, firstLine);
+        if (visibleFirst > lastOldLine) visibleFirst += shift;
+        if (visibleLast > lastOldLine) visibleLast += shift;
+        visibleFirst = Math.min(visibleFirst, lineCount - 1);
+        visibleLast = Math.min(Math.max(visibleLast, visibleFirst), lineCount - 1);
+
+        markDirty(firstLine, lastOldLine, firstLine + addedLines);
+    }
+
+    /**
+     * 为目标区域内的脏行和未绘制行生成后台分析任务，主线程调用
+     * @return 没有需要处理的行时返回 null
+     */
+    Job createJob(CharSequence text, int generation) {
+        int targetFirst = Math.max(0, visibleFirst - lookaheadLines);
+        int targetLast = Math.min(lineCount - 1, visibleLast + lookaheadLines);
+        // 目标区域之后的脏行推迟处理
+        boolean dirtyPending = dirtyFirst <= dirtyLast && dirtyFirst <= targetLast;
+        int unpaintedFirst = -1, unpaintedLast = -1;
+        for (int line = targetFirst; line <= targetLast; line++) {
+            if (!linePainted[line]) {
+                if (unpaintedFirst < 0) unpaintedFirst = line;
+                unpaintedLast = line;
+            }
+        }
+        if (!dirtyPending && unpaintedFirst < 0) return null;
+
+        int first = dirtyPending ? dirtyFirst : unpaintedFirst;
+        int required = dirtyPending ? Math.min(dirtyLast, targetLast) : unpaintedLast;
+        if (unpaintedFirst >= 0) {
+            first = Math.min(first, unpaintedFirst);
+            required = Math.max(required, unpaintedLast);
+        }
+        int textLength = text.length();
+        int windowStart = lines.getLineStart(first);
+
+        // 覆盖所需的行并向后多带一段文本，但单个 Job 的复制量有上限
+        int wanted = Math.min(textLength, lines.getLineEnd(required) + LOOKAHEAD_CHARS);
+        wanted = Math.min(wanted, windowStart + MAX_WINDOW_CHARS);
+        int last = Math.max(first, lines.getLineForOffset(wanted));
+        int windowEnd = lines.getLineEnd(last);
+
+        int count = last - first + 1;
+        Job job = new Job();
+        job.generation = generation;
+        job.firstLine = first;
+        job.windowStart = windowStart;
+        job.text = new char[windowEnd - windowStart];
+        TextUtils.getChars(text, windowStart, windowEnd, job.text, 0);
+        job.lineStarts = new int[count];
+        job.lineEnds = new int[count];
+        job.oldStates = new int[count];
+        // 片段内的行边界直接从副本中的换行得到
+        int line = 0;
+        for (int i = 0; i < job.text.length; i++) {
+            if (job.text[i] == '\n') {
+                job.lineEnds[line++] = i;
+                job.lineStarts[line] = i + 1;
+            }
+        }
+        job.lineEnds[count - 1] = job.text.length;
+        System.arraycopy(lineStates, first, job.oldStates, 0, count);
+        int state = first == 0 ? SyntaxHighlightStrategy.INITIAL_STATE : lineStates[first - 1];
+        job.startState = state == UNKNOWN_STATE ? SyntaxHighlightStrategy.INITIAL_STATE : state;
+        job.lastRequired = required - first;
+        return job;
+    }
+
+    /**
+     * 后台线程执行的词法分析，只读取 Job 内的文本副本
+     */
+    static Result tokenize(Job job, SyntaxHighlightStrategy strategy) {
+        int lines = job.lineStarts.length;
+        Result result = new Result();
+        result.job = job;
+        result.tokens = new TokenBuffer();
+        result.lineTokenEnds = new int[lines];
+        result.endStates = new int[lines];
+
+        CharSequence text = CharBuffer.wrap(job.text);
+        int state = job.startState;
+        for (int i = 0; i < lines; i++) {
+            state = strategy.tokenizeLine(text, job.lineStarts[i], job.lineEnds[i], state, result.tokens);
+            result.lineTokenEnds[i] = result.tokens.size();
+            result.endStates[i] = state;
+            result.processedLines = i + 1;
+            if (i >= job.lastRequired && state == job.oldStates[i]) {
+                result.stabilized = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在主线程应用分析结果
+     * @return 结果是否仍然有效（期间文本未变化）
+     */
+    boolean applyResult(Editable editable, Result result, int generation, SyntaxHighlightStrategy strategy) {
+        Job job = result.job;
+        if (job.generation != generation) return false; // 文本已变化，丢弃过期结果
+
+        int targetFirst = Math.max(0, visibleFirst - lookaheadLines);
+        int targetLast = Math.min(lineCount - 1, visibleLast + lookaheadLines);
+        int tokenIndex = 0;
+        for (int i = 0; i < result.processedLines; i++) {
+            int line = job.firstLine + i;
+            int tokenEnd = result.lineTokenEnds[i];
+            // 只绘制目标区域内以及已绘制的行，其余行只更新状态
+            if (linePainted[line] || (line >= targetFirst && line <= targetLast)) {
+                diffLineSpans(editable, lines.getLineStart(line), lines.getLineEnd(line),
+                        result.tokens, tokenIndex, tokenEnd, job.windowStart, strategy);
+                if (!linePainted[line]) {
+                    linePainted[line] = true;
+                    if (paintedFirst > paintedLast) {
+                        paintedFirst = paintedLast = line;
+                    } else {
+                        paintedFirst = Math.min(paintedFirst, line);
+                        paintedLast = Math.max(paintedLast, line);
+                    }
+                }
+            }
+            tokenIndex = tokenEnd;
+            lineStates[line] = result.endStates[i];
+        }
+
+        int covered = job.firstLine + result.processedLines - 1;
+        if (dirtyFirst <= dirtyLast && covered >= dirtyFirst) {
+            if ((result.stabilized && covered >= dirtyLast) || covered + 1 >= lineCount) {
+                dirtyFirst = lineCount;
+                dirtyLast = -1;
+            } else {
+                // 窗口用尽或状态仍在变化，后续行继续作为脏行
+                dirtyFirst = covered + 1;
+                dirtyLast = Math.max(dirtyLast, dirtyFirst);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 比较一行内现有 TokenSpan 与新 token 流，只移除/添加不同的部分
+     */
+    private static void diffLineSpans(Editable editable, int lineStart, int lineEnd,
+                                      TokenBuffer tokens, int from, int to, int offset,
+                                      SyntaxHighlightStrategy strategy) {
+        TokenSpan[] existing = editable.getSpans(lineStart, lineEnd, TokenSpan.class);
+        int kept = 0;
+        for (TokenSpan span : existing) {
+            int spanStart = editable.getSpanStart(span);
+            int spanEnd = editable.getSpanEnd(span);
+            // 只处理真正与本行相交的 Span（包括压在行尾换行符上的），仅在边界相邻的属于相邻行
+            boolean intersects = spanStart < lineEnd && spanEnd > lineStart || spanStart == spanEnd
+                    || spanStart == lineEnd && spanEnd > lineEnd;
+            if (!intersects) continue;
+            if (spanStart >= lineStart && spanEnd <= lineEnd && spanEnd > spanStart) {
+                existing[kept++] = span;
+            } else {
+                removeSpan(editable, span); // 跨行或已退化为空的 Span
+            }
+        }
+        Arrays.sort(existing, 0, kept, (a, b) -> {
+            int byStart = Integer.compare(editable.getSpanStart(a), editable.getSpanStart(b));
+            return byStart != 0 ? byStart : Integer.compare(a.type, b.type);
+        });
+
+        // 双指针合并：两边都按起点排序
+        int e = 0;
+        int t = from;
+        while (e < kept || t < to) {
+            if (t >= to) {
+                removeSpan(editable, existing[e++]);
+                continue;
+            }
+            int tokenStart = tokens.start(t) + offset;
+            int tokenEnd = tokens.end(t) + offset;
+            int tokenType = tokens.type(t);
+            if (e >= kept) {
+                addSpan(editable, tokenStart, tokenEnd, tokenType, strategy);
+                t++;
+                continue;
+            }
+            TokenSpan span = existing[e];
+            int spanStart = editable.getSpanStart(span);
+            if (spanStart == tokenStart && editable.getSpanEnd(span) == tokenEnd && span.type == tokenType) {
+                e++;
+                t++; // 完全相同，保留
+            } else if (spanStart < tokenStart || (spanStart == tokenStart && span.type <= tokenType)) {
+                removeSpan(editable, span);
+                e++;
+            } else {
+                addSpan(editable, tokenStart, tokenEnd, tokenType, strategy);
+                t++;
+            }
+        }
+    }
+
+    private static void addSpan(Editable editable, int start, int end, int type, SyntaxHighlightStrategy strategy) {
+        int style = strategy.getTextStyle(type);
+        StyleSpan styleSpan = style == Typeface.NORMAL ? null : new StyleSpan(style);
+        if (styleSpan != null) {
+            editable.setSpan(styleSpan, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        editable.setSpan(new TokenSpan(type, strategy.getColor(type), styleSpan),
+                start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    }
+
+    private static void removeSpan(Editable editable, TokenSpan span) {
+        editable.removeSpan(span);
+        if (span.styleSpan != null) editable.removeSpan(span.styleSpan);
+    }
+
+    /**
+     * 合并脏行范围，已有的脏行需先换算到变化后的行号
+     * @param first 变化起始行
+     * @param lastOld 变化前被替换区间的最后一行
+     * @param lastNew 变化后新区间的最后一行
+     */
+    private void markDirty(int first, int lastOld, int lastNew) {
+        if (dirtyFirst <= dirtyLast) {
+            int shift = lastNew - lastOld;
+            int oldFirst = dirtyFirst > lastOld ? dirtyFirst + shift : Math.min(dirtyFirst, first);
+            int oldLast = dirtyLast > lastOld ? dirtyLast + shift : Math.max(Math.min(dirtyLast, first), lastNew);
+            first = Math.min(first, oldFirst);
+            lastNew = Math.max(lastNew, oldLast);
+        }
+        dirtyFirst = first;
+        dirtyLast = Math.min(lastNew, lineCount - 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lineStates.length) {
+            int size = Math.max(capacity, lineStates.length * 2);
+            lineStates = Arrays.copyOf(lineStates, size);
+            linePainted = Arrays.copyOf(linePainted, size);
+        }
+    }
+
+    /**
+     * 后台分析任务：脏行所在文本片段的副本及其行信息
+     */
+    static final class Job {
+        int generation;     // 创建时的文本版本号
+        int firstLine;      // 片段第一行的行号
+        int windowStart;    // 片段在文档中的起点
+        char[] text;        // 片段副本
+        int[] lineStarts;   // 各行在片段内的起点
+        int[] lineEnds;     // 各行在片段内的终点
+        int[] oldStates;    // 各行原有的行尾状态
+        int startState;     // 第一行开始时的状态
+        int lastRequired;   // 片段内最后一个必须分析的行序号，之后状态稳定即可停止
+    }
+
+    /**
+     * 后台分析结果
+     */
+    static final class Result {
+        Job job;
+        TokenBuffer tokens;   // 片段内所有 token，偏移相对于片段
+        int[] lineTokenEnds;  // 每行 token 在 tokens 中的结束下标
+        int[] endStates;      // 每行行尾状态
+        int processedLines;   // 实际分析的行数
+        boolean stabilized;   // 是否因状态稳定而提前结束
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+/**
+ * 逐行的 Markdown 词法分析器，分两步：
+ * - 块级：围栏代码块（``` / ~~~）、标题、分隔线、引用（>）、列表标记、空行
+ * - 行内：粗体、斜体、粗斜体（* 与 _）、链接 [text](url)、行内代码 `code`、反斜杠转义
+ * 行尾状态记录是否处于围栏代码块内（及围栏字符与长度）、段落中尚未闭合的强调，
+ * 空行、标题、围栏会结束段落并清空强调状态，因此一行变化后重新分析最多传播到所在块的末尾
+ */
+final class MarkdownLexer {
+    // token 类型
+    static final int TOKEN_HEADER = 1;
+    static final int TOKEN_BOLD = 2;
+    static final int TOKEN_ITALIC = 3;
+    static final int TOKEN_BOLD_ITALIC = 4;
+    static final int TOKEN_LINK = 5;
+    static final int TOKEN_CODE = 6;
+    static final int TOKEN_QUOTE = 7;
+    static final int TOKEN_LIST = 8;
+
+    // 行尾状态位
+    static final int STATE_TEXT = 0;
+    private static final int IN_FENCE = 1;
+    private static final int FENCE_TILDE = 1 << 1;
+    private static final int FENCE_LENGTH_SHIFT = 2;   // 围栏长度占 8 位
+    private static final int FENCE_LENGTH_MASK = 0xFF;
+    private static final int BOLD_OPEN = 1 << 10;
+    private static final int ITALIC_OPEN = 1 << 11;
+    private static final int BOLD_UNDERSCORE = 1 << 12;   // 粗体由 __ 打开
+    private static final int ITALIC_UNDERSCORE = 1 << 13; // 斜体由 _ 打开
+    private static final int EMPHASIS_MASK = BOLD_OPEN | ITALIC_OPEN | BOLD_UNDERSCORE | ITALIC_UNDERSCORE;
+
+    private static final int MAX_INDENT = 3; // 块标记前最多允许的空格数
+
+    private MarkdownLexer() {
+    }
+
+    /**
+     * 分析一行
+     * @param text 文本
+     * @param start 行起点
+     * @param end 行终点（不含换行符）
+     * @param state 上一行的行尾状态
+     * @param tokens 输出 token
+     * @return 本行的行尾状态
+     */
+    static int tokenizeLine(CharSequence text, int start, int end, int state, TokenBuffer tokens) {
+        if ((state & IN_FENCE) != 0) {
+            tokens.add(start, end - start, TOKEN_CODE);
+            return isClosingFence(text, start, end, state) ? STATE_TEXT : state;
+        }
+
+        if (skipSpaces(text, start, end, Integer.MAX_VALUE) == end) return STATE_TEXT; // 空行结束段落
+        int i = skipSpaces(text, start, end, MAX_INDENT);
+
+        // 引用标记，可嵌套
+        while (i < end && text.charAt(i) == '>') {
+            int markerEnd = i + 1;
+            if (markerEnd < end && text.charAt(markerEnd) == ' ') markerEnd++;
+            tokens.add(i, markerEnd - i, TOKEN_QUOTE);
+            i = skipSpaces(text, markerEnd, end, MAX_INDENT);
+        }
+        if (i == end) return STATE_TEXT;
+
+        char c = text.charAt(i);
+        if (c == '`' || c == '~') {
+            int run = countRun(text, i, end, c);
+            if (run >= 3 && (c == '~' || indexOf(text, i + run, end, '`') < 0)) {
+                tokens.add(i, end - i, TOKEN_CODE);
+                int fence = IN_FENCE | Math.min(run, FENCE_LENGTH_MASK) << FENCE_LENGTH_SHIFT;
+                return c == '~' ? fence | FENCE_TILDE : fence;
+            }
+        }
+        if (c == '#') {
+            int level = countRun(text, i, end, '#');
+            if (level <= 6 && (i + level == end || text.charAt(i + level) == ' ' || text.charAt(i + level) == '\t')) {
+                tokens.add(i, end - i, TOKEN_HEADER);
+                return STATE_TEXT;
+            }
+        }
+        if ((c == '-' || c == '*' || c == '_') && isThematicBreak(text, i, end, c)) {
+            tokens.add(i, end - i, TOKEN_LIST);
+            return STATE_TEXT;
+        }
+
+        int content = listMarkerEnd(text, i, end);
+        if (content > i) {
+            tokens.add(i, content - i, TOKEN_LIST);
+            i = content;
+        }
+        return tokenizeInline(text, i, end, state & EMPHASIS_MASK, tokens);
+    }
+
+    /**
+     * 行内分析：强调按分隔符切换，强调范围拆分为互不重叠的 token，状态跨行保留
+     */
+    private static int tokenizeInline(CharSequence text, int i, int end, int state, TokenBuffer tokens) {
+        int segment = i; // 当前样式段的起点
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < end && isPunctuation(text.charAt(i + 1))) {
+                i += 2; // 转义字符按字面处理
+            } else if (c == '`') {
+                int run = countRun(text, i, end, '`');
+                int close = findBacktickRun(text, i + run, end, run);
+                if (close < 0) {
+                    i += run;
+                    continue;
+                }
+                emit(tokens, segment, i, state);
+                tokens.add(i, close + run - i, TOKEN_CODE);
+                i = close + run;
+                segment = i;
+            } else if (c == '[') {
+                int linkEnd = linkEnd(text, i, end);
+                if (linkEnd < 0) {
+                    i++;
+                    continue;
+                }
+                emit(tokens, segment, i, state);
+                tokens.add(i, linkEnd - i, TOKEN_LINK);
+                i = linkEnd;
+                segment = i;
+            } else if (c == '*' || c == '_') {
+                int run = countRun(text, i, end, c);
+                boolean underscore = c == '_';
+                char before = i > 0 ? text.charAt(i - 1) : ' ';
+                char after = i + run < end ? text.charAt(i + run) : ' ';
+                boolean canOpen = !Character.isWhitespace(after) && !(underscore && Character.isLetterOrDigit(before));
+                boolean canClose = !Character.isWhitespace(before) && !(underscore && Character.isLetterOrDigit(after));
+                int pos = i;
+                int remaining = run;
+                // 分隔符串依次尝试闭合已打开的强调，再尝试打开新的强调；
+                // 闭合时分隔符属于前一段，打开时属于后一段
+                while (remaining > 0) {
+                    int width;
+                    if (canClose && remaining >= 2 && (state & BOLD_OPEN) != 0
+                            && ((state & BOLD_UNDERSCORE) != 0) == underscore) {
+                        width = 2;
+                        emit(tokens, segment, pos + width, state);
+                        state &= ~(BOLD_OPEN | BOLD_UNDERSCORE);
+                        segment = pos + width;
+                    } else if (canClose && (state & ITALIC_OPEN) != 0
+                            && ((state & ITALIC_UNDERSCORE) != 0) == underscore) {
+                        width = 1;
+                        emit(tokens, segment, pos + width, state);
+                        state &= ~(ITALIC_OPEN | ITALIC_UNDERSCORE);
+                        segment = pos + width;
+                    } else if (canOpen && remaining >= 2 && (state & BOLD_OPEN) == 0) {
+                        width = 2;
+                        emit(tokens, segment, pos, state);
+                        state |= underscore ? BOLD_OPEN | BOLD_UNDERSCORE : BOLD_OPEN;
+                        segment = pos;
+                    } else if (canOpen && (state & ITALIC_OPEN) == 0) {
+                        width = 1;
+                        emit(tokens, segment, pos, state);
+                        state |= underscore ? ITALIC_OPEN | ITALIC_UNDERSCORE : ITALIC_OPEN;
+                        segment = pos;
+                    } else {
+                        break; // 其余按字面处理
+                    }
+                    pos += width;
+                    remaining -= width;
+                }
+                i += run;
+            } else {
+                i++;
+            }
+        }
+        emit(tokens, segment, end, state);
+        return state;
+    }
+
+    /**
+     * 以当前强调状态输出 [from, to) 段
+     */
+    private static void emit(TokenBuffer tokens, int from, int to, int state) {
+        boolean bold = (state & BOLD_OPEN) != 0;
+        boolean italic = (state & ITALIC_OPEN) != 0;
+        if (!bold && !italic) return;
+        tokens.add(from, to - from, bold && italic ? TOKEN_BOLD_ITALIC : bold ? TOKEN_BOLD : TOKEN_ITALIC);
+    }
+
+    /**
+     * 围栏结束行：同种字符、长度不小于开启围栏，之后只有空白
+     */
+    private static boolean isClosingFence(CharSequence text, int start, int end, int state) {
+        int i = skipSpaces(text, start, end, MAX_INDENT);
+        char fence = (state & FENCE_TILDE) != 0 ? '~' : '`';
+        int run = countRun(text, i, end, fence);
+        if (run < 3 || run < ((state >> FENCE_LENGTH_SHIFT) & FENCE_LENGTH_MASK)) return false;
+        return skipSpaces(text, i + run, end, Integer.MAX_VALUE) == end;
+    }
+
+    /**
+     * 分隔线：三个及以上相同的 - * _，中间可有空格，没有其他字符
+     */
+    private static boolean isThematicBreak(CharSequence text, int i, int end, char c) {
+        int count = 0;
+        for (; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch == c) count++;
+            else if (ch != ' ' && ch != '\t') return false;
+        }
+        return count >= 3;
+    }
+
+    /**
+     * 列表标记（- * + 或 1. 1)）之后的内容起点，不是列表项时返回 i
+     */
+    private static int listMarkerEnd(CharSequence text, int i, int end) {
+        char c = text.charAt(i);
+        int marker = i;
+        if (c == '-' || c == '*' || c == '+') {
+            marker = i + 1;
+        } else if (c >= '0' && c <= '9') {
+            int j = i;
+            while (j < end && j - i < 9 && text.charAt(j) >= '0' && text.charAt(j) <= '9') j++;
+            if (j < end && (text.charAt(j) == '.' || text.charAt(j) == ')')) marker = j + 1;
+        }
+        if (marker == i) return i;
+        if (marker == end) return end;
+        char next = text.charAt(marker);
+        return next == ' ' || next == '\t' ? marker + 1 : i;
+    }
+
+    /**
+     * 链接 [text](url) 的结束位置，不是链接时返回 -1
+     */
+    private static int linkEnd(CharSequence text, int i, int end) {
+        int depth = 0;
+        int j = i;
+        for (; j < end; j++) {
+            char c = text.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                break;
+            }
+        }
+        if (j + 1 >= end || text.charAt(j + 1) != '(') return -1;
+        int close = indexOf(text, j + 2, end, ')');
+        return close < 0 ? -1 : close + 1;
+    }
+
+    /**
+     * 查找长度恰好为 run 的反引号串
+     */
+    private static int findBacktickRun(CharSequence text, int i, int end, int run) {
+        while (i < end) {
+            if (text.charAt(i) != '`') {
+                i++;
+                continue;
+            }
+            int length = countRun(text, i, end, '`');
+            if (length == run) return i;
+            i += length;
+        }
+        return -1;
+    }
+
+    private static int countRun(CharSequence text, int i, int end, char c) {
+        int j = i;
+        while (j < end && text.charAt(j) == c) j++;
+        return j - i;
+    }
+
+    /**
+     * 跳过最多 max 个空白字符
+     */
+    private static int skipSpaces(CharSequence text, int i, int end, int max) {
+        int limit = max >= end - i ? end : i + max;
+        while (i < limit && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) i++;
+        return i;
+    }
+
+    private static int indexOf(CharSequence text, int i, int end, char c) {
+        for (; i < end; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isPunctuation(char c) {
+        return c < 128 && !Character.isLetterOrDigit(c) && !Character.isWhitespace(c);
+    }
+}
+// 该文件实现Markdown的逐行词法分析
@@ -0,0 +1,305 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+/**
+ * 手写的 Python 词法分析器（字符类 + 状态机），单遍扫描、不分配对象：
+ * - 注释、关键字、数字（十六/八/二进制、下划线分隔、浮点、指数、虚数）
+ * - 字符串：单/双引号、三引号、转义、r/b/u/f 前缀、f-string 中的 {表达式}
+ * 行尾状态记录未闭合的三引号字符串（或以反斜杠续行的字符串），
+ * 因此可以从任意行首、以上一行的行尾状态恢复分析
+ */
+final class PythonLexer {
+    // token 类型
+    static final int TOKEN_COMMENT = 1;
+    static final int TOKEN_STRING = 2;
+    static final int TOKEN_KEYWORD = 3;
+    static final int TOKEN_NUMBER = 4;
+
+    // 行尾状态：0 表示普通代码，其余为未闭合字符串的位组合
+    static final int STATE_CODE = 0;
+    private static final int IN_STRING = 1;
+    private static final int TRIPLE = 1 << 1;
+    private static final int SINGLE_QUOTE = 1 << 2; // 否则为双引号
+    private static final int RAW = 1 << 3;
+    private static final int FORMAT = 1 << 4;
+
+    // 字符类
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte IDENT = 2;
+    private static final byte DIGIT = 3;
+    private static final byte QUOTE = 4;
+    private static final byte HASH = 5;
+    private static final byte DOT = 6;
+    private static final byte[] CLASSES = new byte[128];
+
+    private static final String[] KEYWORDS = {
+            "False", "None", "True", "and", "as", "assert", "async", "await", "break", "class",
+            "continue", "def", "del", "elif", "else", "except", "finally", "for", "from", "global",
+            "if", "import", "in", "is", "lambda", "nonlocal", "not", "or", "pass", "raise",
+            "return", "try", "while", "with", "yield"
+    };
+    // 按首字母分桶的关键字表，匹配时直接与原文逐字比较
+    private static final char[][][] KEYWORDS_BY_FIRST = new char[128][][];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) CLASSES[c] = IDENT;
+        for (int c = 'A'; c <= 'Z'; c++) CLASSES[c] = IDENT;
+        for (int c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+        CLASSES['_'] = IDENT;
+        CLASSES[' '] = SPACE;
+        CLASSES['\t'] = SPACE;
+        CLASSES['\r'] = SPACE;
+        CLASSES['\f'] = SPACE;
+        CLASSES['\''] = QUOTE;
+        CLASSES['"'] = QUOTE;
+        CLASSES['#'] = HASH;
+        CLASSES['.'] = DOT;
+
+        for (int c = 0; c < KEYWORDS_BY_FIRST.length; c++) KEYWORDS_BY_FIRST[c] = new char[0][];
+        for (String keyword : KEYWORDS) {
+            char[][] bucket = KEYWORDS_BY_FIRST[keyword.charAt(0)];
+            char[][] grown = new char[bucket.length + 1][];
+            System.arraycopy(bucket, 0, grown, 0, bucket.length);
+            grown[bucket.length] = keyword.toCharArray();
+            KEYWORDS_BY_FIRST[keyword.charAt(0)] = grown;
+        }
+    }
+
+    private PythonLexer() {
+    }
+
+    /**
+     * 分析一行
+     * @param text 文本
+     * @param start 行起点
+     * @param end 行终点（不含换行符）
+     * @param state 上一行的行尾状态
+     * @param tokens 输出 token
+     * @return 本行的行尾状态
+     */
+    static int tokenizeLine(CharSequence text, int start, int end, int state, TokenBuffer tokens) {
+        int i = start;
+        if (state != STATE_CODE) {
+            i = scanString(text, start, end, state, start, tokens);
+            if (i < 0) return state; // 整行都在字符串内
+        }
+        return tokenizeCode(text, i, end, tokens);
+    }
+
+    private static int tokenizeCode(CharSequence text, int i, int end, TokenBuffer tokens) {
+        while (i < end) {
+            char c = text.charAt(i);
+            switch (classOf(c)) {
+                case SPACE:
+                    i++;
+                    break;
+                case HASH:
+                    tokens.add(i, end - i, TOKEN_COMMENT);
+                    return STATE_CODE;
+                case DIGIT:
+                    i = scanNumber(text, i, end, tokens);
+                    break;
+                case DOT:
+                    if (i + 1 < end && classOf(text.charAt(i + 1)) == DIGIT) {
+                        i = scanNumber(text, i, end, tokens);
+                    } else {
+                        i++;
+                    }
+                    break;
+                case QUOTE: {
+                    int state = openString(text, i, end, 0);
+                    int close = scanString(text, i + ((state & TRIPLE) != 0 ? 3 : 1), end, state, i, tokens);
+                    if (close < 0) return state;
+                    i = close;
+                    break;
+                }
+                case IDENT: {
+                    int j = i + 1;
+                    while (j < end && isIdentifierPart(text.charAt(j))) j++;
+                    int prefix = j < end && classOf(text.charAt(j)) == QUOTE ? stringPrefix(text, i, j) : -1;
+                    if (prefix >= 0) {
+                        int state = openString(text, j, end, prefix);
+                        int close = scanString(text, j + ((state & TRIPLE) != 0 ? 3 : 1), end, state, i, tokens);
+                        if (close < 0) return state;
+                        i = close;
+                    } else {
+                        if (isKeyword(text, i, j)) tokens.add(i, j - i, TOKEN_KEYWORD);
+                        i = j;
+                    }
+                    break;
+                }
+                default:
+                    i++;
+                    break;
+            }
+        }
+        return STATE_CODE;
+    }
+
+    /**
+     * 根据开引号计算字符串状态
+     * @param quote 开引号位置
+     */
+    private static int openString(CharSequence text, int quote, int end, int flags) {
+        char q = text.charAt(quote);
+        int state = IN_STRING | flags;
+        if (q == '\'') state |= SINGLE_QUOTE;
+        if (quote + 2 < end && text.charAt(quote + 1) == q && text.charAt(quote + 2) == q) state |= TRIPLE;
+        return state;
+    }
+
+    /**
+     * 扫描字符串内容直到闭合引号
+     * @param i 内容起点（开引号之后）
+     * @param tokenStart 字符串 token 的起点（含前缀和开引号）
+     * @return 闭合引号之后的位置；字符串延续到下一行时返回 -1
+     */
+    private static int scanString(CharSequence text, int i, int end, int state, int tokenStart, TokenBuffer tokens) {
+        char q = (state & SINGLE_QUOTE) != 0 ? '\'' : '"';
+        boolean triple = (state & TRIPLE) != 0;
+        boolean format = (state & FORMAT) != 0;
+        int segment = tokenStart;
+        boolean continued = triple;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                // 原始字符串中反斜杠同样会阻止引号闭合字符串，只是不转义
+                if (i + 1 >= end) {
+                    continued = true; // 行尾反斜杠：续行
+                    break;
+                }
+                i += 2;
+            } else if (c == q) {
+                if (!triple) {
+                    tokens.add(segment, i + 1 - segment, TOKEN_STRING);
+                    return i + 1;
+                }
+                if (i + 2 < end && text.charAt(i + 1) == q && text.charAt(i + 2) == q) {
+                    tokens.add(segment, i + 3 - segment, TOKEN_STRING);
+                    return i + 3;
+                }
+                i++;
+            } else if (format && c == '{') {
+                if (i + 1 < end && text.charAt(i + 1) == '{') {
+                    i += 2; // {{ 是字面量
+                    continue;
+                }
+                tokens.add(segment, i + 1 - segment, TOKEN_STRING);
+                int expressionEnd = findExpressionEnd(text, i + 1, end, q, triple);
+                tokenizeCode(text, i + 1, expressionEnd, tokens);
+                i = expressionEnd;
+                segment = i;
+            } else {
+                i++;
+            }
+        }
+        tokens.add(segment, end - segment, TOKEN_STRING);
+        return continued ? -1 : end; // 未闭合的单引号字符串在行尾结束
+    }
+
+    /**
+     * 查找 f-string 中替换字段表达式的结束位置（'}'、格式说明符 ':' 或转换符 '!'）
+     */
+    private static int findExpressionEnd(CharSequence text, int i, int end, char q, boolean triple) {
+        int depth = 0;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == q && !triple) return i; // 同种引号结束外层字符串
+            if (c == '\'' || c == '"') {
+                int close = i + 1;
+                while (close < end && text.charAt(close) != c) close++;
+                i = close + 1;
+                continue;
+            }
+            if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                if (depth == 0) return i;
+                depth--;
+            } else if (depth == 0 && (c == ':' || (c == '!' && (i + 1 >= end || text.charAt(i + 1) != '=')))) {
+                return i;
+            }
+            i++;
+        }
+        return end;
+    }
+
+    private static int scanNumber(CharSequence text, int i, int end, TokenBuffer tokens) {
+        int j = i;
+        char c = text.charAt(j);
+        char radix = j + 1 < end ? (char) (text.charAt(j + 1) | 0x20) : 0;
+        if (c == '0' && (radix == 'x' || radix == 'o' || radix == 'b')) {
+            j += 2;
+            while (j < end && (isHexDigit(text.charAt(j)) || text.charAt(j) == '_')) j++;
+        } else {
+            j = skipDigits(text, j, end);
+            if (j < end && text.charAt(j) == '.') j = skipDigits(text, j + 1, end);
+            if (j < end && (text.charAt(j) | 0x20) == 'e') {
+                int k = j + 1;
+                if (k < end && (text.charAt(k) == '+' || text.charAt(k) == '-')) k++;
+                if (k < end && classOf(text.charAt(k)) == DIGIT) j = skipDigits(text, k, end);
+            }
+            if (j < end && (text.charAt(j) | 0x20) == 'j') j++;
+        }
+        tokens.add(i, j - i, TOKEN_NUMBER);
+        return j;
+    }
+
+    private static int skipDigits(CharSequence text, int i, int end) {
+        while (i < end && (classOf(text.charAt(i)) == DIGIT || text.charAt(i) == '_')) i++;
+        return i;
+    }
+
+    /**
+     * 解析字符串前缀（r、b、u、f 及 rb、br、fr、rf，大小写不敏感）
+     * @return 对应的状态标志，不是合法前缀时返回 -1
+     */
+    private static int stringPrefix(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length > 2) return -1;
+        int flags = 0;
+        boolean bytes = false;
+        boolean unicode = false;
+        for (int i = start; i < end; i++) {
+            char c = (char) (text.charAt(i) | 0x20);
+            if (c == 'r' && (flags & RAW) == 0) flags |= RAW;
+            else if (c == 'f' && (flags & FORMAT) == 0) flags |= FORMAT;
+            else if (c == 'b' && !bytes) bytes = true;
+            else if (c == 'u' && length == 1) unicode = true;
+            else return -1;
+        }
+        if (bytes && (flags & FORMAT) != 0) return -1;
+        return unicode ? 0 : flags;
+    }
+
+    private static boolean isKeyword(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        if (first >= 128) return false;
+        int length = end - start;
+        for (char[] keyword : KEYWORDS_BY_FIRST[first]) {
+            if (keyword.length != length) continue;
+            int k = 1;
+            while (k < length && keyword[k] == text.charAt(start + k)) k++;
+            if (k == length) return true;
+        }
+        return false;
+    }
+
+    private static byte classOf(char c) {
+        if (c < 128) return CLASSES[c];
+        return Character.isLetter(c) ? IDENT : Character.isWhitespace(c) ? SPACE : OTHER;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        if (c < 128) {
+            byte type = CLASSES[c];
+            return type == IDENT || type == DIGIT;
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || ((c | 0x20) >= 'a' && (c | 0x20) <= 'f');
+    }
+}
+// 该文件实现Python的手写词法分析
@@ -1,23 +1,51 @@
 package com.example.tnote.Utils.EditorUtils.HilightStrategy;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.Layout;
 import android.widget.EditText;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import com.example.tnote.Utils.EditorUtils.EditorUIUtils;
+import com.example.tnote.Utils.EditorUtils.LineIndex;
 import com.example.tnote.Utils.Interfaces.SyntaxHighlightStrategy;
 /**
  * 语法高亮管理类，负责：
  * - 根据文件类型选择高亮策略
  * - 协调高亮过程
+ * - 跟踪编辑增量，只重新高亮改动涉及的行
+ * 词法分析在后台线程进行，主线程只负责复制脏行文本和应用 Span 差异；
+ * 每次文本变化都会使代数（generation）加一，过期的分析结果直接丢弃。
+ * 只高亮可见区域及前后预读的行，滚动时跟随可见区域
  */
 public class SyntaxHighlightManager {
+    // 所有编辑器共用一个词法分析线程，保证同一时刻只有一个 Job 在运行
+    private static final ExecutorService tokenizer = Executors.newSingleThreadExecutor();
+
     private final Map<String, SyntaxHighlightStrategy> strategies = new HashMap<>();
     private final Context context;
+    private final IncrementalHighlighter highlighter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private EditText editor;                  // 当前绑定的编辑器
+    private SyntaxHighlightStrategy strategy; // 当前文件对应的策略
+    private int generation;                   // 文本版本号
+    private boolean jobInFlight;              // 是否有 Job 正在后台执行
 
-    public SyntaxHighlightManager(Context context) {
+    /**
+     * @param lineIndex 编辑器共享的行索引，行变化时同步各行的高亮状态
+     */
+    public SyntaxHighlightManager(Context context, LineIndex lineIndex) {
         this.context = context;
+        this.highlighter = new IncrementalHighlighter(lineIndex);
+        lineIndex.addLineChangeListener((firstLine, removedLines, addedLines) -> {
+            highlighter.onLinesChanged(firstLine, removedLines, addedLines);
+            generation++; // 正在后台运行的 Job 结果作废
+        });
         initializeStrategies();
     }
 
@@ -27,21 +55,106 @@ public class SyntaxHighlightManager {
     }
 
     /**
-     * 应用语法高亮
+     * 全量应用语法高亮（文件加载且行索引重建后调用），同时重建行状态
      * @param editor 目标编辑器
      * @param fileName 当前文件名（用于判断类型）
      */
     public void applyHighlight(EditText editor, String fileName) {
-        String extension = getFileExtension(fileName);
-        SyntaxHighlightStrategy strategy = strategies.get(extension);
+        bind(editor, fileName);
+        highlighter.reset();
+        generation++;
+        schedule();
+    }
+
+    /**
+     * 恢复休眠前的行状态后应用高亮（行索引已按恢复的文本重建）：
+     * 只需分析可见区域附近未绘制的行，不必从文件开头重新传播状态
+     * @param lineStates {@link #exportLineStates()} 的结果，与当前行数不符时按全量高亮处理
+     */
+    public void applyHighlight(EditText editor, String fileName, int[] lineStates) {
+        bind(editor, fileName);
+        highlighter.restore(lineStates);
+        generation++;
+        schedule();
+    }
+
+    /**
+     * 导出各行的词法状态，供编辑器休眠后恢复
+     */
+    public int[] exportLineStates() {
+        return highlighter.exportLineStates();
+    }
+
+    /**
+     * 只重新高亮自上次以来的脏行（以及词法状态发生变化的后续行）
+     * @param editor 目标编辑器
+     * @param fileName 当前文件名（用于判断类型）
+     */
+    public void applyIncrementalHighlight(EditText editor, String fileName) {
+        bind(editor, fileName);
+        schedule();
+    }
 
-        if (strategy != null) {
-            EditorUIUtils.preserveEditorState(editor, () ->
-                    strategy.highlight(editor.getEditableText())
-            );
+    /**
+     * 设置可见区域前后预读的行数
+     */
+    public void setLookaheadLines(int lines) {
+        highlighter.setLookaheadLines(lines);
+    }
+
+    /**
+     * 根据编辑器的滚动位置更新可见区域，在滚动或布局变化后调用
+     * @param editor 目标编辑器
+     */
+    public void updateViewport(EditText editor) {
+        Layout layout = editor.getLayout();
+        if (layout == null || editor != this.editor) return;
+        int top = Math.max(0, editor.getScrollY() - editor.getTotalPaddingTop());
+        int firstLine = layout.getLineForVertical(top);
+        int lastLine = layout.getLineForVertical(top + editor.getHeight());
+        if (highlighter.setViewport(editor.getEditableText(),
+                layout.getLineStart(firstLine), layout.getLineEnd(lastLine))) {
+            schedule();
         }
     }
 
+    /**
+     * 解除与编辑器的绑定，尚未返回的结果将被丢弃
+     */
+    public void release() {
+        editor = null;
+        strategy = null;
+        generation++;
+    }
+
+    private void bind(EditText editor, String fileName) {
+        this.editor = editor;
+        this.strategy = strategies.get(getFileExtension(fileName));
+    }
+
+    /**
+     * 为当前脏行创建 Job 并提交到后台；同一时刻最多一个 Job，
+     * 结果返回后若仍有脏行（文本已变化或状态传播未结束）则继续调度
+     */
+    private void schedule() {
+        if (jobInFlight || editor == null || strategy == null) return;
+        IncrementalHighlighter.Job job = highlighter.createJob(editor.getEditableText(), generation);
+        if (job == null) return;
+
+        SyntaxHighlightStrategy jobStrategy = strategy;
+        jobInFlight = true;
+        tokenizer.execute(() -> {
+            IncrementalHighlighter.Result result = IncrementalHighlighter.tokenize(job, jobStrategy);
+            mainHandler.post(() -> {
+                jobInFlight = false;
+                if (editor == null || strategy != jobStrategy) return;
+                Editable editable = editor.getEditableText();
+                highlighter.applyResult(editable, result, generation, jobStrategy);
+                schedule();
+            });
+        });
+    }
+
     private String getFileExtension(String fileName) {
         int lastDot = fileName.lastIndexOf('.');
         return (lastDot == -1) ? "" : fileName.substring(lastDot + 1).toLowerCase();
@@ -0,0 +1,58 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的 token 流：每个 token 占三个 int（起点、长度、类型），避免为每个 token 分配对象
+ */
+public final class TokenBuffer {
+    private int[] data;
+    private int size; // token 数量
+
+    public TokenBuffer() {
+        this(64);
+    }
+
+    public TokenBuffer(int capacity) {
+        data = new int[Math.max(1, capacity) * 3];
+    }
+
+    /**
+     * 追加一个 token，长度为 0 的 token 会被忽略
+     */
+    public void add(int start, int length, int type) {
+        if (length <= 0) return;
+        if (size * 3 + 3 > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        int i = size * 3;
+        data[i] = start;
+        data[i + 1] = length;
+        data[i + 2] = type;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int start(int index) {
+        return data[index * 3];
+    }
+
+    public int length(int index) {
+        return data[index * 3 + 1];
+    }
+
+    public int end(int index) {
+        return data[index * 3] + data[index * 3 + 1];
+    }
+
+    public int type(int index) {
+        return data[index * 3 + 2];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+/**
+ * 高亮器产生的 Span，记录 token 类型以便与新的 token 流做差异比较
+ * 需要粗体/斜体时附带一个 StyleSpan，随本 Span 一起移除
+ */
+class TokenSpan extends ForegroundColorSpan {
+    final int type;
+    final StyleSpan styleSpan; // 可为 null
+
+    TokenSpan(int type, int color, StyleSpan styleSpan) {
+        super(color);
+        this.type = type;
+        this.styleSpan = styleSpan;
+    }
+}
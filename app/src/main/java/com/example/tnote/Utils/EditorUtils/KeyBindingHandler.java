@@ -4,11 +4,29 @@ import android.view.KeyEvent;
 import android.widget.EditText;
 
 public class KeyBindingHandler {
+    private final EditorStateManager stateManager;
+
+    public KeyBindingHandler(EditorStateManager stateManager) {
+        this.stateManager = stateManager;
+    }
+
     public boolean handleKeyEvent(int keyCode, KeyEvent event, EditText editor) {
-        if (keyCode == KeyEvent.KEYCODE_TAB && event.getAction() == KeyEvent.ACTION_DOWN) {
+        if (event.getAction() != KeyEvent.ACTION_DOWN) return false;
+        if (keyCode == KeyEvent.KEYCODE_TAB) {
             insertTab(editor);
             return true;
         }
+        if (event.isCtrlPressed()) {
+            // Ctrl+Z 撤销，Ctrl+Y / Ctrl+Shift+Z 重做
+            if (keyCode == KeyEvent.KEYCODE_Z && !event.isShiftPressed()) {
+                moveCursor(editor, stateManager.undo(editor.getText()));
+                return true;
+            }
+            if (keyCode == KeyEvent.KEYCODE_Y || keyCode == KeyEvent.KEYCODE_Z) {
+                moveCursor(editor, stateManager.redo(editor.getText()));
+                return true;
+            }
+        }
         return false;
     }
 
@@ -18,4 +36,10 @@ public class KeyBindingHandler {
         editor.getText().replace(start, end, "    ");
         editor.setSelection(start + 4);
     }
-}
\ No newline at end of file
+
+    private void moveCursor(EditText editor, int position) {
+        if (position >= 0 && position <= editor.getText().length()) {
+            editor.setSelection(position);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 行起点索引：以隐式 Treap 保存每一行的长度（含行尾换行符），
+ * 子树汇总行数与字符数，从而在 O(log n) 内完成：
+ * - 行号 → 行起点/行终点
+ * - 偏移 → 行号
+ * 索引由 TextWatcher 的增量（起点、删除长度、插入长度）维护，不会重新扫描全文；
+ * 行结构变化时通知 LineChangeListener，供高亮、行号栏等按行保存数据的组件同步
+ */
+public final class LineIndex {
+
+    /**
+     * 行结构变化监听：firstLine 之后的 removedLines 行被 addedLines 行替换，
+     * firstLine 本身的内容也可能发生了变化
+     */
+    public interface LineChangeListener {
+        void onLinesChanged(int firstLine, int removedLines, int addedLines);
+    }
+
+    private final Random random = new Random();
+    private final List<LineChangeListener> listeners = new ArrayList<>();
+    private Node root = new Node(0, 0);
+
+    public LineIndex() {
+        root.priority = random.nextInt();
+    }
+
+    public void addLineChangeListener(LineChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeLineChangeListener(LineChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 按完整文本重建索引，O(n)；不通知监听器
+     */
+    public void reset(CharSequence text) {
+        // 按行顺序构建笛卡尔树：维护最右链，保证堆性质
+        Node[] rightSpine = new Node[64];
+        int depth = 0;
+        int lineStart = 0;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && text.charAt(i) != '\n') continue;
+            int lineLength = i < length ? i + 1 - lineStart : i - lineStart;
+            Node node = new Node(lineLength, random.nextInt());
+            Node last = null;
+            while (depth > 0 && rightSpine[depth - 1].priority < node.priority) {
+                last = rightSpine[--depth];
+            }
+            node.left = last;
+            if (depth > 0) rightSpine[depth - 1].right = node;
+            if (depth == rightSpine.length) {
+                Node[] grown = new Node[depth * 2];
+                System.arraycopy(rightSpine, 0, grown, 0, depth);
+                rightSpine = grown;
+            }
+            rightSpine[depth++] = node;
+            lineStart = i + 1;
+        }
+        root = rightSpine[0];
+        updateAll(root);
+    }
+
+    /**
+     * 应用一次文本变化（在 TextWatcher.onTextChanged 中调用，此时 text 已是新内容）
+     * @param text 变化后的文本
+     * @param start 变化起点
+     * @param before 被替换的旧长度
+     * @param count 新插入的长度
+     */
+    public void onTextChanged(CharSequence text, int start, int before, int count) {
+        int firstLine = getLineForOffset(start);
+        int lastOldLine = getLineForOffset(start + before);
+        int newLineBreaks = 0;
+        for (int i = start; i < start + count; i++) {
+            if (text.charAt(i) == '\n') newLineBreaks++;
+        }
+
+        if (firstLine == lastOldLine && newLineBreaks == 0) {
+            // 行内修改：只调整该行长度
+            addLength(root, firstLine, count - before);
+        } else {
+            int prefix = start - getLineStart(firstLine);
+            int suffix = getLineStart(lastOldLine) + lengthOf(lastOldLine) - (start + before);
+            Node[] parts = split(root, firstLine);
+            Node[] tail = split(parts[1], lastOldLine - firstLine + 1);
+
+            // 按新文本中的换行切分出新行
+            Node middle = null;
+            int current = prefix;
+            for (int i = start; i < start + count; i++) {
+                current++;
+                if (text.charAt(i) == '\n') {
+                    middle = merge(middle, new Node(current, random.nextInt()));
+                    current = 0;
+                }
+            }
+            middle = merge(middle, new Node(current + suffix, random.nextInt()));
+            root = merge(merge(parts[0], middle), tail[1]);
+        }
+
+        for (LineChangeListener listener : listeners) {
+            listener.onLinesChanged(firstLine, lastOldLine - firstLine, newLineBreaks);
+        }
+    }
+
+    public int getLineCount() {
+        return root.size;
+    }
+
+    /**
+     * 文本总长度
+     */
+    public int length() {
+        return root.sum;
+    }
+
+    /**
+     * 行起点偏移
+     */
+    public int getLineStart(int line) {
+        checkLine(line);
+        int offset = 0;
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (line < leftSize) {
+                node = node.left;
+            } else {
+                offset += sum(node.left);
+                if (line == leftSize) return offset;
+                offset += node.length;
+                line -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 行终点偏移（不含换行符）
+     */
+    public int getLineEnd(int line) {
+        int end = getLineStart(line) + lengthOf(line);
+        return line + 1 < getLineCount() ? end - 1 : end;
+    }
+
+    /**
+     * 偏移所在的行号；行尾换行符属于该行，换行符之后的偏移属于下一行
+     */
+    public int getLineForOffset(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length());
+        }
+        int line = 0;
+        Node node = root;
+        while (true) {
+            int leftSum = sum(node.left);
+            if (offset < leftSum) {
+                node = node.left;
+                continue;
+            }
+            offset -= leftSum;
+            line += size(node.left);
+            if (offset < node.length || node.right == null) return line;
+            offset -= node.length;
+            line++;
+            node = node.right;
+        }
+    }
+
+    private int lengthOf(int line) {
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (line < leftSize) {
+                node = node.left;
+            } else if (line == leftSize) {
+                return node.length;
+            } else {
+                line -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= getLineCount()) {
+            throw new IndexOutOfBoundsException("line " + line + ", count " + getLineCount());
+        }
+    }
+
+    private static void addLength(Node node, int line, int delta) {
+        while (true) {
+            node.sum += delta;
+            int leftSize = size(node.left);
+            if (line < leftSize) {
+                node = node.left;
+            } else if (line == leftSize) {
+                node.length += delta;
+                return;
+            } else {
+                line -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * 按行数拆分：左边为前 count 行
+     */
+    private static Node[] split(Node node, int count) {
+        if (node == null) return new Node[2];
+        Node[] result;
+        if (size(node.left) < count) {
+            result = split(node.right, count - size(node.left) - 1);
+            node.right = result[0];
+            result[0] = node;
+        } else {
+            result = split(node.left, count);
+            node.left = result[1];
+            result[1] = node;
+        }
+        update(node);
+        return result;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void updateAll(Node node) {
+        if (node == null) return;
+        updateAll(node.left);
+        updateAll(node.right);
+        update(node);
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        node.sum = node.length + sum(node.left) + sum(node.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int sum(Node node) {
+        return node == null ? 0 : node.sum;
+    }
+
+    /**
+     * 树节点：一行
+     */
+    private static final class Node {
+        int length;   // 行长度（含换行符）
+        int priority;
+        int size;     // 子树行数
+        int sum;      // 子树字符数
+        Node left;
+        Node right;
+
+        Node(int length, int priority) {
+            this.length = length;
+            this.priority = priority;
+            this.size = 1;
+            this.sum = length;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.EditText;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.tnote.R;
+
+/**
+ * 编辑器左侧的行号栏：
+ * - 只绘制编辑器当前可见的行
+ * - 行号通过 LineIndex 由偏移换算得到，自动换行产生的续行不重复编号
+ * - 宽度随总行数的位数变化
+ * 编辑器滚动时需调用 invalidate() 重绘
+ */
+public class LineNumberGutter extends View {
+    private static final int HORIZONTAL_PADDING_DP = 8;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] digits = new char[10]; // 绘制时复用的数字缓冲
+    private EditText editor;
+    private LineIndex lineIndex;
+    private int digitCount = 1;
+
+    // 构造方法
+    public LineNumberGutter(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public LineNumberGutter(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public LineNumberGutter(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        paint.setTypeface(Typeface.MONOSPACE);
+        paint.setColor(ContextCompat.getColor(context, R.color.editor_gutter_text));
+        paint.setTextAlign(Paint.Align.RIGHT);
+    }
+
+    /**
+     * 关联编辑器与行索引
+     * @param editor 目标编辑器（提供布局与滚动位置）
+     * @param lineIndex 编辑器的行索引
+     */
+    public void attach(EditText editor, LineIndex lineIndex) {
+        this.editor = editor;
+        this.lineIndex = lineIndex;
+        paint.setTextSize(editor.getTextSize());
+        lineIndex.addLineChangeListener((firstLine, removedLines, addedLines) -> {
+            if (removedLines != addedLines) onLineCountChanged();
+        });
+        onLineCountChanged();
+    }
+
+    /**
+     * 行数变化（包括重新加载文件后）时调用，位数变化则重新测量宽度
+     */
+    public void onLineCountChanged() {
+        int count = digitsOf(lineIndex.getLineCount());
+        if (count != digitCount) {
+            digitCount = count;
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        float padding = HORIZONTAL_PADDING_DP * getResources().getDisplayMetrics().density;
+        int width = (int) Math.ceil(paint.measureText("0") * digitCount + 2 * padding);
+        setMeasuredDimension(width, MeasureSpec.getSize(heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (editor == null) return;
+        Layout layout = editor.getLayout();
+        if (layout == null) return;
+
+        int top = editor.getTotalPaddingTop() - editor.getScrollY();
+        int firstVisual = layout.getLineForVertical(Math.max(0, -top));
+        int lastVisual = layout.getLineForVertical(getHeight() - top);
+        float x = getWidth() - HORIZONTAL_PADDING_DP * getResources().getDisplayMetrics().density;
+        int textLength = lineIndex.length();
+
+        for (int visual = firstVisual; visual <= lastVisual; visual++) {
+            int offset = Math.min(layout.getLineStart(visual), textLength);
+            int line = lineIndex.getLineForOffset(offset);
+            if (lineIndex.getLineStart(line) != offset) continue; // 自动换行的续行
+            int length = formatNumber(line + 1);
+            canvas.drawText(digits, digits.length - length, length, x, layout.getLineBaseline(visual) + top, paint);
+        }
+    }
+
+    /**
+     * 把数字写到 digits 末尾，返回位数
+     */
+    private int formatNumber(int number) {
+        int index = digits.length;
+        do {
+            digits[--index] = (char) ('0' + number % 10);
+            number /= 10;
+        } while (number > 0);
+        return digits.length - index;
+    }
+
+    private static int digitsOf(int number) {
+        int count = 1;
+        while (number >= 10) {
+            number /= 10;
+            count++;
+        }
+        return count;
+    }
+}
+// 该文件实现编辑器的行号栏
@@ -0,0 +1,338 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.example.tnote.Utils.FileIOUtils;
+
+/**
+ * 只读的内存映射文本文件，供大文件查看模式使用：
+ * - 文件按区段以 FileChannel.map 映射，内容由系统按页换入换出，不占用 Java 堆
+ * - 稀疏行索引：每 LINES_PER_CHECKPOINT 行记录一个行起点字节偏移，在后台线程分段扫描构建
+ *   （每段至多 SLICE_BYTES，多 GB 的文件也不会长时间占住一个后台线程），构建期间已扫描的行即可读取
+ * - 按需把指定范围的行解码为字符串，编码按文件开头识别（BOM / UTF-8 / GB18030，与编辑器一致），非法字节替换
+ * - 超过 MAX_LINE_BYTES 的行在字符边界处软折行，每段算作一行：建索引与读取都只扫描有限字节，
+ *   单行的压缩日志或 JSON 也不会在主线程扫描全文
+ * 堆内存只有稀疏索引（每 256 行 8 字节）和解码缓冲，与文件大小基本无关
+ * 线程约定：indexSlice 在后台依次调用（同一 key 串行，前后两段之间有先后关系）；readLines/getLineCount 在主线程调用
+ */
+public final class MappedTextFile implements Closeable {
+
+    /**
+     * 索引进度回调（在建索引的线程调用）
+     */
+    public interface IndexListener {
+        void onProgress(int indexedLines, boolean complete);
+    }
+
+    private static final int REGION_SHIFT = 30;                 // 单个映射区段 1GB
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final int LINES_PER_CHECKPOINT = 256;
+    private static final int PROGRESS_INTERVAL_LINES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 4 * 1024;         // 超过该字节数的行折成多段
+    private static final int DETECT_BYTES = 64 * 1024;          // 编码识别读取的开头字节数
+    private static final int SCAN_CHUNK = 64 * 1024;
+    private static final long SLICE_BYTES = 16L * 1024 * 1024;  // 每次 indexSlice 扫描的字节数
+
+    private final File file;
+    private final long size;
+    private final MappedByteBuffer[] regions;
+    private final FileIOUtils.Encoding encoding;
+    private final long dataStart; // 跳过 BOM 后正文的起点
+    private final int unit;       // 换行符所在编码单元的字节数：UTF-16 为 2，其余为 1
+    private final boolean bigEndian;
+
+    // 稀疏索引：checkpoints[k] 为第 k * LINES_PER_CHECKPOINT 行的起点
+    private long[] checkpoints = new long[1024];
+    private volatile int lineCount;          // 已确认起点的行数，先写索引再写该字段以发布
+    private volatile boolean indexComplete;
+    private volatile boolean closed;
+
+    // 分段扫描的进度（只在建索引的任务中访问）
+    private int scanLines = 1;   // 第 0 行起点为 dataStart，已写入 checkpoints[0]
+    private int scanReported;
+    private long scanLineStart;
+    private long scanPosition;
+    private byte[] scanChunk;
+
+    // 解码缓冲（主线程复用）
+    private final CharsetDecoder decoder;
+    private final byte[] lineBytes = new byte[MAX_LINE_BYTES];
+    private final CharBuffer lineChars = CharBuffer.allocate(MAX_LINE_BYTES);
+
+    private MappedTextFile(File file, long size, MappedByteBuffer[] regions) {
+        this.file = file;
+        this.size = size;
+        this.regions = regions;
+        byte[] head = new byte[(int) Math.min(size, DETECT_BYTES)];
+        read(0, head, head.length);
+        encoding = FileIOUtils.detectEncoding(ByteBuffer.wrap(head));
+        dataStart = encoding.bom ? FileIOUtils.bomLength(encoding.charset) : 0;
+        unit = encoding.charset.name().startsWith("UTF-16") ? 2 : 1;
+        bigEndian = encoding.charset == StandardCharsets.UTF_16BE;
+        checkpoints[0] = dataStart;
+        scanLineStart = dataStart;
+        scanPosition = dataStart;
+        decoder = encoding.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * 以只读方式映射文件；映射建立后通道即可关闭
+     * @param file 目标文件
+     * @return 映射后的文件，尚未建立行索引
+     * @throws IOException 文件无法打开或映射时抛出
+     */
+    public static MappedTextFile open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            int count = (int) ((size + REGION_SIZE - 1) >>> REGION_SHIFT);
+            MappedByteBuffer[] regions = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = (long) i << REGION_SHIFT;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(REGION_SIZE, size - position));
+            }
+            return new MappedTextFile(file, size, regions);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public FileIOUtils.Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * 已建立索引的行数；索引完成前会随扫描增长
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    /**
+     * 继续扫描至多 SLICE_BYTES 字节建立稀疏行索引（后台线程调用），close() 后尽快返回；
+     * 调用方在返回 true 时重新提交下一段，让排队的其他后台任务在两段之间执行
+     * @param listener 进度回调，可为 null
+     * @return 还有未扫描的内容时返回 true
+     */
+    public boolean indexSlice(IndexListener listener) {
+        if (closed || indexComplete) return false;
+        if (size - dataStart < unit) {
+            lineCount = 1; // 空文件也有一个空行
+            indexComplete = true;
+            if (listener != null) listener.onProgress(1, true);
+            return false;
+        }
+        int lines = scanLines;
+        int reported = scanReported;
+        long lineStart = scanLineStart;
+        long position = scanPosition;
+        long sliceEnd = position + SLICE_BYTES;
+        if (scanChunk == null) scanChunk = new byte[SCAN_CHUNK]; // 偶数长度，UTF-16 的编码单元不会跨块
+        byte[] chunk = scanChunk;
+        while (position + unit <= size && position < sliceEnd && !closed) {
+            int length = read(position, chunk, chunk.length);
+            for (int i = 0; i + unit <= length; i += unit) {
+                long next;
+                if (isNewline(chunk[i], unit == 2 ? chunk[i + 1] : 0)) {
+                    next = position + i + unit;
+                    if (next + unit > size) break; // 末尾换行不产生新行
+                } else if (position + i - lineStart >= MAX_LINE_BYTES) {
+                    next = softBreak(lineStart); // 与 lineEnd 的折行规则一致
+                } else {
+                    continue;
+                }
+                if (lines % LINES_PER_CHECKPOINT == 0) addCheckpoint(lines / LINES_PER_CHECKPOINT, next);
+                lines++;
+                lineStart = next;
+            }
+            position += length - length % unit;
+            // 只发布已写好检查点的行：下一行若需要检查点，则它的起点已在上面写入
+            lineCount = lines;
+            if (listener != null && lines - reported >= PROGRESS_INTERVAL_LINES) {
+                reported = lines;
+                listener.onProgress(lines, false);
+            }
+            if (length < unit) break;
+        }
+        scanLines = lines;
+        scanReported = reported;
+        scanLineStart = lineStart;
+        scanPosition = position;
+        if (closed) return false;
+        if (position + unit <= size) return true;
+        scanChunk = null;
+        indexComplete = true;
+        if (listener != null) listener.onProgress(lines, true);
+        return false;
+    }
+
+    /**
+     * 解码从 firstLine 开始的若干行，写入 out（主线程调用）
+     * @param firstLine 起始行
+     * @param out 输出数组
+     * @param count 需要的行数
+     * @return 实际解码的行数（受已索引行数限制）
+     */
+    public int readLines(int firstLine, String[] out, int count) {
+        int available = Math.min(count, lineCount - firstLine);
+        if (available <= 0) return 0;
+        long position = getLineStartOffset(firstLine);
+        for (int i = 0; i < available; i++) {
+            long end = lineEnd(position);
+            out[i] = decodeLine(position, end);
+            position = nextLineStart(end);
+        }
+        return available;
+    }
+
+    @Override
+    public void close() {
+        // MappedByteBuffer 无法显式解除映射，随本对象被回收时释放
+        closed = true;
+    }
+
+    /**
+     * 行起点字节偏移：从最近的检查点向后扫描不超过 LINES_PER_CHECKPOINT - 1 行
+     */
+    private long getLineStartOffset(int line) {
+        long position = checkpoints[line / LINES_PER_CHECKPOINT];
+        for (int i = line % LINES_PER_CHECKPOINT; i > 0; i--) {
+            position = nextLineStart(lineEnd(position));
+        }
+        return position;
+    }
+
+    private void addCheckpoint(int index, long offset) {
+        if (index == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, index * 2);
+        }
+        checkpoints[index] = offset;
+    }
+
+    /**
+     * 从行起点 start 查找行尾：换行符位置；没有换行时为文件末尾；
+     * 超过 MAX_LINE_BYTES 仍未换行时为软折行位置。最多扫描 MAX_LINE_BYTES 字节
+     */
+    private long lineEnd(long start) {
+        long limit = Math.min(start + MAX_LINE_BYTES, size - unit + 1);
+        for (long p = start; p < limit; p += unit) {
+            if (newlineAt(p)) return p;
+        }
+        if (start + MAX_LINE_BYTES + unit > size) return size;
+        if (newlineAt(start + MAX_LINE_BYTES)) return start + MAX_LINE_BYTES; // 恰好满长的行
+        return softBreak(start);
+    }
+
+    /**
+     * 行尾之后的下一行起点：行尾是换行符时跳过它，软折行时就是行尾本身
+     */
+    private long nextLineStart(long end) {
+        return end + unit <= size && newlineAt(end) ? end + unit : end;
+    }
+
+    /**
+     * 软折行位置：不超过 start + MAX_LINE_BYTES 的最后一个字符边界，不拆开多字节字符
+     */
+    private long softBreak(long start) {
+        long limit = start + MAX_LINE_BYTES;
+        if (unit == 2) {
+            // 不拆开代理对
+            int high = bigEndian ? byteAt(limit - 2) & 0xFF : byteAt(limit - 1) & 0xFF;
+            return high >= 0xD8 && high <= 0xDB ? limit - 2 : limit;
+        }
+        if (encoding.charset == StandardCharsets.UTF_8) {
+            long p = limit;
+            while (p > limit - 3 && (byteAt(p) & 0xC0) == 0x80) p--;
+            return p;
+        }
+        if (encoding.charset.name().equals("GB18030")) {
+            // 变长编码无法从中间反向定位，从行起点按首字节顺推
+            long p = start;
+            while (true) {
+                int b = byteAt(p) & 0xFF;
+                int length = b < 0x81 || b == 0xFF ? 1
+                        : p + 1 < size && (byteAt(p + 1) & 0xFF) >= 0x30 && (byteAt(p + 1) & 0xFF) <= 0x39 ? 4 : 2;
+                if (p + length > limit) return p;
+                p += length;
+            }
+        }
+        return limit;
+    }
+
+    private boolean newlineAt(long position) {
+        return isNewline(byteAt(position), unit == 2 ? byteAt(position + 1) : 0);
+    }
+
+    /**
+     * 编码单元是否为换行符（单字节编码只看 first）
+     */
+    private boolean isNewline(byte first, byte second) {
+        if (unit == 1) return first == '\n';
+        return bigEndian ? first == 0 && second == '\n' : first == '\n' && second == 0;
+    }
+
+    /**
+     * 把 [position, position + length) 复制到 dest，可跨区段；返回实际复制的字节数
+     */
+    private int read(long position, byte[] dest, int length) {
+        length = (int) Math.min(length, size - position);
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer region = regions[(int) (position >>> REGION_SHIFT)].duplicate();
+            int offset = (int) (position & (REGION_SIZE - 1));
+            int n = Math.min(length - copied, region.limit() - offset);
+            region.position(offset);
+            region.get(dest, copied, n);
+            copied += n;
+            position += n;
+        }
+        return copied;
+    }
+
+    private String decodeLine(long start, long end) {
+        if (end - start >= unit && isCarriageReturn(end - unit)) end -= unit; // CRLF
+        int length = read(start, lineBytes, (int) (end - start));
+        lineChars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(lineBytes, 0, length), lineChars, true);
+        decoder.flush(lineChars);
+        lineChars.flip();
+        return lineChars.toString();
+    }
+
+    private boolean isCarriageReturn(long position) {
+        if (unit == 1) return byteAt(position) == '\r';
+        byte first = byteAt(position);
+        byte second = byteAt(position + 1);
+        return bigEndian ? first == 0 && second == '\r' : first == '\r' && second == 0;
+    }
+
+    private byte byteAt(long position) {
+        return regions[(int) (position >>> REGION_SHIFT)].get((int) (position & (REGION_SIZE - 1)));
+    }
+}
+// 该文件实现大文件的只读内存映射与稀疏行索引
@@ -0,0 +1,469 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.text.GetChars;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 分片表（Piece Table）文档模型：
+ * - 原始缓冲区：文件解码后的字符数组，只读，永不复制
+ * - 追加缓冲区：所有插入的文本按顺序追加，分块存储，已写入的块不会移动
+ * - 分片树：按文档顺序排列的分片（缓冲区 + 起点 + 长度），使用可持久化 Treap 维护
+ *
+ * 插入/删除的时间复杂度为 O(log n)（n 为分片数）。
+ * 追加缓冲区只增不减，被删除的插入文本仍占用空间；浪费过多时由调用方用 {@link #compact()} 重建。
+ * 由于分片树是不可变的（修改时路径复制），{@link #snapshot()} 为 O(1)，
+ * 快照可以安全地交给后台线程流式写出，而主线程继续编辑。
+ *
+ * @线程说明 修改操作只能在单一线程（通常是主线程）调用；快照可在任意线程读取
+ */
+public final class PieceTable implements GetChars {
+    private static final int ADD_BLOCK_SIZE = 16 * 1024; // 追加缓冲区每块的字符数
+    private static final int WRITE_CHUNK = 8 * 1024;      // 流式写出时的缓冲区大小
+    private static final int COMPACT_MIN_ADDED = 1024 * 1024; // 追加缓冲区小于该字符数时不值得重建
+
+    private final char[] original;          // 原始缓冲区
+    private final AppendBuffer addBuffer = new AppendBuffer();
+    private Node root;                      // 分片树根节点（不可变）
+
+    /**
+     * 以解码后的字符数组创建文档，数组直接作为原始缓冲区使用，不做复制
+     * @param original 原始字符数组（调用方之后不得再修改）
+     * @param length 有效字符数
+     */
+    public PieceTable(char[] original, int length) {
+        this.original = original;
+        this.root = length > 0 ? new Node(false, 0, length, null, null) : null;
+    }
+
+    /**
+     * 创建空文档
+     */
+    public PieceTable() {
+        this(new char[0], 0);
+    }
+
+    // region 编辑操作
+
+    /**
+     * 在指定位置插入文本
+     * @param offset 插入位置
+     * @param text 文本来源
+     * @param start 来源起点（含）
+     * @param end 来源终点（不含）
+     */
+    public void insert(int offset, CharSequence text, int start, int end) {
+        checkOffset(offset);
+        int count = end - start;
+        if (count <= 0) return;
+
+        int addStart = addBuffer.length();
+        addBuffer.append(text, start, end);
+
+        Node[] parts = split(root, offset);
+        Node left = parts[0];
+        // 连续输入时直接延长上一个追加分片，避免分片数随按键线性增长
+        Node extended = extendTail(left, addStart, count);
+        if (extended != null) {
+            root = merge(extended, parts[1]);
+        } else {
+            root = merge(merge(left, new Node(true, addStart, count, null, null)), parts[1]);
+        }
+    }
+
+    /**
+     * 删除区间 [start, end) 的文本
+     */
+    public void delete(int start, int end) {
+        checkOffset(start);
+        checkOffset(end);
+        if (end <= start) return;
+        Node[] head = split(root, start);
+        Node[] tail = split(head[1], end - start);
+        root = merge(head[0], tail[1]);
+    }
+
+    /**
+     * 用新文本替换区间 [start, end)，对应 TextWatcher.onTextChanged 提供的增量
+     */
+    public void replace(int start, int end, CharSequence text, int textStart, int textEnd) {
+        delete(start, end);
+        insert(start, text, textStart, textEnd);
+    }
+
+    // endregion
+
+    // region 读取操作
+
+    /**
+     * 获取当前文档的不可变快照，O(1)
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(root, original, addBuffer);
+    }
+
+    @Override
+    public int length() {
+        return size(root);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return charAt(root, original, addBuffer, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return snapshot().subSequence(start, end);
+    }
+
+    @Override
+    public void getChars(int start, int end, char[] dest, int destOffset) {
+        getChars(root, original, addBuffer, start, end, dest, destOffset);
+    }
+
+    /**
+     * 按分片顺序将文档流式写出，不生成完整字符串
+     */
+    public void writeTo(Writer writer) throws IOException {
+        snapshot().writeTo(writer);
+    }
+
+    /**
+     * 追加缓冲区是否已大到值得重建：超过下限且比文档本身还长（长时间编辑、反复整段替换后）
+     */
+    public boolean shouldCompact() {
+        int added = addBuffer.length();
+        return added > COMPACT_MIN_ADDED && added > length();
+    }
+
+    /**
+     * 以当前内容为原始缓冲区重建文档，丢弃追加缓冲区；已取出的快照仍引用旧缓冲区，继续有效
+     */
+    public PieceTable compact() {
+        int length = length();
+        char[] chars = new char[length];
+        getChars(0, length, chars, 0);
+        return new PieceTable(chars, length);
+    }
+
+    /**
+     * 当前分片数量（调试/统计用）
+     */
+    public int pieceCount() {
+        return count(root);
+    }
+
+    /**
+     * 生成完整字符串，会复制整个文档，仅用于小文本或调试
+     */
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    // endregion
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length());
+        }
+    }
+
+    /**
+     * 文档快照：持有某一时刻的分片树根节点，内容永不改变
+     */
+    public static final class Snapshot implements GetChars {
+        private final Node root;
+        private final char[] original;
+        private final AppendBuffer addBuffer;
+        private final int length;
+
+        // 顺序访问缓存：最近一次 charAt 命中的分片及其在文档中的起点
+        private Node cachedPiece;
+        private int cachedPieceStart = -1;
+
+        private Snapshot(Node root, char[] original, AppendBuffer addBuffer) {
+            this.root = root;
+            this.original = original;
+            this.addBuffer = addBuffer;
+            this.length = size(root);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            Node piece = cachedPiece;
+            int pieceStart = cachedPieceStart;
+            if (piece == null || index < pieceStart || index >= pieceStart + piece.length) {
+                // 未命中缓存时重新定位分片
+                Node node = root;
+                int base = 0;
+                while (true) {
+                    int leftSize = size(node.left);
+                    if (index < base + leftSize) {
+                        node = node.left;
+                    } else if (index < base + leftSize + node.length) {
+                        piece = node;
+                        pieceStart = base + leftSize;
+                        break;
+                    } else {
+                        base += leftSize + node.length;
+                        node = node.right;
+                    }
+                }
+                cachedPiece = piece;
+                cachedPieceStart = pieceStart;
+            }
+            return pieceChar(piece, index - pieceStart, original, addBuffer);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + length);
+            }
+            char[] chars = new char[end - start];
+            getChars(start, end, chars, 0);
+            return new String(chars);
+        }
+
+        @Override
+        public void getChars(int start, int end, char[] dest, int destOffset) {
+            PieceTable.getChars(root, original, addBuffer, start, end, dest, destOffset);
+        }
+
+        /**
+         * 按分片顺序写出全部内容，只使用固定大小的中转缓冲区
+         */
+        public void writeTo(Writer writer) throws IOException {
+            char[] buffer = new char[WRITE_CHUNK];
+            int offset = 0;
+            while (offset < length) {
+                int end = Math.min(length, offset + WRITE_CHUNK);
+                getChars(offset, end, buffer, 0);
+                writer.write(buffer, 0, end - offset);
+                offset = end;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (String) subSequence(0, length);
+        }
+    }
+
+    // region 分片树（可持久化 Treap，按文档偏移隐式排序）
+
+    /**
+     * 分片节点，创建后不可修改
+     */
+    private static final class Node {
+        final boolean inAddBuffer; // true 表示引用追加缓冲区
+        final int start;           // 在所属缓冲区中的起点
+        final int length;          // 分片长度
+        final int priority;        // Treap 优先级
+        final Node left;
+        final Node right;
+        final int size;            // 子树文本总长度
+
+        Node(boolean inAddBuffer, int start, int length, Node left, Node right) {
+            this(inAddBuffer, start, length, ThreadLocalRandom.current().nextInt(), left, right);
+        }
+
+        Node(boolean inAddBuffer, int start, int length, int priority, Node left, Node right) {
+            this.inAddBuffer = inAddBuffer;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + length + size(right);
+        }
+
+        Node withChildren(Node left, Node right) {
+            return new Node(inAddBuffer, start, length, priority, left, right);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : count(node.left) + 1 + count(node.right);
+    }
+
+    /**
+     * 按文档偏移拆分为 [0, offset) 与 [offset, size) 两棵树，必要时切开分片
+     */
+    private static Node[] split(Node node, int offset) {
+        if (node == null) return new Node[]{null, null};
+        int leftSize = size(node.left);
+        if (offset <= leftSize) {
+            Node[] parts = split(node.left, offset);
+            return new Node[]{parts[0], node.withChildren(parts[1], node.right)};
+        }
+        int pieceEnd = leftSize + node.length;
+        if (offset >= pieceEnd) {
+            Node[] parts = split(node.right, offset - pieceEnd);
+            return new Node[]{node.withChildren(node.left, parts[0]), parts[1]};
+        }
+        // 拆分点落在当前分片内部
+        int headLength = offset - leftSize;
+        Node head = new Node(node.inAddBuffer, node.start, headLength, node.priority, node.left, null);
+        Node tail = new Node(node.inAddBuffer, node.start + headLength, node.length - headLength,
+                null, node.right);
+        return new Node[]{head, tail};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    /**
+     * 若树的最后一个分片恰好以追加缓冲区的 addStart 结尾，则返回延长后的新树，否则返回 null
+     */
+    private static Node extendTail(Node node, int addStart, int count) {
+        if (node == null) return null;
+        if (node.right != null) {
+            Node right = extendTail(node.right, addStart, count);
+            return right == null ? null : node.withChildren(node.left, right);
+        }
+        if (!node.inAddBuffer || node.start + node.length != addStart) return null;
+        return new Node(true, node.start, node.length + count, node.priority, node.left, null);
+    }
+
+    private static char pieceChar(Node piece, int offsetInPiece, char[] original, AppendBuffer addBuffer) {
+        int index = piece.start + offsetInPiece;
+        return piece.inAddBuffer ? addBuffer.charAt(index) : original[index];
+    }
+
+    private static char charAt(Node root, char[] original, AppendBuffer addBuffer, int index) {
+        if (index < 0 || index >= size(root)) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + size(root));
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index < leftSize + node.length) {
+                return pieceChar(node, index - leftSize, original, addBuffer);
+            } else {
+                index -= leftSize + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * 中序遍历与 [start, end) 相交的分片，逐段批量复制
+     */
+    private static void getChars(Node root, char[] original, AppendBuffer addBuffer,
+                                 int start, int end, char[] dest, int destOffset) {
+        if (start < 0 || end > size(root) || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + size(root));
+        }
+        if (start == end) return;
+        copyRange(root, 0, original, addBuffer, start, end, dest, destOffset - start);
+    }
+
+    /**
+     * @param base 当前子树在文档中的起点
+     * @param shift 文档偏移到目标数组下标的差值
+     */
+    private static void copyRange(Node node, int base, char[] original, AppendBuffer addBuffer,
+                                  int start, int end, char[] dest, int shift) {
+        if (node == null || base >= end || base + node.size <= start) return;
+        int pieceStart = base + size(node.left);
+        int pieceEnd = pieceStart + node.length;
+        copyRange(node.left, base, original, addBuffer, start, end, dest, shift);
+        int from = Math.max(start, pieceStart);
+        int to = Math.min(end, pieceEnd);
+        if (from < to) {
+            int bufferStart = node.start + from - pieceStart;
+            if (node.inAddBuffer) {
+                addBuffer.getChars(bufferStart, bufferStart + to - from, dest, from + shift);
+            } else {
+                System.arraycopy(original, bufferStart, dest, from + shift, to - from);
+            }
+        }
+        copyRange(node.right, pieceEnd, original, addBuffer, start, end, dest, shift);
+    }
+
+    // endregion
+
+    /**
+     * 只追加的分块字符缓冲区，已写入的块地址固定，快照读取时无需加锁
+     * 块目录扩容时先填好新数组再通过 volatile 发布，后台读取方不会看到缺块的目录
+     */
+    private static final class AppendBuffer {
+        private volatile char[][] blocks = new char[4][];
+        private int length;
+
+        int length() {
+            return length;
+        }
+
+        void append(CharSequence text, int start, int end) {
+            int i = start;
+            while (i < end) {
+                int blockIndex = length / ADD_BLOCK_SIZE;
+                int blockOffset = length % ADD_BLOCK_SIZE;
+                char[][] current = blocks;
+                if (blockIndex == current.length) {
+                    char[][] grown = Arrays.copyOf(current, current.length * 2);
+                    grown[blockIndex] = new char[ADD_BLOCK_SIZE];
+                    blocks = current = grown;
+                } else if (current[blockIndex] == null) {
+                    current[blockIndex] = new char[ADD_BLOCK_SIZE];
+                }
+                int n = Math.min(end - i, ADD_BLOCK_SIZE - blockOffset);
+                char[] block = current[blockIndex];
+                if (text instanceof String) {
+                    ((String) text).getChars(i, i + n, block, blockOffset);
+                } else if (text instanceof GetChars) {
+                    ((GetChars) text).getChars(i, i + n, block, blockOffset);
+                } else {
+                    for (int k = 0; k < n; k++) {
+                        block[blockOffset + k] = text.charAt(i + k);
+                    }
+                }
+                i += n;
+                length += n;
+            }
+        }
+
+        char charAt(int index) {
+            return blocks[index / ADD_BLOCK_SIZE][index % ADD_BLOCK_SIZE];
+        }
+
+        void getChars(int start, int end, char[] dest, int destOffset) {
+            char[][] current = blocks;
+            int i = start;
+            while (i < end) {
+                int blockOffset = i % ADD_BLOCK_SIZE;
+                int n = Math.min(end - i, ADD_BLOCK_SIZE - blockOffset);
+                System.arraycopy(current[i / ADD_BLOCK_SIZE], blockOffset, dest, destOffset, n);
+                destOffset += n;
+                i += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import android.text.GetChars;
+
+import com.example.tnote.Utils.IOScheduler;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 文本查找与替换的核心算法，直接作用于 CharSequence（通常为分片表快照），不复制整个文档：
+ * - 字面量查找使用 Boyer–Moore–Horspool，文本按窗口经 getChars 批量取出，
+ *   窗口之间重叠 pattern 长度 - 1 个字符
+ * - 正则查找把 CharSequence 直接交给 Matcher，快照的顺序访问缓存使逐字符读取接近 O(1)
+ * - 匹配互不重叠，按位置递增输出；空匹配不输出
+ * 不依赖主线程，可在任意线程调用；通过取消令牌提前结束
+ */
+public final class TextSearcher {
+    private static final int WINDOW_CHARS = 64 * 1024;
+    private static final int SHIFT_TABLE_SIZE = 256;  // 按字符低 8 位分桶，同桶取最小位移，保证不漏匹配
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    /**
+     * 匹配输出
+     */
+    public interface MatchSink {
+        /**
+         * @return false 表示停止查找
+         */
+        boolean onMatch(int start, int end);
+    }
+
+    /**
+     * 查找条件
+     */
+    public static final class Query {
+        public final String pattern;
+        public final boolean regex;
+        public final boolean ignoreCase;
+        private final Pattern compiled; // 仅正则查找
+
+        /**
+         * @throws PatternSyntaxException 正则语法错误时抛出
+         */
+        public Query(String pattern, boolean regex, boolean ignoreCase) {
+            this.pattern = pattern;
+            this.regex = regex;
+            this.ignoreCase = ignoreCase;
+            int flags = Pattern.MULTILINE | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            this.compiled = regex ? Pattern.compile(pattern, flags) : null;
+        }
+
+        public boolean isEmpty() {
+            return pattern.isEmpty();
+        }
+    }
+
+    /**
+     * 替换结果：用 text 替换原文 [start, end)，其中包含 count 处匹配
+     */
+    public static final class Replacement {
+        public final int start;
+        public final int end;
+        public final String text;
+        public final int count;
+
+        Replacement(int start, int end, String text, int count) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.count = count;
+        }
+    }
+
+    private TextSearcher() {
+    }
+
+    /**
+     * 查找全部匹配
+     * @param text 被查找的文本，查找期间不得被修改
+     * @param query 查找条件
+     * @param token 取消令牌，可为 null
+     * @param sink 匹配输出
+     */
+    public static void find(CharSequence text, Query query, IOScheduler.CancellationToken token, MatchSink sink) {
+        if (query.isEmpty()) return;
+        if (query.regex) {
+            findRegex(text, query.compiled, token, sink);
+        } else {
+            findLiteral(text, query.pattern, query.ignoreCase, token, sink);
+        }
+    }
+
+    /**
+     * 替换全部匹配，结果只覆盖第一处到最后一处匹配之间的区间，供调用方一次性应用
+     * @param replacement 替换文本；正则查找时支持 $0-$9 引用分组，\ 转义下一个字符
+     * @return 替换结果，没有匹配或被取消时返回 null
+     */
+    public static Replacement replaceAll(CharSequence text, Query query, String replacement,
+                                         IOScheduler.CancellationToken token) {
+        if (query.isEmpty()) return null;
+        StringBuilder out = new StringBuilder();
+        int[] range = {-1, -1}; // 第一处匹配的起点、上一处匹配的终点
+        int[] count = {0};
+        if (query.regex) {
+            Matcher matcher = query.compiled.matcher(text);
+            while (matcher.find()) {
+                if (matcher.start() == matcher.end()) continue;
+                if (isCancelled(token, ++count[0])) return null;
+                appendGap(out, text, range, matcher.start());
+                appendExpanded(out, matcher, replacement);
+                range[1] = matcher.end();
+            }
+        } else {
+            findLiteral(text, query.pattern, query.ignoreCase, token, (start, end) -> {
+                count[0]++;
+                appendGap(out, text, range, start);
+                out.append(replacement);
+                range[1] = end;
+                return true;
+            });
+        }
+        if (count[0] == 0 || isCancelled(token, 0)) return null;
+        return new Replacement(range[0], range[1], out.toString(), count[0]);
+    }
+
+    /**
+     * 展开 [start, end) 处这一个匹配的替换文本。正则在全文上以该区间为 region 重新匹配（透明边界、不锚定边界），
+     * 前后断言、^ $ 与 \b 按全文上下文判断，结果与查找和全部替换一致
+     * @return 替换文本；该处已不再是同一匹配时返回 null
+     */
+    public static String replacementAt(CharSequence text, Query query, String replacement, int start, int end) {
+        if (!query.regex) return replacement;
+        Matcher matcher = query.compiled.matcher(text);
+        matcher.region(start, end);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        if (!matcher.lookingAt() || matcher.end() != end) return null;
+        StringBuilder out = new StringBuilder();
+        appendExpanded(out, matcher, replacement);
+        return out.toString();
+    }
+
+    /**
+     * Boyer–Moore–Horspool：从右向左比较，失配时按窗口末字符的位移表跳跃
+     */
+    static void findLiteral(CharSequence text, String pattern, boolean ignoreCase,
+                            IOScheduler.CancellationToken token, MatchSink sink) {
+        int m = pattern.length();
+        int n = text.length();
+        if (m == 0 || m > n) return;
+        char[] needle = new char[m];
+        for (int i = 0; i < m; i++) needle[i] = fold(pattern.charAt(i), ignoreCase);
+        int[] shift = new int[SHIFT_TABLE_SIZE];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) {
+            shift[needle[i] & (SHIFT_TABLE_SIZE - 1)] = m - 1 - i;
+        }
+
+        char[] window = new char[Math.max(WINDOW_CHARS, 2 * m)];
+        int windowStart = 0;
+        int windowLength = 0;
+        int position = 0; // 当前对齐位置（匹配起点）
+        while (position + m <= n) {
+            if (isCancelled(token, 0)) return;
+            if (position + m > windowStart + windowLength) {
+                // 从当前对齐位置重新取窗口，未比较完的字符自然与上一窗口重叠
+                windowStart = position;
+                windowLength = Math.min(window.length, n - position);
+                copyChars(text, windowStart, windowStart + windowLength, window);
+            }
+            int lastAlignment = windowStart + windowLength - m;
+            while (position <= lastAlignment) {
+                int base = position - windowStart;
+                int j = m - 1;
+                while (j >= 0 && fold(window[base + j], ignoreCase) == needle[j]) j--;
+                if (j < 0) {
+                    if (!sink.onMatch(position, position + m)) return;
+                    position += m; // 匹配互不重叠
+                } else {
+                    position += shift[fold(window[base + m - 1], ignoreCase) & (SHIFT_TABLE_SIZE - 1)];
+                }
+            }
+        }
+    }
+
+    static void findRegex(CharSequence text, Pattern pattern, IOScheduler.CancellationToken token, MatchSink sink) {
+        Matcher matcher = pattern.matcher(text);
+        int found = 0;
+        while (matcher.find()) {
+            if (matcher.start() == matcher.end()) continue; // 空匹配无法高亮，跳过
+            if (isCancelled(token, ++found)) return;
+            if (!sink.onMatch(matcher.start(), matcher.end())) return;
+        }
+    }
+
+    /**
+     * 追加上一处匹配终点（首次为当前匹配起点）到当前匹配起点之间的原文
+     */
+    private static void appendGap(StringBuilder out, CharSequence text, int[] range, int matchStart) {
+        if (range[0] < 0) {
+            range[0] = matchStart;
+        } else {
+            out.append(text, range[1], matchStart);
+        }
+    }
+
+    /**
+     * 展开替换文本中的分组引用
+     */
+    private static void appendExpanded(StringBuilder out, Matcher matcher, String replacement) {
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\' && i + 1 < replacement.length()) {
+                out.append(replacement.charAt(++i));
+            } else if (c == '$' && i + 1 < replacement.length()
+                    && Character.isDigit(replacement.charAt(i + 1))
+                    && replacement.charAt(i + 1) - '0' <= matcher.groupCount()) {
+                String group = matcher.group(replacement.charAt(++i) - '0');
+                if (group != null) out.append(group);
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static char fold(char c, boolean ignoreCase) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    private static boolean isCancelled(IOScheduler.CancellationToken token, int counter) {
+        return token != null && counter % CANCEL_CHECK_INTERVAL == 0 && token.isCancelled();
+    }
+
+    private static void copyChars(CharSequence text, int start, int end, char[] dest) {
+        if (text instanceof GetChars) {
+            ((GetChars) text).getChars(start, end, dest, 0);
+        } else if (text instanceof String) {
+            ((String) text).getChars(start, end, dest, 0);
+        } else {
+            for (int i = start; i < end; i++) dest[i - start] = text.charAt(i);
+        }
+    }
+}
+// 该文件实现编辑器查找替换的字面量与正则匹配
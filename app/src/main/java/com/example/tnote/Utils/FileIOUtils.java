@@ -1,15 +1,32 @@
 package com.example.tnote.Utils;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
+import android.text.GetChars;
+
+import com.example.tnote.Utils.EditorUtils.PieceTable;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 文件操作工具类，提供：
@@ -19,63 +36,442 @@ import java.util.concurrent.Future;
  */
 public class FileIOUtils {
     private static final String TAG = "FileIOUtils";
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private static Future<?> currentWriteTask = null;
+    /**
+     * 超过该大小的文件以只读内存映射方式查看，不整体读入内存；
+     * 远高于分片表、流式加载与合并保存所面向的可编辑范围（数十 MB 以内仍可编辑）
+     */
+    public static final long LARGE_FILE_THRESHOLD = 64L * 1024 * 1024;
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+    private static final int FIRST_CHUNK_CHARS = 16 * 1024;   // 首块较小，尽快显示首屏
+    private static final int MAX_CHUNK_CHARS = 1024 * 1024;
+    private static final int WRITE_CHUNK_CHARS = 8 * 1024;    // 保存时每次编码的字符数
+    private static final String TEMP_SUFFIX = ".tnote-save";
+    private static final Charset LEGACY_CHARSET = Charset.isSupported("GB18030")
+            ? Charset.forName("GB18030") : StandardCharsets.ISO_8859_1;
+    private static final ThreadLocal<Map<Charset, CharsetDecoder>> DECODERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS = ThreadLocal.withInitial(HashMap::new);
+
     public interface FileReadCallback {
         void onComplete(String content);
     }
 
+    /**
+     * 流式读取回调（均在主线程）
+     */
+    public interface DocumentStreamCallback {
+        /**
+         * 按文件顺序交付的一段已解码文本
+         */
+        void onChunk(CharSequence chunk);
+
+        /**
+         * 读取结束；document 的内容与所有段依次拼接的结果一致（文件尚不存在时为空文档）
+         */
+        void onComplete(PieceTable document, Encoding encoding);
+
+        /**
+         * 读取中途失败；之前交付的段只是文件的一部分，不能当作完整内容保存（否则会截断文件）
+         */
+        void onError(IOException error);
+    }
+
+    /**
+     * 文件的文本编码，保存时按原编码写回
+     */
+    public static final class Encoding {
+        public static final Encoding DEFAULT = new Encoding(StandardCharsets.UTF_8, false);
+
+        public final Charset charset;
+        public final boolean bom; // 文件是否以 BOM 开头
+
+        public Encoding(Charset charset, boolean bom) {
+            this.charset = charset;
+            this.bom = bom;
+        }
+    }
+
     public interface FileWriteCallback {
         void onComplete(boolean success);
     }
 
+    /**
+     * 是否应以大文件只读模式打开
+     */
+    public static boolean isLargeFile(File file) {
+        return file.length() > LARGE_FILE_THRESHOLD;
+    }
+
     /**
      * 异步读取文件内容
      * @param file 目标文件
      * @param callback 读取完成回调
      */
     public static void readFileAsync(File file, FileReadCallback callback) {
-        Executors.newSingleThreadExecutor().execute(() -> {
-            try {
-                String content = new String(Files.readAllBytes(file.toPath()));
-                postToMainThread(() -> callback.onComplete(content));
-            } catch (IOException e) {
-                postToMainThread(() -> callback.onComplete(""));
+        readDocumentStreaming(file, new DocumentStreamCallback() {
+            @Override
+            public void onChunk(CharSequence chunk) {
+            }
+
+            @Override
+            public void onComplete(PieceTable document, Encoding encoding) {
+                callback.onComplete(document.toString());
+            }
+
+            @Override
+            public void onError(IOException error) {
+                callback.onComplete(""); // 读取失败不返回部分内容
+            }
+        });
+    }
+
+    /**
+     * 流式读取文件并构建分片表文档：
+     * - 按固定大小分块读取，用复用的 CharsetDecoder 直接解码进文档的原始缓冲区
+     * - 根据 BOM 识别 UTF-8/UTF-16，无 BOM 时校验开头是否为合法 UTF-8，否则按旧式编码（GB18030）解码
+     * - 每解码出一段即在主线程回调 onChunk，首屏在第一块到达后即可显示
+     * 各段拼接起来与最终文档内容一致
+     * @param file 目标文件
+     * @param callback 回调（主线程）
+     * @return 取消令牌，切换文件时取消；取消后不再产生任何回调；读取失败时以 onError 代替 onComplete
+     */
+    public static IOScheduler.CancellationToken readDocumentStreaming(File file, DocumentStreamCallback callback) {
+        IOScheduler.CancellationToken token = new IOScheduler.CancellationToken();
+        IOScheduler.submit(IOScheduler.Priority.INTERACTIVE, keyOf(file), token,
+                () -> streamDocument(file, callback, token));
+        return token;
+    }
+
+    private static void streamDocument(File file, DocumentStreamCallback callback, IOScheduler.CancellationToken token) {
+        char[] buffer = new char[0];
+        int length = 0;
+        Encoding encoding = Encoding.DEFAULT;
+        IOException failure = null;
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            ByteBuffer bytes = ByteBuffer.allocate(READ_CHUNK_BYTES);
+            readFully(channel, bytes);
+            bytes.flip();
+            encoding = detectEncoding(bytes);
+            bytes.position(encoding.bom ? bomLength(encoding.charset) : 0);
+
+            // UTF-16 每个字符至少 2 字节，其余支持的编码解码后字符数不超过字节数
+            long size = channel.size();
+            long capacity = encoding.charset.name().startsWith("UTF-16") ? size / 2 + 1 : size;
+            if (capacity > Integer.MAX_VALUE) throw new IOException("File too large: " + size);
+            buffer = new char[(int) capacity];
+
+            CharsetDecoder decoder = decoderFor(encoding.charset);
+            int delivered = 0;
+            int chunkTarget = FIRST_CHUNK_CHARS;
+            boolean endOfInput = false;
+            while (!token.isCancelled()) {
+                CharBuffer chars = CharBuffer.wrap(buffer, length, buffer.length - length);
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput && !result.isOverflow()) result = decoder.flush(chars);
+                length = chars.position();
+                if (result.isOverflow()) {
+                    // 文件在读取期间变长，扩容后继续（已交付的段仍引用旧数组，内容不变）
+                    buffer = Arrays.copyOf(buffer, buffer.length + Math.max(buffer.length / 2, READ_CHUNK_BYTES));
+                    continue;
+                }
+                if (length - delivered >= chunkTarget || (endOfInput && length > delivered)) {
+                    deliverChunk(callback, token, buffer, delivered, length);
+                    delivered = length;
+                    chunkTarget = Math.min(chunkTarget * 2, MAX_CHUNK_CHARS); // 首块小，后续逐步加大
+                }
+                if (endOfInput) break;
+                bytes.compact();
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
             }
+        } catch (FileNotFoundException e) {
+            if (file.exists()) failure = e; // 尚不存在的文件按空文档打开，保存时创建
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (token.isCancelled()) return;
+        if (failure != null) {
+            Log.e(TAG, "Error reading file: " + failure.getMessage());
+            IOException error = failure;
+            postToMainThread(() -> {
+                if (!token.isCancelled()) callback.onError(error);
+            });
+            return;
+        }
+        // 多字节文本（如中文）解码后数组明显偏大，收缩一次以免长期占用
+        if (length < buffer.length - buffer.length / 4) {
+            buffer = Arrays.copyOf(buffer, length);
+        }
+        PieceTable document = new PieceTable(buffer, length);
+        Encoding result = encoding;
+        postToMainThread(() -> {
+            if (!token.isCancelled()) callback.onComplete(document, result);
         });
     }
 
+    private static void deliverChunk(DocumentStreamCallback callback, IOScheduler.CancellationToken token, char[] buffer, int start, int end) {
+        // 只读引用已写完的区间，后续解码只会写入该区间之后
+        CharSequence chunk = CharBuffer.wrap(buffer, start, end - start);
+        postToMainThread(() -> {
+            if (!token.isCancelled()) callback.onChunk(chunk);
+        });
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+            // 读满首块，供编码识别
+        }
+    }
+
+    /**
+     * 识别文本编码：优先 BOM；无 BOM 时首块为合法 UTF-8（允许末尾被截断的多字节序列）即按 UTF-8，
+     * 否则按旧式编码处理
+     * @param head 文件开头的字节（position 到 limit），不会被修改
+     */
+    public static Encoding detectEncoding(ByteBuffer head) {
+        int n = head.remaining();
+        int p = head.position();
+        if (n >= 3 && (head.get(p) & 0xFF) == 0xEF && (head.get(p + 1) & 0xFF) == 0xBB && (head.get(p + 2) & 0xFF) == 0xBF) {
+            return new Encoding(StandardCharsets.UTF_8, true);
+        }
+        if (n >= 2 && (head.get(p) & 0xFF) == 0xFF && (head.get(p + 1) & 0xFF) == 0xFE) {
+            return new Encoding(StandardCharsets.UTF_16LE, true);
+        }
+        if (n >= 2 && (head.get(p) & 0xFF) == 0xFE && (head.get(p + 1) & 0xFF) == 0xFF) {
+            return new Encoding(StandardCharsets.UTF_16BE, true);
+        }
+        return isValidUtf8(head) ? Encoding.DEFAULT : new Encoding(LEGACY_CHARSET, false);
+    }
+
+    private static boolean isValidUtf8(ByteBuffer head) {
+        int i = head.position();
+        int limit = head.limit();
+        while (i < limit) {
+            int b = head.get(i) & 0xFF;
+            int continuation;
+            if (b < 0x80) {
+                i++;
+                continue;
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= limit) return true; // 首块末尾截断
+                if ((head.get(i + k) & 0xC0) != 0x80) return false;
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    /**
+     * 该编码 BOM 的字节数
+     */
+    public static int bomLength(Charset charset) {
+        return charset == StandardCharsets.UTF_8 ? 3 : 2;
+    }
+
+    /**
+     * 每个 IO 线程按编码复用解码器
+     */
+    private static CharsetDecoder decoderFor(Charset charset) {
+        Map<Charset, CharsetDecoder> decoders = DECODERS.get();
+        CharsetDecoder decoder = decoders.get(charset);
+        if (decoder == null) {
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoders.put(charset, decoder);
+        }
+        return decoder.reset();
+    }
+
     /**
      * 异步写入文件内容
+     * 内容按块编码写入临时文件，fsync 后原子替换目标文件，写入中途失败或进程被杀都不会破坏原文件
      * @param file 目标文件
-     * @param content 待写入内容
+     * @param content 待写入内容（写入期间不得被修改，编辑器应传入 {@link PieceTable.Snapshot}）
      * @param callback 写入完成回调
      * @return 是否成功启动写入任务
      */
-    public static boolean writeFile(File file, String content, FileWriteCallback callback) {
+    public static boolean writeFile(File file, CharSequence content, FileWriteCallback callback) {
+        return writeFile(file, content, Encoding.DEFAULT, callback);
+    }
 
-        if (currentWriteTask != null && !currentWriteTask.isDone()) {
-            currentWriteTask.cancel(true); // 取消之前的任务
-        }
-        currentWriteTask = executor.submit(() -> {
+    /**
+     * 按指定编码异步写入文件内容，encoding.bom 为真时先写出 BOM
+     * @param file 目标文件
+     * @param content 待写入内容（写入期间不得被修改，编辑器应传入快照）
+     * @param encoding 文件编码（通常为读取时识别出的编码）
+     * @param callback 写入完成回调
+     * @return 是否成功启动写入任务
+     */
+    public static boolean writeFile(File file, CharSequence content, Encoding encoding, FileWriteCallback callback) {
+        return writeFile(file, content, encoding, null, callback);
+    }
+
+    /**
+     * 按指定编码异步写入文件内容，并在替换完成后立即于 IO 线程执行 onCommitted
+     * （早于同一文件的后续任务，可用于记录"磁盘上的文件对应哪个版本"）
+     * @param file 目标文件
+     * @param content 待写入内容（写入期间不得被修改，编辑器应传入快照）
+     * @param encoding 文件编码
+     * @param onCommitted 写入成功后在 IO 线程执行，可为 null
+     * @param callback 写入完成回调
+     * @return 是否成功启动写入任务
+     */
+    public static boolean writeFile(File file, CharSequence content, Encoding encoding,
+                                    Runnable onCommitted, FileWriteCallback callback) {
+        // 同一文件的读写按提交顺序串行，后一次保存等前一次写完再开始，不会交错写出
+        IOScheduler.submit(IOScheduler.Priority.SAVE, keyOf(file), () -> {
             boolean success = false;
             try {
-                Files.write(file.toPath(), content.getBytes());
+                writeAtomically(file, content, encoding);
                 success = true;
+                if (onCommitted != null) onCommitted.run();
             } catch (IOException e) {
                 Log.e(TAG, "Error writing file: " + e.getMessage());
             }
             boolean finalSuccess = success;
-            postToMainThread(() -> {
-                Log.e(TAG, "Error writing file: " +"writeback!!!!!!" );
-                callback.onComplete(finalSuccess);
-            });
+            postToMainThread(() -> callback.onComplete(finalSuccess));
         });
         return true;
     }
 
+    /**
+     * 写入同目录下的临时文件（保证与目标在同一文件系统），落盘后 rename 覆盖目标
+     */
+    static void writeAtomically(File file, CharSequence content, Encoding encoding) throws IOException {
+        File target = file.getAbsoluteFile();
+        File temp = new File(target.getParentFile(), "." + target.getName() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 FileChannel channel = out.getChannel()) {
+                encodeTo(channel, content, encoding);
+                channel.force(true); // 数据落盘后才替换，断电时要么是旧文件要么是完整的新文件
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!temp.delete() && temp.exists()) Log.e(TAG, "Cannot delete temp file: " + temp);
+            throw e;
+        }
+        syncDirectory(target.getParentFile());
+    }
+
+    /**
+     * 按块把内容编码写入通道，内存占用与文档大小无关：一个字符块 + 一个字节块
+     */
+    private static void encodeTo(FileChannel channel, CharSequence content, Encoding encoding) throws IOException {
+        CharsetEncoder encoder = encoderFor(encoding.charset);
+        char[] chars = new char[WRITE_CHUNK_CHARS + 1];
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.ceil(chars.length * encoder.maxBytesPerChar()));
+        int length = content.length();
+        int offset = 0;
+        int prefix = 0;
+        if (encoding.bom) chars[prefix++] = '\uFEFF'; // BOM 由编码器按目标编码输出
+        while (true) {
+            int end = Math.min(length, offset + WRITE_CHUNK_CHARS);
+            copyChars(content, offset, end, chars, prefix);
+            boolean last = end == length;
+            CharBuffer input = CharBuffer.wrap(chars, 0, prefix + end - offset);
+            CoderResult result;
+            do {
+                result = encoder.encode(input, bytes, last);
+                if (!result.isOverflow() && last) result = encoder.flush(bytes);
+                drain(channel, bytes);
+            } while (result.isOverflow());
+            // 块末尾的高代理项留到下一块与低代理项一起编码
+            prefix = input.remaining();
+            if (prefix > 0) chars[0] = input.get();
+            offset = end;
+            if (last) return;
+        }
+    }
+
+    /**
+     * 内容摘要（SHA-256，按字符计算并带上编码），用于判断待保存内容与上次写出的内容是否相同
+     */
+    static byte[] contentDigest(CharSequence content, Encoding encoding) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 所有 Android 版本都提供 SHA-256
+        }
+        digest.update(encoding.charset.name().getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) (encoding.bom ? 1 : 0));
+        char[] chars = new char[WRITE_CHUNK_CHARS];
+        byte[] bytes = new byte[WRITE_CHUNK_CHARS * 2];
+        int length = content.length();
+        for (int offset = 0; offset < length; offset += WRITE_CHUNK_CHARS) {
+            int end = Math.min(length, offset + WRITE_CHUNK_CHARS);
+            copyChars(content, offset, end, chars, 0);
+            for (int i = 0; i < end - offset; i++) {
+                bytes[2 * i] = (byte) (chars[i] >>> 8);
+                bytes[2 * i + 1] = (byte) chars[i];
+            }
+            digest.update(bytes, 0, 2 * (end - offset));
+        }
+        return digest.digest();
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+
+    private static void copyChars(CharSequence content, int start, int end, char[] dest, int destOffset) {
+        if (content instanceof GetChars) {
+            ((GetChars) content).getChars(start, end, dest, destOffset);
+        } else if (content instanceof String) {
+            ((String) content).getChars(start, end, dest, destOffset);
+        } else {
+            for (int i = start; i < end; i++) dest[destOffset++] = content.charAt(i);
+        }
+    }
+
+    /**
+     * rename 之后同步目录项，部分平台不支持以只读方式打开目录，失败时忽略
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Log.w(TAG, "Directory sync skipped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 每个 IO 线程按编码复用编码器
+     */
+    private static CharsetEncoder encoderFor(Charset charset) {
+        Map<Charset, CharsetEncoder> encoders = ENCODERS.get();
+        CharsetEncoder encoder = encoders.get(charset);
+        if (encoder == null) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoders.put(charset, encoder);
+        }
+        return encoder.reset();
+    }
+
+    /**
+     * 文件在调度器中的串行化 key
+     */
+    public static String keyOf(File file) {
+        return file.getAbsolutePath();
+    }
+
     private static void postToMainThread(Runnable action) {
-        new Handler(Looper.getMainLooper()).post(action);
+        IOScheduler.postToMain(action);
     }
 }
 // 该文件封装所有文件IO操作，确保线程安全
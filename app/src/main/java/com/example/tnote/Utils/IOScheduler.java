@@ -0,0 +1,240 @@
+package com.example.tnote.Utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全局 IO 调度器，取代各处零散的线程池：
+ * - 三条优先级通道：交互读取 > 保存 > 后台扫描/索引，空闲线程总是先取高优先级任务
+ * - 线程数有上限，后台任务最多占用 MAX_THREADS - 1 个线程，始终留一个给读取和保存
+ * - 同一 key（通常为文件路径）的任务按提交顺序串行执行，读写同一文件不会交错；
+ *   高优先级任务排在同 key 尚未开始的低优先级任务之后时，前面的任务提升到它的通道，避免等待后台配额
+ * - 任务通过 {@link CancellationToken} 取消：排队中的任务直接丢弃，运行中的任务自行检查后退出
+ * - 回到主线程的回调先放入队列，由一次 Handler 投递批量执行
+ */
+public final class IOScheduler {
+    private static final String TAG = "IOScheduler";
+    private static final int MAX_THREADS = 3;
+
+    /**
+     * 任务优先级，数值越小越优先
+     */
+    public enum Priority {
+        INTERACTIVE, // 用户正在等待的读取
+        SAVE,        // 保存
+        BACKGROUND   // 扫描、建索引、解释器执行等长任务
+    }
+
+    /**
+     * 取消令牌：可被多个任务共享，取消后排队中的任务不再执行，运行中的任务应尽快返回
+     */
+    public static final class CancellationToken {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final Map<Priority, ArrayDeque<Entry>> lanes = new EnumMap<>(Priority.class);
+    private static final Map<String, KeyQueue> keyQueues = new HashMap<>();
+    private static int threadCount;
+    private static int idleThreads;
+    private static int wakeups;        // 已唤醒但尚未取任务的空闲线程数
+    private static int runningBackground;
+
+    // 主线程批量投递
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final Object mainLock = new Object();
+    private static List<Runnable> mainQueue = new ArrayList<>();
+    private static boolean drainPosted;
+
+    static {
+        for (Priority priority : Priority.values()) lanes.put(priority, new ArrayDeque<>());
+    }
+
+    private IOScheduler() {
+    }
+
+    /**
+     * 提交任务
+     * @param priority 优先级通道
+     * @param key 串行化的 key，相同 key 的任务依次执行；为 null 时不串行
+     * @param token 取消令牌，为 null 时新建
+     * @param task 任务体
+     * @return 任务的取消令牌
+     */
+    public static CancellationToken submit(Priority priority, String key, CancellationToken token, Runnable task) {
+        Entry entry = new Entry(priority, key, token != null ? token : new CancellationToken(), task);
+        synchronized (lock) {
+            if (key != null) {
+                KeyQueue queue = keyQueues.get(key);
+                if (queue != null) {
+                    queue.pending.addLast(entry); // 同 key 已有任务在执行或排队，等它完成
+                    promoteLocked(queue.head, entry.priority);
+                    return entry.token;
+                }
+                queue = new KeyQueue();
+                queue.head = entry;
+                keyQueues.put(key, queue);
+            }
+            enqueueLocked(entry);
+        }
+        return entry.token;
+    }
+
+    public static CancellationToken submit(Priority priority, String key, Runnable task) {
+        return submit(priority, key, null, task);
+    }
+
+    /**
+     * 在主线程执行回调；投递执行前陆续到达的回调合并为一次 Handler 投递，按提交顺序执行
+     */
+    public static void postToMain(Runnable action) {
+        synchronized (mainLock) {
+            mainQueue.add(action);
+            if (drainPosted) return;
+            drainPosted = true;
+        }
+        mainHandler.post(IOScheduler::drainMainQueue);
+    }
+
+    private static void drainMainQueue() {
+        List<Runnable> batch;
+        synchronized (mainLock) {
+            batch = mainQueue;
+            mainQueue = new ArrayList<>();
+            drainPosted = false;
+        }
+        for (Runnable action : batch) action.run();
+    }
+
+    private static void enqueueLocked(Entry entry) {
+        lanes.get(entry.lane).addLast(entry);
+        if (idleThreads > wakeups) {
+            wakeups++;
+            lock.notify();
+        } else if (threadCount < MAX_THREADS) {
+            threadCount++;
+            Thread worker = new Thread(IOScheduler::workLoop, "io-" + threadCount);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * 尚未开始的任务提升到更高优先级的通道；已在运行的任务不受影响
+     */
+    private static void promoteLocked(Entry entry, Priority priority) {
+        if (entry.started || priority.ordinal() >= entry.lane.ordinal()) return;
+        lanes.get(entry.lane).remove(entry);
+        entry.lane = priority;
+        enqueueLocked(entry);
+    }
+
+    /**
+     * 取出下一个可运行的任务：按优先级，后台任务受并发上限约束
+     */
+    private static Entry pollLocked() {
+        Entry entry = lanes.get(Priority.INTERACTIVE).pollFirst();
+        if (entry == null) entry = lanes.get(Priority.SAVE).pollFirst();
+        if (entry == null && runningBackground < MAX_THREADS - 1) {
+            entry = lanes.get(Priority.BACKGROUND).pollFirst();
+        }
+        if (entry != null) {
+            entry.started = true;
+            if (entry.lane == Priority.BACKGROUND) runningBackground++;
+        }
+        return entry;
+    }
+
+    private static void workLoop() {
+        while (true) {
+            Entry entry;
+            synchronized (lock) {
+                while ((entry = pollLocked()) == null) {
+                    idleThreads++;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ignored) {
+                        // 工作线程不会被中断，继续等待
+                    } finally {
+                        idleThreads--;
+                        if (wakeups > 0) wakeups--;
+                    }
+                }
+            }
+            try {
+                if (!entry.token.isCancelled()) entry.task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task failed: " + e.getMessage(), e);
+            } finally {
+                finish(entry);
+            }
+        }
+    }
+
+    /**
+     * 任务结束：释放后台配额，并让同 key 的下一个任务进入通道
+     */
+    private static void finish(Entry entry) {
+        synchronized (lock) {
+            if (entry.lane == Priority.BACKGROUND) runningBackground--; // 当前线程随后会继续取任务
+            if (entry.key == null) return;
+            KeyQueue queue = keyQueues.get(entry.key);
+            Entry next;
+            while ((next = queue.pending.pollFirst()) != null && next.token.isCancelled()) {
+                // 已取消的排队任务直接丢弃
+            }
+            if (next == null) {
+                keyQueues.remove(entry.key);
+                return;
+            }
+            // 下一个任务按它之后排队者中的最高优先级入队
+            for (Entry waiter : queue.pending) {
+                if (!waiter.token.isCancelled() && waiter.priority.ordinal() < next.lane.ordinal()) next.lane = waiter.priority;
+            }
+            queue.head = next;
+            enqueueLocked(next);
+        }
+    }
+
+    private static final class Entry {
+        final Priority priority;
+        final String key;
+        final CancellationToken token;
+        final Runnable task;
+        Priority lane;   // 实际所在的通道，可能因同 key 的等待者而提升
+        boolean started; // 已被工作线程取走
+
+        Entry(Priority priority, String key, CancellationToken token, Runnable task) {
+            this.priority = priority;
+            this.key = key;
+            this.token = token;
+            this.task = task;
+            this.lane = priority;
+        }
+    }
+
+    /**
+     * 同一 key 的任务：head 已进入通道或正在运行，pending 在它之后依次等待
+     */
+    private static final class KeyQueue {
+        Entry head;
+        final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    }
+}
+// 该文件实现全局的优先级IO调度
@@ -1,6 +1,8 @@
 // Session.java - 定义终端会话通用接口
 package com.example.tnote.Utils.Interfaces;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * 会话接口，定义终端会话的基本操作
  */
@@ -44,5 +46,21 @@ public interface Session {
          * @param error 错误信息
          */
         void onError(String error);
+
+        /**
+         * 接收原始字节输出，由会话的读取线程调用，实现方可以阻塞以限制积压
+         * 默认按 UTF-8 解码后转交 onOutputReceived / onError
+         * @param buffer 读取缓冲区，回调返回后会被复用
+         * @param length 有效字节数
+         * @param isError 是否来自错误流
+         */
+        default void onOutputBytes(byte[] buffer, int length, boolean isError) {
+            String text = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            if (isError) {
+                onError(text);
+            } else {
+                onOutputReceived(text);
+            }
+        }
     }
 }
\ No newline at end of file
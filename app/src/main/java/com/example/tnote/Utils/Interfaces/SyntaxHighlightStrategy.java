@@ -1,7 +1,42 @@
 package com.example.tnote.Utils.Interfaces;
 
-import android.text.Editable;
+import android.graphics.Typeface;
 
+import com.example.tnote.Utils.EditorUtils.HilightStrategy.TokenBuffer;
+
+/**
+ * 语法高亮策略接口
+ * 高亮以行为单位进行：每行从上一行行尾的词法状态开始，返回本行行尾的词法状态。
+ * 管理器据此只重新分析改动涉及的行，以及状态发生变化的后续行。
+ * 词法分析在后台线程执行，只输出 token（起点、长度、类型），Span 由管理器在主线程按差异应用。
+ */
 public interface SyntaxHighlightStrategy {
-    void highlight(Editable editable);
+    /**
+     * 文档开头的初始词法状态
+     */
+    int INITIAL_STATE = 0;
+
+    /**
+     * 分析单行 [lineStart, lineEnd)，lineEnd 不包含换行符
+     * 可能在后台线程调用，实现不得访问 UI 或 Editable
+     * @param text 文本（通常为文档片段的副本）
+     * @param lineStart 行起点
+     * @param lineEnd 行终点
+     * @param startState 上一行行尾的词法状态
+     * @param tokens 输出 token，偏移相对于 text
+     * @return 本行行尾的词法状态
+     */
+    int tokenizeLine(CharSequence text, int lineStart, int lineEnd, int startState, TokenBuffer tokens);
+
+    /**
+     * token 类型对应的前景色
+     */
+    int getColor(int tokenType);
+
+    /**
+     * token 类型对应的字体样式（Typeface.NORMAL / BOLD / ITALIC）
+     */
+    default int getTextStyle(int tokenType) {
+        return Typeface.NORMAL;
+    }
 }
@@ -0,0 +1,239 @@
+package com.example.tnote.Utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个文件的延迟合并保存（write-behind），代替每次保存都提交一个完整写入：
+ * - 请求先等待 DEBOUNCE_MS，窗口内陆续到达的保存合并为一次写入；窗口从最早的请求算起，持续输入也不会一直推迟
+ * - 同一时刻最多一个写入在进行、一个在等待；等待期间的新保存直接替换等待中的内容，
+ *   被替换请求的回调随替换它的那次写入一起通知
+ * - 写入前计算内容摘要，与上次写出（或读入）的摘要相同且磁盘文件未被改动时跳过写入
+ * - 记录保存延迟（从请求到落盘）与合并、跳过次数
+ * 线程约定：除构造外所有公开方法都在主线程调用；磁盘状态只在同一文件 key 的 IO 任务中读写
+ */
+public final class SaveCoalescer {
+    private static final String TAG = "SaveCoalescer";
+    private static final long DEBOUNCE_MS = 250;
+
+    private final File file;
+    private final String key;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable startPendingRunnable = this::startPending;
+
+    // 主线程状态
+    private Request inFlight;
+    private Request pending;
+    private int requestedCount;
+    private int writtenCount;
+    private int coalescedCount;
+    private int skippedCount;
+    private int failedCount;
+    private long lastLatencyMs;
+    private long maxLatencyMs;
+    private long totalLatencyMs;
+
+    // 磁盘上内容的摘要，以及对应的文件长度与修改时间（IO 线程，按文件 key 串行访问）
+    private byte[] diskDigest;
+    private long diskLength = -1;
+    private long diskLastModified = -1;
+
+    public SaveCoalescer(File file) {
+        this.file = file;
+        this.key = FileIOUtils.keyOf(file);
+    }
+
+    /**
+     * 记录刚读入的内容作为磁盘基准，之后未修改就保存时可以跳过写入
+     * @param content 读入的内容（不得再被修改，编辑器应传入快照）
+     * @param encoding 读入时识别出的编码
+     */
+    public void setBaseline(CharSequence content, FileIOUtils.Encoding encoding) {
+        // 与保存同一 key，按保存优先级执行：刚打开就保存时不必等待后台配额
+        IOScheduler.submit(IOScheduler.Priority.SAVE, key, () -> {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            byte[] digest = FileIOUtils.contentDigest(content, encoding);
+            if (diskDigest == null) { // 基准计算期间已完成过保存时，以保存结果为准
+                diskDigest = digest;
+                diskLength = length;
+                diskLastModified = lastModified;
+            }
+        });
+    }
+
+    /**
+     * 请求保存
+     * @param content 待写入内容（写入期间不得被修改，编辑器应传入快照）
+     * @param encoding 文件编码
+     * @param onCommitted 内容已在磁盘上（写入成功或内容未变而跳过）时在 IO 线程执行，可为 null；
+     *                    请求被后续保存替换时不执行
+     * @param callback 完成回调（主线程）；同一回调对象在一次写入中只通知一次
+     */
+    public void save(CharSequence content, FileIOUtils.Encoding encoding, Runnable onCommitted,
+                     FileIOUtils.FileWriteCallback callback) {
+        requestedCount++;
+        Request request = new Request(content, encoding, onCommitted, SystemClock.uptimeMillis());
+        request.addCallback(callback);
+        if (pending == null) {
+            pending = request;
+            if (inFlight == null) scheduleStart(DEBOUNCE_MS);
+        } else {
+            // 等待中的请求尚未开始，直接换成最新内容，延迟从最早的请求算起
+            coalescedCount++;
+            pending.content = content;
+            pending.encoding = encoding;
+            pending.onCommitted = onCommitted;
+            pending.addCallback(callback);
+        }
+    }
+
+    /**
+     * 没有正在进行或等待中的写入
+     */
+    public boolean isIdle() {
+        return inFlight == null && pending == null;
+    }
+
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * 被后续保存替换、没有单独写入的请求数
+     */
+    public int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * 内容与磁盘相同而跳过写入的次数
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    public long getAverageLatencyMs() {
+        int completed = writtenCount + skippedCount;
+        return completed == 0 ? 0 : totalLatencyMs / completed;
+    }
+
+    /**
+     * 去抖窗口结束后开始等待中的写入
+     */
+    private void scheduleStart(long delayMs) {
+        mainHandler.removeCallbacks(startPendingRunnable);
+        if (delayMs <= 0) {
+            startPending();
+        } else {
+            mainHandler.postDelayed(startPendingRunnable, delayMs);
+        }
+    }
+
+    private void startPending() {
+        if (inFlight != null || pending == null) return;
+        Request next = pending;
+        pending = null;
+        start(next);
+    }
+
+    private void start(Request request) {
+        inFlight = request;
+        CharSequence content = request.content;
+        FileIOUtils.Encoding encoding = request.encoding;
+        Runnable onCommitted = request.onCommitted;
+        IOScheduler.submit(IOScheduler.Priority.SAVE, key, () -> {
+            Outcome outcome = Outcome.FAILED;
+            try {
+                byte[] digest = FileIOUtils.contentDigest(content, encoding);
+                if (isOnDisk(digest)) {
+                    outcome = Outcome.SKIPPED;
+                } else {
+                    diskDigest = null; // 写入中途失败时磁盘状态未知
+                    FileIOUtils.writeAtomically(file, content, encoding);
+                    diskDigest = digest;
+                    diskLength = file.length();
+                    diskLastModified = file.lastModified();
+                    outcome = Outcome.WRITTEN;
+                }
+                if (onCommitted != null) onCommitted.run();
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing file: " + e.getMessage());
+            }
+            Outcome result = outcome;
+            IOScheduler.postToMain(() -> finish(request, result));
+        });
+    }
+
+    private boolean isOnDisk(byte[] digest) {
+        return diskDigest != null && Arrays.equals(diskDigest, digest)
+                && file.length() == diskLength && file.lastModified() == diskLastModified;
+    }
+
+    private void finish(Request request, Outcome outcome) {
+        inFlight = null;
+        if (outcome == Outcome.FAILED) {
+            failedCount++;
+        } else {
+            if (outcome == Outcome.WRITTEN) writtenCount++;
+            else skippedCount++;
+            lastLatencyMs = SystemClock.uptimeMillis() - request.requestedAt;
+            maxLatencyMs = Math.max(maxLatencyMs, lastLatencyMs);
+            totalLatencyMs += lastLatencyMs;
+        }
+        Log.d(TAG, file.getName() + " " + outcome + " in " + lastLatencyMs + "ms (requested " + requestedCount
+                + ", written " + writtenCount + ", coalesced " + coalescedCount + ", skipped " + skippedCount + ")");
+        // 先安排下一次写入，再通知回调，回调中发起的保存会进入等待队列
+        if (pending != null) scheduleStart(pending.requestedAt + DEBOUNCE_MS - SystemClock.uptimeMillis());
+        boolean success = outcome != Outcome.FAILED;
+        for (FileIOUtils.FileWriteCallback callback : request.callbacks) callback.onComplete(success);
+    }
+
+    private enum Outcome {
+        WRITTEN, SKIPPED, FAILED
+    }
+
+    private static final class Request {
+        CharSequence content;
+        FileIOUtils.Encoding encoding;
+        Runnable onCommitted;
+        final long requestedAt;
+        final List<FileIOUtils.FileWriteCallback> callbacks = new ArrayList<>(1);
+
+        Request(CharSequence content, FileIOUtils.Encoding encoding, Runnable onCommitted, long requestedAt) {
+            this.content = content;
+            this.encoding = encoding;
+            this.onCommitted = onCommitted;
+            this.requestedAt = requestedAt;
+        }
+
+        void addCallback(FileIOUtils.FileWriteCallback callback) {
+            if (!callbacks.contains(callback)) callbacks.add(callback);
+        }
+    }
+}
+// 该文件实现单个文件的合并保存与跳过未变内容
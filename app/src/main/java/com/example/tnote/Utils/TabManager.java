@@ -9,6 +9,8 @@ import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.example.tnote.Editor.EditorFragment;
+import com.example.tnote.Editor.HibernatedEditor;
+import com.example.tnote.Editor.LargeFileViewerFragment;
 import com.example.tnote.FileBrowser.FileBrowserFragment;
 import com.example.tnote.MainActivity;
 import com.example.tnote.Terminal.TerminalFragment;
@@ -17,13 +19,15 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 
 /**
  * 选项卡管理类，负责管理终端、文件浏览器和编辑器三个面板的切换逻辑
  * 使用 ReentrantLock 和 Condition 实现线程安全的 Fragment 操作
+ * 编辑器支持多个文件选项卡：只有当前选项卡持有 Fragment，其余选项卡休眠为压缩的 {@link HibernatedEditor}，
+ * 休眠状态的总大小受内存预算限制，超出时丢弃最久未使用的（切回时从文件冷加载）
  */
 public class TabManager {
 
@@ -60,10 +64,27 @@ public class TabManager {
      * 状态标志
      */
     private boolean isFileBrowserVisible;     // 文件浏览器显示状态标识
-    public Semaphore numberOfEditors = new Semaphore(1);     // 已打开的编辑器计数器（最大 5 个）, 使用信号量控制编辑器Fragment的创建数量
-    private final ArrayList<String> editorTags = new ArrayList<>(); // 已打开的编辑器在 Manager 中的 tag 列表，用于跟踪和管理编辑器Fragment
     private static final String TAG = "LockUtils";// 测试debug用
 
+    /**
+     * 编辑器选项卡
+     */
+    private final List<EditorTab> editorTabs = new ArrayList<>(); // 按打开顺序排列
+    private EditorTab activeTab;        // 当前（持有 Fragment 的）编辑器选项卡
+    private long useCounter;            // 最近使用顺序
+    private final long hibernationBudget = Math.min(32L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8); // 休眠状态的内存预算
+
+    private static final class EditorTab {
+        final File file;
+        Fragment fragment;           // 只有当前选项卡持有 Fragment
+        HibernatedEditor hibernated; // 休眠状态，为 null 时切回需从文件加载
+        long lastUsed;
+
+        EditorTab(File file) {
+            this.file = file;
+        }
+    }
+
     /**
      * 构造函数
      * @param btnTerminal 终端按钮控件
@@ -142,30 +163,15 @@ public class TabManager {
     }
 
     /**
-     * 处理切换到编辑器选项卡
+     * 处理切换到编辑器选项卡：回到最近使用的文件选项卡
      * @throws InterruptedException 当线程被中断时抛出
      */
     private void handleEditorTab() throws InterruptedException {
-        numberOfEditors.acquire(); // 获取编辑器信号量，限制编辑器数量
-        try {
-            Fragment editorFragment = createFragmentForTab(TabType.EDITOR);
-            fragmentMap.put(TabType.EDITOR, editorFragment);
-            // 添加Fragment和标签
-            addFragmentWithTag(editorFragment, leftContainerId, TabType.EDITOR.name());
-            addEditorsTagsViewer(); // 添加编辑器标签视图 (待实现)
-
-            // 切换显示编辑器并隐藏终端
-            if (leftPaneFragment != null && leftPaneFragment.isVisible()) {
-                    hideFragment(leftPaneFragment);
-            };
-            switchPane(editorFragment, leftContainerId);
-            leftPaneFragment = editorFragment;
-            Log.println(Log.INFO,"LEFTPANE：", "EDITOR");
-
-        } catch (Exception e) {
-            numberOfEditors.release(); // 发生异常时释放信号量
-            throw new RuntimeException(e);
+        EditorTab recent = null;
+        for (EditorTab tab : editorTabs) {
+            if (recent == null || tab.lastUsed > recent.lastUsed) recent = tab;
         }
+        if (recent != null) switchTab(TabType.EDITOR, recent.file);
     }
 
     /**
@@ -197,18 +203,6 @@ public class TabManager {
         executeTransaction(transaction -> transaction.add(containerId, fragment, tag));
     }
 
-    /**
-     * 带标签的Fragment添加方法
-     * 用于添加编辑器Fragment并记录其标签
-     * @param fragment 要添加的Fragment实例
-     * @param containerId Fragment要添加到的容器ID
-     * @param tag Fragment的标签
-     */
-    private void addFragmentWithTag(Fragment fragment, int containerId, String tag) {
-        editorTags.add(tag); // 将编辑器Fragment的标签添加到列表中
-        addFragmentToContainer(fragment, containerId, tag); // 调用通用方法将Fragment添加到容器
-    }
-
     /**
      * 通用面板切换方法
      * 用于执行面板切换的通用逻辑，包括执行切换前的操作、显示新的Fragment、更新当前面板Fragment的引用
@@ -263,63 +257,123 @@ public class TabManager {
     }
 
     /**
-     * （待实现）添加编辑器标签视图
-     * 用于在多个编辑器实例之间切换
-     */
-    private void addEditorsTagsViewer() {
-        // 规划功能：当打开多个编辑器时，在顶部显示可切换的标签栏
-        // 预期实现方案：使用 TabLayout+ViewPager2 管理多个编辑器实例
-    }
-
-    /**
-     * 打开指定文件的编辑器（重载方法）
+     * 打开指定文件的编辑器选项卡（重载方法）
+     * 已打开的文件直接切换到其选项卡；当前编辑器休眠后被移除，目标选项卡从休眠状态恢复或从文件加载
      * @param tabType 必须为 EDITOR 类型
      * @param file 要编辑的文件对象
      * @throws InterruptedException 当线程被中断时抛出
      */
     public void switchTab(TabType tabType, File file) throws InterruptedException {
-        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        if (tabType != TabType.EDITOR) return;
+        EditorTab tab = findEditorTab(file);
+        if (tab == null) {
+            tab = new EditorTab(file);
+            editorTabs.add(tab);
+        }
+        tab.lastUsed = ++useCounter;
+        if (tab == activeTab && tab.fragment != null && tab.fragment.isVisible()) return; // 已在显示
 
-        if (tabType == TabType.EDITOR) {
-            Fragment editorFragment = fragmentMap.get(tabType);
-            // 创建带文件参数的编辑器实例
-            if (editorFragment == null) {
-                editorFragment = createFragmentForTab(tabType, file);
-                fragmentMap.put(tabType, editorFragment);
-
-                // 添加到左侧容器
-                transaction.add(leftContainerId, editorFragment, tabType.name());
-                transaction.commit();
-                leftPaneFragment = editorFragment;
-                Log.println(Log.INFO,"LEFTPANE：","EDITOR");
-            }else{
-                //处理多个编辑器逻辑 目前的实现是直接替换前编辑器
-
-                remove(leftPaneFragment);
-                editorFragment = createFragmentForTab(tabType, file);
-                fragmentMap.put(tabType, editorFragment);
-                // 添加到左侧容器
-                transaction.add(leftContainerId, editorFragment, tabType.name());
-                transaction.commit();
-                leftPaneFragment = editorFragment;
-                Log.println(Log.INFO,"LEFTPANE：","NEW EDITOR");
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        if (activeTab != null && activeTab != tab && activeTab.fragment != null) {
+            // 当前编辑器休眠后移除
+            Fragment previous = activeTab.fragment;
+            if (previous instanceof EditorFragment) {
+                activeTab.hibernated = ((EditorFragment) previous).hibernate(this::trimHibernated);
             }
+            activeTab.fragment = null;
+            transaction.remove(previous);
+            if (leftPaneFragment == previous) leftPaneFragment = null;
+        }
+        if (tab.fragment == null) {
+            tab.fragment = createEditorFragment(tab);
+            tab.hibernated = null; // 已交给新的编辑器恢复
+            transaction.add(leftContainerId, tab.fragment, tabType.name());
+        }
+        transaction.commit();
+        activeTab = tab;
+        fragmentMap.put(tabType, tab.fragment);
+        leftPaneFragment = tab.fragment;
+        Log.println(Log.INFO,"LEFTPANE：","EDITOR " + file.getName());
+
+        // 隐藏当前终端
+        Fragment terminal = fragmentMap.get(TabType.TERMINAL);
+        if (terminal != null && terminal.isVisible()) {
+            hideFromLeftPane(terminal);
+        }
 
-            // 隐藏当前终端
-            Log.println(Log.INFO,"TERMINAL IS","being hiding!!");
-            if(fragmentMap.get(TabType.TERMINAL) == null){
-                Log.println(Log.INFO,"TERMINAL IS","NOT IN MAP");
-            }
-            if(!fragmentMap.get(TabType.TERMINAL).isVisible()){
-                Log.println(Log.INFO,"TERMINAL IS","NOT VISIABLE");
+        // 显示编辑器
+        showInLeftPane(tab.fragment);
+        trimHibernated();
+        refreshEditorTabStrip();
+    }
+
+    /**
+     * 关闭文件的编辑器选项卡；未保存的修改仍保留在编辑日志中，再次打开时重放
+     * 关闭的是当前选项卡时切换到最近使用的其他选项卡，没有则回到终端
+     * @param file 要关闭的文件
+     */
+    public void closeEditorTab(File file) {
+        EditorTab tab = findEditorTab(file);
+        if (tab == null) return;
+        editorTabs.remove(tab);
+        if (tab.hibernated != null) tab.hibernated.drop();
+        if (tab != activeTab) {
+            refreshEditorTabStrip();
+            return;
+        }
+        activeTab = null;
+        remove(tab.fragment);
+        try {
+            if (editorTabs.isEmpty()) {
+                switchTab(TabType.TERMINAL);
+            } else {
+                handleEditorTab();
             }
-            if (fragmentMap.get(TabType.TERMINAL) != null &&
-                    fragmentMap.get(TabType.TERMINAL).isVisible()) {
-                hideFromLeftPane(fragmentMap.get(TabType.TERMINAL));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 已打开的编辑器选项卡对应的文件，按打开顺序
+     */
+    public List<File> getEditorFiles() {
+        List<File> files = new ArrayList<>(editorTabs.size());
+        for (EditorTab tab : editorTabs) files.add(tab.file);
+        return files;
+    }
+
+    private EditorTab findEditorTab(File file) {
+        for (EditorTab tab : editorTabs) {
+            if (tab.file.equals(file)) return tab;
+        }
+        return null;
+    }
+
+    /**
+     * 休眠状态总大小超出预算时，从最久未使用的选项卡开始丢弃
+     */
+    private void trimHibernated() {
+        long total = 0;
+        for (EditorTab tab : editorTabs) {
+            if (tab.hibernated != null) total += tab.hibernated.sizeBytes();
+        }
+        while (total > hibernationBudget) {
+            EditorTab oldest = null;
+            for (EditorTab tab : editorTabs) {
+                if (tab.hibernated != null && (oldest == null || tab.lastUsed < oldest.lastUsed)) oldest = tab;
             }
+            if (oldest == null) break;
+            total -= oldest.hibernated.sizeBytes();
+            oldest.hibernated.drop();
+            oldest.hibernated = null;
+            Log.println(Log.INFO, "EDITOR TABS", "drop hibernated " + oldest.file.getName());
+        }
+    }
 
-            // 显示编辑器
-            showInLeftPane(editorFragment);
+    private void refreshEditorTabStrip() {
+        if (activeTab != null && activeTab.fragment instanceof EditorFragment) {
+            ((EditorFragment) activeTab.fragment).refreshTabStrip();
         }
     }
 
@@ -343,18 +397,15 @@ public class TabManager {
     }
 
     /**
-     * 创建带文件参数的编辑器实例（工厂方法）
-     * @param tabType 必须为 EDITOR 类型
-     * @param file 需要编辑的目标文件
+     * 创建编辑器选项卡的 Fragment 实例（工厂方法）
+     * @param tab 目标选项卡，有休眠状态时从中恢复
      * @return 带文件参数的编辑器 Fragment 实例
-     * @throws IllegalArgumentException 当传入的选项卡类型不是 EDITOR 时抛出
      */
-    private Fragment createFragmentForTab(TabType tabType, File file) {
-        if (tabType == TabType.EDITOR) {
-            return new EditorFragment(file); // 创建带文件参数的编辑器
-        } else {
-            throw new IllegalArgumentException("非编辑器类型不支持文件参数: " + tabType);
-        }
+    private Fragment createEditorFragment(EditorTab tab) {
+        // 大文件改用只读的内存映射查看器，避免整体读入内存
+        if (FileIOUtils.isLargeFile(tab.file)) return new LargeFileViewerFragment(tab.file);
+        if (tab.hibernated != null) return new EditorFragment(tab.file, tab.hibernated);
+        return new EditorFragment(tab.file); // 创建带文件参数的编辑器
     }
 
     /**
@@ -499,20 +550,15 @@ public class TabManager {
                 }
             }
 
-            // 如果是编辑器 Fragment，更新信号量和标签列表
-            if (fragment instanceof EditorFragment) {
-                numberOfEditors.release(); // 释放信号量
-                if (editorTags != null) {
-                    String tagToRemove = null;
-                    // 查找要移除的 tag，通过 FragmentManager 查找不到的 tag 即为要移除的 tag
-                    for (String tag : editorTags) {
-                        if (fragmentManager.findFragmentByTag(tag) == null) {
-                            tagToRemove = tag;
-                            break;
-                        }
-                    }
-                    if (tagToRemove != null) {
-                        editorTags.remove(tagToRemove); // 从列表中移除 tag
+            // 如果是编辑器 Fragment，同时关闭其选项卡
+            if (fragment instanceof EditorFragment || fragment instanceof LargeFileViewerFragment) {
+                Iterator<EditorTab> tabs = editorTabs.iterator();
+                while (tabs.hasNext()) {
+                    EditorTab tab = tabs.next();
+                    if (tab.fragment == fragment) {
+                        tabs.remove();
+                        if (tab == activeTab) activeTab = null;
+                        break;
                     }
                 }
             }
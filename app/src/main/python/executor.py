@@ -1,9 +1,13 @@
+import ctypes
 import sys
+import threading
 from io import StringIO
 
 _namespace = {}
+_running = set()  # 正在执行 execute_code 的线程号
 
 def execute_code(code):
+    _running.add(threading.get_ident())
     old_stdout = sys.stdout
     old_stderr = sys.stderr
     sys.stdout = captured_out = StringIO()
@@ -27,6 +31,7 @@ def execute_code(code):
     finally:
         sys.stdout = old_stdout
         sys.stderr = old_stderr
+        _running.discard(threading.get_ident())
 
     # 获取stdout和stderr的内容
     stdout_val = captured_out.getvalue().strip()
@@ -34,3 +39,9 @@ def execute_code(code):
 
     # 根据条件返回结果
     return stderr_val if stderr_val else stdout_val
+
+
+def interrupt(thread_id):
+    # 在仍在执行代码的线程中抛出 KeyboardInterrupt，终止失控的脚本
+    if thread_id in _running:
+        ctypes.pythonapi.PyThreadState_SetAsyncExc(ctypes.c_ulong(thread_id), ctypes.py_object(KeyboardInterrupt))
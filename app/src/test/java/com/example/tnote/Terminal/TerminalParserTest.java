@@ -0,0 +1,212 @@
+package com.example.tnote.Terminal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TerminalParser 与屏幕模型的正确性测试：样式、光标与擦除、被拆到多次输出中的转义序列，
+ * 以及滚动、滚动区域、备用屏幕、宽字符与损坏标记
+ */
+public class TerminalParserTest {
+    private final TerminalEmulator emulator = new TerminalEmulator(100);
+    private final TerminalParser parser = new TerminalParser(emulator, TextStyle.DEFAULT);
+
+    @Test
+    public void plainTextAndLines() {
+        feed("hello\nworld");
+        assertEquals(0, emulator.getScrollback().size());
+        assertEquals("hello", screenText(0));
+        assertEquals("world", currentText());
+        assertEquals(2, emulator.getVisibleRowCount());
+    }
+
+    @Test
+    public void scrollingPushesIntoScrollback() {
+        emulator.resize(10, 3);
+        feed("1\n2\n3\n4\n5");
+        assertEquals(2, emulator.getScrollback().size());
+        assertEquals("1", rowText(0));
+        assertEquals("2", rowText(1));
+        assertEquals("3", screenText(0));
+        assertEquals("5", screenText(2));
+
+        feed("\r0123456789ab"); // 写满一行后延迟折行
+        assertEquals("0123456789", screenText(1));
+        assertEquals("ab", screenText(2));
+        assertEquals(3, emulator.getScrollback().size());
+    }
+
+    @Test
+    public void scrollRegionKeepsOtherRows() {
+        emulator.resize(10, 4);
+        feed("top\na\nb\nstatus");
+        feed("\u001B[2;3r\u001B[3;1Hc\nd");
+        assertEquals("top", screenText(0));
+        assertEquals("c", screenText(1));
+        assertEquals("d", screenText(2));
+        assertEquals("status", screenText(3));
+        assertEquals(0, emulator.getScrollback().size()); // 区域滚动不产生回滚
+
+        feed("\u001B[2;1H\u001B[L");
+        assertEquals("", screenText(1));
+        assertEquals("c", screenText(2));
+        feed("\u001B[M\u001B[M");
+        assertEquals("", screenText(1));
+        assertEquals("", screenText(2));
+        assertEquals("status", screenText(3));
+    }
+
+    @Test
+    public void alternateScreenRestoresMainScreen() {
+        emulator.resize(10, 3);
+        feed("shell$ ");
+        feed("\u001B[?1049h\u001B[2J\u001B[Hfull\u001B[3;1Hbar\n\n");
+        assertTrue(emulator.isAlternateScreen());
+        assertEquals(3, emulator.getVisibleRowCount());
+        assertEquals(0, emulator.getScrollback().size());
+        feed("\u001B[?1049l");
+        assertFalse(emulator.isAlternateScreen());
+        assertEquals("shell$ ", screenText(0));
+        assertEquals(7, emulator.getCursorColumn());
+    }
+
+    @Test
+    public void wideCharactersTakeTwoCells() {
+        emulator.resize(5, 2);
+        feed("a中文");
+        TerminalLine line = emulator.getScreenRow(0);
+        assertEquals(5, line.length);
+        assertEquals(TerminalLine.WIDE_TAIL, line.codepoints[2]);
+        feed("字"); // 第一行放不下，整体折到下一行
+        assertEquals("字", rowTextOf(emulator.getScreenRow(1)));
+        feed("\u001B[1;3Hx");
+        assertEquals("a x文", rowTextOf(emulator.getScreenRow(0))); // 被拆开的另一半变为空格
+    }
+
+    @Test
+    public void damageTracking() {
+        emulator.resize(10, 3);
+        feed("a\nb\nc");
+        clearDirty();
+        feed("\u001B[2;1HB");
+        assertFalse(emulator.getScreenRow(0).dirty);
+        assertTrue(emulator.getScreenRow(1).dirty);
+        assertFalse(emulator.getScreenRow(2).dirty);
+        clearDirty();
+        feed("\u001B[1;1H\u001B[J");
+        assertTrue(emulator.getScreenRow(0).dirty);
+        clearDirty();
+        feed("\u001B[K"); // 空行再擦除不产生损坏
+        assertFalse(emulator.getScreenRow(0).dirty);
+    }
+
+    @Test
+    public void resizeKeepsCursorRowOnScreen() {
+        emulator.resize(10, 5);
+        feed("1\n2\n3\n4\n5");
+        emulator.resize(4, 2);
+        assertEquals(3, emulator.getScrollback().size());
+        assertEquals("4", screenText(0));
+        assertEquals("5", currentText());
+        assertEquals(1, emulator.getCursorRow());
+    }
+
+    @Test
+    public void colorsAndAttributes() {
+        feed("\u001B[1;31mA\u001B[0mB\u001B[38;5;208mC\u001B[48;2;1;2;3mD\u001B[7;4mE\u001B[24;39mF\u001B[mG");
+        TerminalLine line = emulator.getScreenRow(emulator.getCursorRow());
+        assertEquals("ABCDEFG", currentText());
+        assertEquals(TextStyle.encode(TextStyle.indexed(1), 0, TextStyle.BOLD), line.styles[0]);
+        assertEquals(TextStyle.DEFAULT, line.styles[1]);
+        assertEquals(TextStyle.indexed(208), TextStyle.foreground(line.styles[2]));
+        assertEquals(TextStyle.rgb(0x010203), TextStyle.background(line.styles[3]));
+        assertEquals(TextStyle.REVERSE | TextStyle.UNDERLINE, TextStyle.flags(line.styles[4]));
+        assertEquals(TextStyle.REVERSE, TextStyle.flags(line.styles[5]));
+        assertEquals(TextStyle.COLOR_DEFAULT, TextStyle.foreground(line.styles[5]));
+        assertEquals(TextStyle.DEFAULT, line.styles[6]);
+
+        feed("\u001B[92;103mH");
+        assertEquals(TextStyle.encode(TextStyle.indexed(10), TextStyle.indexed(11), 0), line.styles[7]);
+    }
+
+    @Test
+    public void sequencesSplitAcrossChunks() {
+        String text = "a\u001B[38;2;255;128;0mb\u001B]0;title\u0007c\u001B[0m";
+        for (int i = 0; i < text.length(); i++) {
+            feed(text.substring(i, i + 1));
+        }
+        assertEquals("abc", currentText());
+        long orange = TextStyle.withForeground(TextStyle.DEFAULT, TextStyle.rgb(0xFF8000));
+        assertEquals(orange, emulator.getScreenRow(emulator.getCursorRow()).styles[1]);
+        assertEquals(orange, emulator.getScreenRow(emulator.getCursorRow()).styles[2]);
+    }
+
+    @Test
+    public void cursorMovementAndErase() {
+        feed("0123456789\u001B[4G\u001B[K");
+        assertEquals("012", currentText());
+        feed("\r\u001B[2CXY\u001B[1D\u001B[P");
+        assertEquals("01X", currentText());
+        feed("\u001B[1;6HZ");
+        assertEquals("01X  Z", currentText());
+        feed("\u001B[1G\u001B[2@");
+        assertEquals("  01X  Z", currentText());
+        feed("\u001B[3X");
+        assertEquals("   1X  Z", currentText());
+        feed("\u001B[2K");
+        assertEquals("", currentText());
+    }
+
+    @Test
+    public void progressRedrawAndSaveRestore() {
+        feed("[    ]\u001B7\r[##");
+        feed("\u001B8!");
+        assertEquals("[##  ]!", currentText());
+        feed("\r\u001B[Kdone\n");
+        assertEquals("done", screenText(0));
+    }
+
+    @Test
+    public void errorStreamBaseStyleAndUnknownSequences() {
+        long red = TextStyle.withForeground(TextStyle.DEFAULT, TextStyle.indexed(9));
+        TerminalParser errors = new TerminalParser(emulator, red);
+        String text = "e\u001B[1mf\u001B[0mg";
+        errors.feed(text, 0, text.length());
+        feed("\u001B[?25l\u001B[?2004h\u001B(Bh\u001B=\u001B[>4;1m");
+        TerminalLine line = emulator.getScreenRow(emulator.getCursorRow());
+        assertEquals("efgh", currentText());
+        assertEquals(red, line.styles[0]);
+        assertEquals(TextStyle.withFlags(red, TextStyle.BOLD), line.styles[1]);
+        assertEquals(red, line.styles[2]);
+        assertEquals(TextStyle.DEFAULT, line.styles[3]);
+    }
+
+    private void feed(String text) {
+        parser.feed(text, 0, text.length());
+    }
+
+    private String currentText() {
+        return screenText(emulator.getCursorRow());
+    }
+
+    private String screenText(int row) {
+        TerminalLine line = emulator.getScreenRow(row);
+        return new String(line.codepoints, 0, line.length);
+    }
+
+    private static String rowTextOf(TerminalLine line) {
+        TerminalScrollback.Row row = new TerminalScrollback.Row();
+        row.set(line);
+        return new String(row.text, 0, row.length);
+    }
+
+    private void clearDirty() {
+        for (int row = 0; row < emulator.getRows(); row++) emulator.getScreenRow(row).dirty = false;
+    }
+
+    private String rowText(int index) {
+        TerminalScrollback.Row row = emulator.getScrollback().get(index);
+        return new String(row.text, 0, row.length);
+    }
+}
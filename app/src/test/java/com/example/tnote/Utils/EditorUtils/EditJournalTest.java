@@ -0,0 +1,148 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * EditJournal 记录格式与恢复的正确性测试：随机编辑写入日志后，从已落盘的快照重放得到相同文本；
+ * 末尾记录被截断或校验失败时丢弃该记录及其之后的内容，并把文件截到最后一条完整记录；压缩后重放结果不变
+ */
+public class EditJournalTest {
+
+    @Test
+    public void replayFromCommittedSnapshotReproducesText() throws IOException {
+        Random random = new Random(13);
+        StringBuilder text = new StringBuilder("héllo\n世界\n");
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        List<String> snapshots = new ArrayList<>();
+        snapshots.add(text.toString()); // 快照 0：打开时的文件内容
+
+        for (int step = 0; step < 2_000; step++) {
+            if (random.nextInt(100) == 0) {
+                EditJournal.writeRecord(records, EditJournal.snapshotPayload(snapshots.size()));
+                snapshots.add(text.toString());
+                continue;
+            }
+            int offset = random.nextInt(text.length() + 1);
+            int removed = Math.min(text.length() - offset, random.nextInt(4));
+            String inserted = randomText(random, random.nextInt(6));
+            text.replace(offset, offset + removed, inserted);
+            EditJournal.writeRecord(records, EditJournal.editPayload(offset, removed, inserted));
+        }
+        File journal = writeJournal(records.toByteArray());
+
+        for (int committed : new int[]{0, 1, snapshots.size() / 2, snapshots.size() - 1}) {
+            List<EditJournal.Edit> edits = new ArrayList<>();
+            long lastSnapshot = EditJournal.readJournal(journal, committed, edits);
+            assertEquals(snapshots.size() - 1, lastSnapshot);
+            assertEquals(text.toString(), replay(snapshots.get(committed), edits));
+        }
+    }
+
+    @Test
+    public void truncatedTailIsDroppedAndCut() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        EditJournal.writeRecord(records, EditJournal.editPayload(0, 0, "abc"));
+        EditJournal.writeRecord(records, EditJournal.editPayload(3, 0, "def"));
+        int validLength = 4 + records.size();
+        ByteArrayOutputStream last = new ByteArrayOutputStream();
+        EditJournal.writeRecord(last, EditJournal.editPayload(6, 0, "ghi"));
+        records.write(last.toByteArray(), 0, last.size() - 3); // 崩溃时只写了一半
+        File journal = writeJournal(records.toByteArray());
+
+        List<EditJournal.Edit> edits = new ArrayList<>();
+        EditJournal.readJournal(journal, 0, edits);
+        assertEquals("abcdef", replay("", edits));
+        assertEquals(validLength, journal.length());
+
+        // 之后追加的记录接在最后一条完整记录之后
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(last.toByteArray());
+        }
+        edits.clear();
+        EditJournal.readJournal(journal, 0, edits);
+        assertEquals("abcdefghi", replay("", edits));
+    }
+
+    @Test
+    public void corruptRecordStopsReplay() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        EditJournal.writeRecord(records, EditJournal.editPayload(0, 0, "keep"));
+        int corruptAt = 4 + records.size() + 3; // 第二条记录 payload 中的一个字节
+        EditJournal.writeRecord(records, EditJournal.editPayload(4, 0, "lost"));
+        EditJournal.writeRecord(records, EditJournal.editPayload(8, 0, "after"));
+        File journal = writeJournal(records.toByteArray());
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.seek(corruptAt);
+            int b = file.read();
+            file.seek(corruptAt);
+            file.write(b ^ 0x40);
+        }
+
+        List<EditJournal.Edit> edits = new ArrayList<>();
+        EditJournal.readJournal(journal, 0, edits);
+        assertEquals("keep", replay("", edits));
+        assertEquals(corruptAt - 3, journal.length());
+    }
+
+    @Test
+    public void compactedTailReplaysTheSameEdits() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        EditJournal.writeRecord(records, EditJournal.editPayload(0, 0, "saved "));
+        EditJournal.writeRecord(records, EditJournal.snapshotPayload(1));
+        EditJournal.writeRecord(records, EditJournal.editPayload(6, 0, "unsaved"));
+        EditJournal.writeRecord(records, EditJournal.editPayload(0, 5, "kept"));
+        File journal = writeJournal(records.toByteArray());
+
+        List<EditJournal.Edit> before = new ArrayList<>();
+        EditJournal.readJournal(journal, 1, before);
+        File compacted = writeJournal(EditJournal.readTailAfter(journal, 1));
+        List<EditJournal.Edit> after = new ArrayList<>();
+        assertEquals(1, EditJournal.readJournal(compacted, 1, after));
+        assertEquals(replay("saved ", before), replay("saved ", after));
+        assertEquals("kept unsaved", replay("saved ", after));
+    }
+
+    private static File writeJournal(byte[] records) throws IOException {
+        File file = File.createTempFile("journal", ".journal");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            int magic = EditJournal.JOURNAL_MAGIC;
+            out.write(new byte[]{(byte) (magic >>> 24), (byte) (magic >>> 16), (byte) (magic >>> 8), (byte) magic});
+            out.write(records);
+        }
+        return file;
+    }
+
+    private static String replay(String base, List<EditJournal.Edit> edits) {
+        StringBuilder text = new StringBuilder(base);
+        for (EditJournal.Edit edit : edits) {
+            text.replace(edit.offset, edit.offset + edit.removed, edit.inserted);
+        }
+        return text.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "ab\n中é😀";
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            int index = random.nextInt(alphabet.length() - 1);
+            if (Character.isHighSurrogate(alphabet.charAt(index))) {
+                text.append(alphabet, index, index + 2);
+            } else if (!Character.isLowSurrogate(alphabet.charAt(index))) {
+                text.append(alphabet.charAt(index));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.tnote.Utils.EditorUtils.HilightStrategy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * PythonLexer 的正确性测试
+ */
+public class PythonLexerTest {
+
+    @Test
+    public void keywordsNumbersAndComments() {
+        TokenBuffer tokens = new TokenBuffer();
+        String line = "    LIMIT = 0x1F_FF + 3.5e-2 + 10j  # constants";
+        assertEquals(PythonLexer.STATE_CODE, PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens));
+        assertToken(line, tokens, 0, "0x1F_FF", PythonLexer.TOKEN_NUMBER);
+        assertToken(line, tokens, 1, "3.5e-2", PythonLexer.TOKEN_NUMBER);
+        assertToken(line, tokens, 2, "10j", PythonLexer.TOKEN_NUMBER);
+        assertToken(line, tokens, 3, "# constants", PythonLexer.TOKEN_COMMENT);
+        assertEquals(4, tokens.size());
+
+        tokens.clear();
+        line = "if x in classes: pass";
+        PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens);
+        assertToken(line, tokens, 0, "if", PythonLexer.TOKEN_KEYWORD);
+        assertToken(line, tokens, 1, "in", PythonLexer.TOKEN_KEYWORD);
+        assertToken(line, tokens, 2, "pass", PythonLexer.TOKEN_KEYWORD);
+        assertEquals(3, tokens.size());
+    }
+
+    @Test
+    public void escapesAndPrefixes() {
+        TokenBuffer tokens = new TokenBuffer();
+        String line = "a = 'it\\'s' + r\"C:\\\\\" + b'#'";
+        assertEquals(PythonLexer.STATE_CODE, PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens));
+        assertToken(line, tokens, 0, "'it\\'s'", PythonLexer.TOKEN_STRING);
+        assertToken(line, tokens, 1, "r\"C:\\\\\"", PythonLexer.TOKEN_STRING);
+        assertToken(line, tokens, 2, "b'#'", PythonLexer.TOKEN_STRING);
+        assertEquals(3, tokens.size());
+    }
+
+    @Test
+    public void formatStringExpressions() {
+        TokenBuffer tokens = new TokenBuffer();
+        String line = "f\"{x if y else 1:>4} {{z}}\"";
+        PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens);
+        assertToken(line, tokens, 0, "f\"{", PythonLexer.TOKEN_STRING);
+        assertToken(line, tokens, 1, "if", PythonLexer.TOKEN_KEYWORD);
+        assertToken(line, tokens, 2, "else", PythonLexer.TOKEN_KEYWORD);
+        assertToken(line, tokens, 3, "1", PythonLexer.TOKEN_NUMBER);
+        assertToken(line, tokens, 4, ":>4} {{z}}\"", PythonLexer.TOKEN_STRING);
+        assertEquals(5, tokens.size());
+    }
+
+    @Test
+    public void tripleQuotedStringResumesAcrossLines() {
+        String[] lines = {"x = \"\"\"first", "if # still string", "end\"\"\" if y else 'z'"};
+        TokenBuffer tokens = new TokenBuffer();
+        int state = PythonLexer.tokenizeLine(lines[0], 0, lines[0].length(), PythonLexer.STATE_CODE, tokens);
+        assertNotEquals(PythonLexer.STATE_CODE, state);
+        assertToken(lines[0], tokens, 0, "\"\"\"first", PythonLexer.TOKEN_STRING);
+
+        tokens.clear();
+        assertEquals(state, PythonLexer.tokenizeLine(lines[1], 0, lines[1].length(), state, tokens));
+        assertToken(lines[1], tokens, 0, lines[1], PythonLexer.TOKEN_STRING);
+        assertEquals(1, tokens.size());
+
+        tokens.clear();
+        assertEquals(PythonLexer.STATE_CODE, PythonLexer.tokenizeLine(lines[2], 0, lines[2].length(), state, tokens));
+        assertToken(lines[2], tokens, 0, "end\"\"\"", PythonLexer.TOKEN_STRING);
+        assertToken(lines[2], tokens, 1, "if", PythonLexer.TOKEN_KEYWORD);
+        assertToken(lines[2], tokens, 2, "else", PythonLexer.TOKEN_KEYWORD);
+        assertToken(lines[2], tokens, 3, "'z'", PythonLexer.TOKEN_STRING);
+    }
+
+    @Test
+    public void backslashContinuesSingleQuotedString() {
+        TokenBuffer tokens = new TokenBuffer();
+        String line = "s = 'abc\\";
+        int state = PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens);
+        assertNotEquals(PythonLexer.STATE_CODE, state);
+
+        line = "s = 'abc\\\\";
+        assertEquals(PythonLexer.STATE_CODE, PythonLexer.tokenizeLine(line, 0, line.length(), PythonLexer.STATE_CODE, tokens));
+    }
+
+    private static void assertToken(String text, TokenBuffer tokens, int index, String expected, int type) {
+        assertTrue("missing token " + index, index < tokens.size());
+        assertEquals(expected, text.substring(tokens.start(index), tokens.end(index)));
+        assertEquals(type, tokens.type(index));
+    }
+}
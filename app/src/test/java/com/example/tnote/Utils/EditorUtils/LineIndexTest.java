@@ -0,0 +1,97 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LineIndex 的正确性测试：随机增量编辑后与逐字符扫描的行结构对照，偏移与行号互相转换一致，
+ * 监听器报告的行数变化与实际行数一致
+ */
+public class LineIndexTest {
+
+    @Test
+    public void randomEditsMatchLineScan() {
+        Random random = new Random(17);
+        StringBuilder text = new StringBuilder(randomText(random, 2_000));
+        LineIndex index = new LineIndex();
+        index.reset(text);
+        int[] lineCount = {index.getLineCount()};
+        index.addLineChangeListener((firstLine, removedLines, addedLines) -> {
+            assertTrue(firstLine >= 0 && firstLine < lineCount[0]);
+            lineCount[0] += addedLines - removedLines;
+        });
+
+        for (int step = 0; step < 3_000; step++) {
+            int start = random.nextInt(text.length() + 1);
+            int before = Math.min(text.length() - start, random.nextInt(random.nextInt(20) == 0 ? 500 : 10));
+            String inserted = randomText(random, random.nextInt(random.nextInt(20) == 0 ? 500 : 10));
+            text.replace(start, start + before, inserted);
+            index.onTextChanged(text, start, before, inserted.length());
+            assertEquals(text.length(), index.length());
+            assertEquals(lineCount[0], index.getLineCount());
+            if (step % 100 == 0) assertLines(text, index);
+        }
+        assertLines(text, index);
+
+        LineIndex rebuilt = new LineIndex();
+        rebuilt.reset(text);
+        assertLines(text, rebuilt);
+    }
+
+    @Test
+    public void offsetsAndLinesRoundTrip() {
+        String text = "first\n\nthird line\nlast";
+        LineIndex index = new LineIndex();
+        index.reset(text);
+        assertEquals(4, index.getLineCount());
+        assertEquals(0, index.getLineForOffset(5));  // 换行符属于所在行
+        assertEquals(1, index.getLineForOffset(6));
+        assertEquals(3, index.getLineForOffset(text.length()));
+        for (int line = 0; line < index.getLineCount(); line++) {
+            assertEquals(line, index.getLineForOffset(index.getLineStart(line)));
+            assertEquals(line, index.getLineForOffset(index.getLineEnd(line)));
+        }
+
+        index.reset("");
+        assertEquals(1, index.getLineCount());
+        assertEquals(0, index.getLineEnd(0));
+        index.reset("a\n");
+        assertEquals(2, index.getLineCount()); // 末尾换行之后还有一个空行
+        assertEquals(2, index.getLineStart(1));
+    }
+
+    /**
+     * 与逐字符扫描得到的行起点、行终点对照，并检查每个偏移所在的行
+     */
+    private static void assertLines(CharSequence text, LineIndex index) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') starts.add(i + 1);
+        }
+        assertEquals(starts.size(), index.getLineCount());
+        int line = 0;
+        for (int offset = 0; offset <= text.length(); offset++) {
+            if (line + 1 < starts.size() && starts.get(line + 1) == offset) line++;
+            assertEquals(line, index.getLineForOffset(offset));
+        }
+        for (int i = 0; i < starts.size(); i++) {
+            int end = i + 1 < starts.size() ? starts.get(i + 1) - 1 : text.length();
+            assertEquals(starts.get(i).intValue(), index.getLineStart(i));
+            assertEquals(end, index.getLineEnd(i));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = random.nextInt(6) == 0 ? '\n' : (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * PieceTable 的正确性测试：随机插入、删除、替换与 StringBuilder 对照（含跨追加缓冲区块的长插入），
+ * 快照在之后的编辑与整理后保持不变
+ */
+public class PieceTableTest {
+
+    @Test
+    public void randomEditsMatchStringBuilder() {
+        Random random = new Random(11);
+        char[] original = randomText(random, 5_000).toCharArray();
+        PieceTable document = new PieceTable(original, original.length);
+        StringBuilder expected = new StringBuilder().append(original);
+
+        for (int step = 0; step < 5_000; step++) {
+            int length = expected.length();
+            int start = random.nextInt(length + 1);
+            int end = Math.min(length, start + random.nextInt(50));
+            String text = randomText(random, random.nextInt(100) == 0 ? 20_000 : random.nextInt(8));
+            switch (random.nextInt(3)) {
+                case 0:
+                    document.insert(start, text, 0, text.length());
+                    expected.insert(start, text);
+                    break;
+                case 1:
+                    document.delete(start, end);
+                    expected.delete(start, end);
+                    break;
+                default:
+                    document.replace(start, end, text, 0, text.length());
+                    expected.replace(start, end, text);
+                    break;
+            }
+            assertEquals(expected.length(), document.length());
+            if (step % 250 == 0) assertContent(expected.toString(), document, random);
+        }
+        assertContent(expected.toString(), document, random);
+    }
+
+    @Test
+    public void snapshotsSurviveLaterEditsAndCompaction() {
+        Random random = new Random(3);
+        PieceTable document = new PieceTable();
+        StringBuilder expected = new StringBuilder();
+        List<PieceTable.Snapshot> snapshots = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+
+        for (int step = 0; step < 2_000; step++) {
+            int offset = random.nextInt(expected.length() + 1);
+            String text = randomText(random, 1 + random.nextInt(5));
+            document.insert(offset, text, 0, text.length());
+            expected.insert(offset, text);
+            if (step % 3 == 0 && expected.length() > 10) {
+                int start = random.nextInt(expected.length() - 5);
+                document.delete(start, start + 5);
+                expected.delete(start, start + 5);
+            }
+            if (step % 100 == 0) {
+                snapshots.add(document.snapshot());
+                contents.add(expected.toString());
+            }
+        }
+
+        PieceTable compacted = document.compact();
+        assertEquals(expected.toString(), compacted.toString());
+        compacted.insert(0, "x", 0, 1);
+        assertEquals(expected.toString(), document.toString()); // 整理得到的是新文档
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(contents.get(i), snapshots.get(i).toString());
+        }
+    }
+
+    @Test
+    public void writeToStreamsWholeDocument() throws IOException {
+        Random random = new Random(5);
+        PieceTable document = new PieceTable();
+        StringBuilder expected = new StringBuilder();
+        while (expected.length() < 100_000) {
+            int offset = random.nextInt(expected.length() + 1);
+            String text = randomText(random, 1 + random.nextInt(300));
+            document.insert(offset, text, 0, text.length());
+            expected.insert(offset, text);
+        }
+        StringWriter writer = new StringWriter();
+        document.writeTo(writer);
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    private static void assertContent(String expected, PieceTable document, Random random) {
+        assertEquals(expected, document.toString());
+        PieceTable.Snapshot snapshot = document.snapshot();
+        for (int i = 0; i < 50; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            char[] chars = new char[end - start];
+            document.getChars(start, end, chars, 0);
+            assertEquals(expected.substring(start, end), new String(chars));
+            assertEquals(expected.substring(start, end), snapshot.subSequence(start, end).toString());
+            if (start < expected.length()) assertEquals(expected.charAt(start), snapshot.charAt(start));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
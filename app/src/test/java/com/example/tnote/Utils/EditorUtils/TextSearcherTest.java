@@ -0,0 +1,109 @@
+package com.example.tnote.Utils.EditorUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TextSearcher 的正确性测试：字面量查找与朴素 indexOf 对照（含跨窗口的匹配），
+ * 正则查找与替换（含按全文上下文替换单个匹配）
+ */
+public class TextSearcherTest {
+
+    @Test
+    public void literalMatchesIndexOfAcrossWindows() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 300_000) {
+            text.append(random.nextInt(4) == 0 ? "needle" : "nee").append((char) ('a' + random.nextInt(3)));
+        }
+        PieceTable document = new PieceTable();
+        document.insert(0, text, 0, text.length());
+        document.insert(123_456, "needle", 0, 6); // 制造更多分片
+        String plain = document.toString();
+
+        for (String pattern : new String[]{"needle", "e", "needlea", "eeb", "x"}) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = plain.indexOf(pattern); i >= 0; i = plain.indexOf(pattern, i + pattern.length())) {
+                expected.add(i);
+            }
+            List<Integer> actual = new ArrayList<>();
+            TextSearcher.find(document.snapshot(), new TextSearcher.Query(pattern, false, false), null, (start, end) -> {
+                assertEquals(pattern.length(), end - start);
+                actual.add(start);
+                return true;
+            });
+            assertEquals(pattern, expected, actual);
+        }
+    }
+
+    @Test
+    public void literalIgnoreCase() {
+        List<Integer> starts = new ArrayList<>();
+        TextSearcher.find("Foo fOO bar FOO", new TextSearcher.Query("foo", false, true), null, (start, end) -> {
+            starts.add(start);
+            return true;
+        });
+        assertEquals(List.of(0, 4, 12), starts);
+    }
+
+    @Test
+    public void sinkCanStopSearch() {
+        int[] count = {0};
+        TextSearcher.find("aaaaaaaa", new TextSearcher.Query("a", false, false), null, (start, end) -> ++count[0] < 3);
+        assertEquals(3, count[0]);
+    }
+
+    @Test
+    public void regexSkipsEmptyMatchesAndUsesLineAnchors() {
+        List<String> found = new ArrayList<>();
+        String text = "def a():\n  pass\ndef b():\n";
+        TextSearcher.find(text, new TextSearcher.Query("^def (\\w+)|x*", true, false), null, (start, end) -> {
+            found.add(text.substring(start, end));
+            return true;
+        });
+        assertEquals(List.of("def a", "def b"), found);
+    }
+
+    @Test
+    public void replaceAllCoversOnlyMatchedRange() {
+        String text = "keep foo1 and foo22 keep";
+        TextSearcher.Replacement literal = TextSearcher.replaceAll(text, new TextSearcher.Query("foo", false, false), "bar", null);
+        assertEquals(5, literal.start);
+        assertEquals(17, literal.end);
+        assertEquals("bar1 and bar", literal.text);
+        assertEquals(2, literal.count);
+        assertEquals("keep bar1 and bar22 keep",
+                text.substring(0, literal.start) + literal.text + text.substring(literal.end));
+
+        TextSearcher.Replacement regex = TextSearcher.replaceAll(text, new TextSearcher.Query("foo(\\d+)", true, false), "<$1\\$>", null);
+        assertEquals("keep <1$> and <22$> keep", text.substring(0, regex.start) + regex.text + text.substring(regex.end));
+
+        assertNull(TextSearcher.replaceAll(text, new TextSearcher.Query("absent", false, false), "x", null));
+    }
+
+    @Test
+    public void replacementAtUsesSurroundingContext() {
+        String text = "price: $12, cost 34";
+        TextSearcher.Query query = new TextSearcher.Query("(?<=\\$)(\\d+)\\b", true, false);
+        int[] match = new int[2];
+        TextSearcher.find(text, query, null, (start, end) -> {
+            match[0] = start;
+            match[1] = end;
+            return false;
+        });
+        assertEquals("12", text.substring(match[0], match[1]));
+        // 单独对匹配文本重新匹配时后向断言会失败，必须按全文上下文判断
+        assertEquals("<12>", TextSearcher.replacementAt(text, query, "<$1>", match[0], match[1]));
+        assertNull(TextSearcher.replacementAt(text, query, "<$1>", 17, 19)); // "34" 前面没有 $
+
+        TextSearcher.Query lineStart = new TextSearcher.Query("^b", true, false);
+        assertNull(TextSearcher.replacementAt("ab", lineStart, "x", 1, 2)); // 区间起点不是行首
+        assertEquals("x", TextSearcher.replacementAt("a\nb", lineStart, "x", 2, 3));
+        assertEquals("y", TextSearcher.replacementAt("a foo", new TextSearcher.Query("foo", false, false), "y", 2, 5));
+    }
+}